@@ -16,7 +16,7 @@ import java.time.Instant;
 import java.util.List;
 
 public class App {
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) {
         PriceBatchBufferStorage bufferStorage = new PriceBatchBufferStorageImpl();
         PrimaryPriceStorage storage = new PrimaryPriceStorageImpl();
         PriceProducerService producerService = new PriceProducerServiceImpl(bufferStorage, storage);
@@ -25,8 +25,8 @@ public class App {
         String batchId = producerService.startBatch();
         producerService.uploadChunk(batchId, getCollection1());
         producerService.uploadChunk(batchId, getCollection2());
-        producerService.completeBatch(batchId);
-        Thread.sleep(100L);
+        long version = producerService.completeBatch(batchId).join();
+        consumerService.awaitVersion(version).join();
         System.out.println(consumerService.getLatest(ImmutableSet.of("Sp1")));
 
     }
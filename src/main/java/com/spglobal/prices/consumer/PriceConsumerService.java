@@ -1,8 +1,19 @@
 package com.spglobal.prices.consumer;
 
 import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceChanges;
+import com.spglobal.prices.dto.PriceUpdate;
+import com.spglobal.prices.storage.PreparedPriceQuery;
+import com.spglobal.prices.storage.PriceSink;
+import com.spglobal.prices.storage.PriceSnapshot;
+import com.spglobal.prices.storage.PriceSubscription;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Service API for consuming latest price values.
@@ -23,4 +34,129 @@ public interface PriceConsumerService {
      */
     ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids);
 
+    /**
+     * Returns the latest price records for the given instrument IDs, keeping only the requested
+     * payload fields, for consumers that need a few fields out of wide payloads.
+     * <p>
+     * Fields a payload does not have are left out of it; instruments without a price do not
+     * appear in the map.
+     *
+     * @param ids    the set of instrument IDs to fetch
+     * @param fields the payload fields to return
+     * @return a map from instrument ID to the projected immutable payload
+     */
+    ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids, Set<String> fields);
+
+    /**
+     * Passes the latest price records for the given instrument IDs to {@code sink} instead of
+     * returning a map, for consumers that look prices up at high rates.
+     * <p>
+     * Only completed batches are visible, and all records come from one snapshot. Missing IDs
+     * are not passed to the sink. A list implementing {@link java.util.RandomAccess} can be
+     * reused across calls so that steady-state lookups allocate nothing.
+     *
+     * @param ids  the instrument IDs to fetch
+     * @param sink receives each instrument that has a price, with a read-only payload view
+     * @return the number of instruments passed to the sink
+     */
+    int getLatest(Collection<String> ids, PriceSink sink);
+
+    /**
+     * Returns the prices the given instruments had at a past point in time, i.e. the payload of
+     * each instrument's newest record with {@code asOf} at or before {@code asOf}.
+     * <p>
+     * Only the bounded recent history kept by the storage is searched; instruments with no record
+     * that old in it are left out.
+     *
+     * @param ids  the set of instrument IDs to fetch
+     * @param asOf the point in time to read
+     * @return a map from instrument ID to immutable payload map
+     * @throws UnsupportedOperationException if the storage keeps no price history, e.g. a
+     *                                       {@code PrimaryPriceStorageImpl} without a
+     *                                       {@code historyDepth}
+     */
+    ImmutableMap<String, ImmutableMap<String, Object>> getAsOf(Set<String> ids, Instant asOf);
+
+    /**
+     * Registers a watchlist that is polled repeatedly. The IDs are resolved once, so every
+     * {@link PreparedPriceQuery#getLatest()} is much cheaper than {@link #getLatest(Set)} with
+     * the same set; instruments without a price yet are included once they appear.
+     *
+     * @param ids the set of instrument IDs to watch
+     * @return a query returning the latest prices of those instruments
+     */
+    PreparedPriceQuery prepare(Set<String> ids);
+
+    /**
+     * Returns the version of the snapshot currently visible to consumers.
+     *
+     * @return the current snapshot version
+     */
+    long getVersion();
+
+    /**
+     * Waits for a snapshot version, typically one returned by
+     * {@link com.spglobal.prices.producer.PriceProducerService#completeBatch(String)}.
+     * <p>
+     * Once the returned future completes, every subsequent {@link #getLatest(Set)} call sees
+     * that version or a newer one. Use {@link CompletableFuture#get(long, java.util.concurrent.TimeUnit)}
+     * or {@link CompletableFuture#orTimeout} to bound the wait.
+     *
+     * @param version the snapshot version to wait for
+     * @return a future completed with a visible version greater than or equal to {@code version}
+     */
+    CompletableFuture<Long> awaitVersion(long version);
+
+    /**
+     * Returns a handle on the currently visible snapshot.
+     * <p>
+     * All reads through the handle see the same version, so a large set of instruments can be
+     * fetched in several calls, iterated or sized without mixing batches. Close the handle when
+     * done.
+     *
+     * @return an immutable snapshot handle
+     */
+    PriceSnapshot snapshot();
+
+    /**
+     * Returns the instruments updated after snapshot {@code version}, so that a polling consumer
+     * only pays for what changed. Start with version 0 and pass the returned
+     * {@link PriceChanges#version()} to the next call.
+     * <p>
+     * If {@code version} is older than the changes the storage retains, the result holds every
+     * instrument and is flagged {@link PriceChanges#full()}.
+     *
+     * @param version the snapshot version the caller is up to date with
+     * @return the changed instruments and the version they are taken from
+     */
+    PriceChanges getChangesSince(long version);
+
+    /**
+     * Subscribes to price changes of the given instruments.
+     * <p>
+     * The listener receives the current prices first and then one {@link PriceUpdate} per
+     * completed batch that changed any of the instruments, in version order and one at a time on
+     * {@code executor}. A slow listener receives conflated updates carrying the latest values
+     * instead of a growing backlog, and never delays producers.
+     *
+     * @param ids      the set of instrument IDs to watch
+     * @param executor runs the listener
+     * @param listener receives the updates
+     * @return a handle that stops delivery when closed
+     * @throws UnsupportedOperationException if the underlying storage does not support
+     *                                       subscriptions
+     */
+    PriceSubscription subscribe(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener);
+
+    /**
+     * Subscribes to price changes of all instruments, starting with the next completed batch.
+     *
+     * @param executor runs the listener
+     * @param listener receives the updates
+     * @return a handle that stops delivery when closed
+     * @throws UnsupportedOperationException if the underlying storage does not support
+     *                                       subscriptions
+     */
+    PriceSubscription subscribeAll(Executor executor, Consumer<PriceUpdate> listener);
+
 }
@@ -1,10 +1,21 @@
 package com.spglobal.prices.consumer;
 
 import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceChanges;
+import com.spglobal.prices.dto.PriceUpdate;
+import com.spglobal.prices.storage.PreparedPriceQuery;
+import com.spglobal.prices.storage.PriceSink;
+import com.spglobal.prices.storage.PriceSnapshot;
+import com.spglobal.prices.storage.PriceSubscription;
 import com.spglobal.prices.storage.PrimaryPriceStorage;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Implementation of PriceConsumerService using PrimaryPriceStorage.
@@ -27,4 +38,68 @@ public class PriceConsumerServiceImpl implements PriceConsumerService {
         return storage.getLatest(ids);
     }
 
+    @Override
+    public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids, Set<String> fields) {
+        Objects.requireNonNull(fields, "fields cannot be null");
+        if (ids == null || ids.isEmpty()) {
+            return ImmutableMap.of();
+        }
+        return storage.getLatest(ids, fields);
+    }
+
+    @Override
+    public int getLatest(Collection<String> ids, PriceSink sink) {
+        Objects.requireNonNull(sink, "sink cannot be null");
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        return storage.getLatest(ids, sink);
+    }
+
+    @Override
+    public ImmutableMap<String, ImmutableMap<String, Object>> getAsOf(Set<String> ids, Instant asOf) {
+        Objects.requireNonNull(asOf, "asOf cannot be null");
+        if (ids == null || ids.isEmpty()) {
+            return ImmutableMap.of();
+        }
+        return storage.getAsOf(ids, asOf);
+    }
+
+    @Override
+    public PreparedPriceQuery prepare(Set<String> ids) {
+        Objects.requireNonNull(ids, "ids cannot be null");
+        return storage.prepare(ids);
+    }
+
+    @Override
+    public long getVersion() {
+        return storage.getVersion();
+    }
+
+    @Override
+    public CompletableFuture<Long> awaitVersion(long version) {
+        return storage.awaitVersion(version);
+    }
+
+    @Override
+    public PriceSnapshot snapshot() {
+        return storage.snapshot();
+    }
+
+    @Override
+    public PriceChanges getChangesSince(long version) {
+        return storage.getChangesSince(version);
+    }
+
+    @Override
+    public PriceSubscription subscribe(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener) {
+        Objects.requireNonNull(ids, "ids cannot be null");
+        return storage.subscribe(ids, executor, listener);
+    }
+
+    @Override
+    public PriceSubscription subscribeAll(Executor executor, Consumer<PriceUpdate> listener) {
+        return storage.subscribeAll(executor, listener);
+    }
+
 }
@@ -0,0 +1,23 @@
+package com.spglobal.prices.dto;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Objects;
+
+/**
+ * Result of an incremental poll: the instruments updated after a given snapshot version.
+ * <p>
+ * Pass {@link #version()} to the next poll to continue from here. Records are never removed, so
+ * applying the returned payloads on top of the state from the previous poll always yields the
+ * state at {@code version}, whether or not the result is {@link #full()}.
+ *
+ * @param version the snapshot version the changes are taken from
+ * @param full    {@code true} if the changes could not be determined incrementally and
+ *                {@code prices} holds every instrument
+ * @param prices  instrument id to its latest payload
+ */
+public record PriceChanges(long version, boolean full, ImmutableMap<String, ImmutableMap<String, Object>> prices) {
+    public PriceChanges {
+        Objects.requireNonNull(prices, "prices cannot be null");
+    }
+}
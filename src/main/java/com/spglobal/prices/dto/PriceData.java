@@ -26,4 +26,16 @@ public record PriceData(String id,
         Objects.requireNonNull(asOf, "asOf cannot be null");
         payload = payload == null ? ImmutableMap.of() : ImmutableMap.copyOf(payload);
     }
+
+    /**
+     * Last-value rule: returns the record with the later {@code asOf}. On a tie the current
+     * record is kept, so re-applying the same data never changes the result.
+     *
+     * @param current   the record held so far
+     * @param candidate the incoming record for the same instrument
+     * @return the record that should be retained
+     */
+    public static PriceData latest(PriceData current, PriceData candidate) {
+        return candidate.asOf().isAfter(current.asOf()) ? candidate : current;
+    }
 }
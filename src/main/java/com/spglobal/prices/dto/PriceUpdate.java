@@ -0,0 +1,22 @@
+package com.spglobal.prices.dto;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Objects;
+
+/**
+ * Change notification delivered to a price subscription.
+ * <p>
+ * Holds the latest payload of every subscribed instrument that changed since the previous
+ * update delivered to the same subscription. When the subscriber keeps up, each update covers
+ * exactly one committed snapshot version; a slow subscriber receives conflated updates covering
+ * several versions, always carrying the newest values.
+ *
+ * @param version the snapshot version the values are taken from
+ * @param prices  instrument id to its latest payload, for the changed instruments only
+ */
+public record PriceUpdate(long version, ImmutableMap<String, ImmutableMap<String, Object>> prices) {
+    public PriceUpdate {
+        Objects.requireNonNull(prices, "prices cannot be null");
+    }
+}
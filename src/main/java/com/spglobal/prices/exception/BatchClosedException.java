@@ -0,0 +1,20 @@
+package com.spglobal.prices.exception;
+
+/**
+ * Exception thrown when an operation needs an open batch but the batch has already moved on:
+ * it is being completed, is completed, or was cancelled or expired.
+ * <p>
+ * As a {@link NoSuchBatchException}, it is handled wherever an unknown batch is.
+ */
+public class BatchClosedException extends NoSuchBatchException {
+
+    /**
+     * Constructs a new exception with a detailed message.
+     *
+     * @param batchId the ID of the batch
+     * @param state   the name of the state the batch was found in
+     */
+    public BatchClosedException(String batchId, String state) {
+        super("Batch " + batchId + " is no longer open: " + state, null);
+    }
+}
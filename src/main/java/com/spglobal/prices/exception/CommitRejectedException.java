@@ -0,0 +1,19 @@
+package com.spglobal.prices.exception;
+
+/**
+ * Exception thrown when a batch is not accepted for commit because the storage's commit queue
+ * is full and its backpressure policy does not wait, or stopped waiting.
+ * <p>
+ * Nothing of the batch has been applied; it can be submitted again once the queue drains.
+ */
+public class CommitRejectedException extends RuntimeException {
+
+    /**
+     * Constructs a new exception with a detailed message.
+     *
+     * @param message why the batch was rejected
+     */
+    public CommitRejectedException(String message) {
+        super(message);
+    }
+}
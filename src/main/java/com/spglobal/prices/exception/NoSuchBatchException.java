@@ -13,4 +13,14 @@ public class NoSuchBatchException extends RuntimeException {
     public NoSuchBatchException(String batchId) {
         super("No such batch: " + batchId);
     }
+
+    /**
+     * Constructs a new exception with a message given by a subclass.
+     *
+     * @param message the detail message
+     * @param cause   the cause, or {@code null}
+     */
+    protected NoSuchBatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
\ No newline at end of file
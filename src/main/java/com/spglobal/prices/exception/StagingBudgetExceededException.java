@@ -0,0 +1,20 @@
+package com.spglobal.prices.exception;
+
+/**
+ * Exception thrown when a chunk cannot be staged because it would exceed the staging budget,
+ * either for its batch or for all open batches together.
+ * <p>
+ * The chunk is not staged; the batch stays open and can still be completed or cancelled.
+ */
+public class StagingBudgetExceededException extends RuntimeException {
+
+    /**
+     * Constructs a new exception with a detailed message.
+     *
+     * @param batchId the ID of the batch the chunk was uploaded to
+     * @param reason  which budget was exceeded
+     */
+    public StagingBudgetExceededException(String batchId, String reason) {
+        super("Cannot stage chunk for batch " + batchId + ": " + reason);
+    }
+}
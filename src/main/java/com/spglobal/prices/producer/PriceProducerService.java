@@ -1,9 +1,16 @@
 package com.spglobal.prices.producer;
 
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.exception.BatchClosedException;
+import com.spglobal.prices.exception.CommitRejectedException;
 import com.spglobal.prices.exception.NoSuchBatchException;
+import com.spglobal.prices.exception.StagingBudgetExceededException;
+import com.spglobal.prices.storage.BatchHandle;
+import com.spglobal.prices.storage.CommitPriority;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service API for producing latest price values.
@@ -14,12 +21,24 @@ import java.util.List;
 public interface PriceProducerService {
 
     /**
-     * Starts a new batch and returns its unique ID (UUID string).
+     * Starts a new batch and returns its unique ID.
      *
      * @return a new batch ID
      */
     String startBatch();
 
+    /**
+     * Starts a new batch and returns a handle to it.
+     * <p>
+     * Uploads and completion through the handle reach the batch directly instead of looking up
+     * its ID, and calls made after the batch was completed or cancelled are rejected with
+     * {@link BatchClosedException}. The handle's {@link BatchHandle#id() ID} works with the
+     * ID-based methods as well.
+     *
+     * @return a handle to the new batch
+     */
+    BatchHandle openBatch();
+
 
     /**
      * Uploads a chunk of price records for the given batch.
@@ -29,20 +48,89 @@ public interface PriceProducerService {
      *
      * @param batchId the ID of the batch to upload to
      * @param chunk   the list of price records to upload
-     * @throws NoSuchBatchException if the batch with the given ID does not exist
+     * @throws NoSuchBatchException           if the batch with the given ID does not exist
+     * @throws StagingBudgetExceededException if the chunk does not fit in the staging budget; the
+     *                                        batch stays open, so the upload can be retried later or
+     *                                        the batch cancelled
      */
     void uploadChunk(String batchId, List<PriceData> chunk);
 
+    /**
+     * Uploads a chunk of price records for the batch of the handle, as
+     * {@link #uploadChunk(String, List)}.
+     *
+     * @param batch the handle of the batch to upload to
+     * @param chunk the list of price records to upload
+     * @throws BatchClosedException           if the batch is no longer open
+     * @throws StagingBudgetExceededException if the chunk does not fit in the staging budget
+     */
+    void uploadChunkTo(BatchHandle batch, List<PriceData> chunk);
+
 
     /**
      * Completes the batch, making all its prices visible atomically to consumers.
      * <p>
-     * After completion, producers cannot add new chunks to this batch.
+     * After completion, producers cannot add new chunks to this batch. The prices become
+     * visible asynchronously; the returned receipt completes with the snapshot version in which
+     * they are visible, so producers can pipeline batches and still know when each one landed.
+     * <p>
+     * When the storage's commit queue is full, this call may wait for room, or the receipt fails
+     * with {@link CommitRejectedException}. A rejected batch stays open with its prices, so the
+     * producer can retry the completion later, keep uploading to it, or cancel it. Chunks
+     * uploaded while the completion is in progress are rejected.
      *
      * @param batchId the ID of the batch to complete
+     * @return a future completed with the snapshot version containing the batch
+     * @throws NoSuchBatchException if the batch with the given ID does not exist
+     */
+    CompletableFuture<Long> completeBatch(String batchId);
+
+    /**
+     * Completes the batch as {@link #completeBatch(String)}, committing it in the given lane.
+     * <p>
+     * Use {@link CommitPriority#URGENT} for small corrections that must not wait behind bulk
+     * loads. The batch is still applied atomically and under the last-value rule; only records
+     * with equal {@code asOf} timestamps may resolve differently, in commit order.
+     *
+     * @param batchId  the ID of the batch to complete
+     * @param priority the lane of the batch
+     * @return a future completed with the snapshot version containing the batch
      * @throws NoSuchBatchException if the batch with the given ID does not exist
      */
-    void completeBatch(String batchId);
+    CompletableFuture<Long> completeBatch(String batchId, CommitPriority priority);
+
+    /**
+     * Completes the batch of the handle, as {@link #completeBatch(String, CommitPriority)}.
+     *
+     * @param batch    the handle of the batch to complete
+     * @param priority the lane of the batch
+     * @return a future completed with the snapshot version containing the batch
+     * @throws BatchClosedException if the batch is no longer open
+     */
+    CompletableFuture<Long> completeBatchOf(BatchHandle batch, CommitPriority priority);
+
+    /**
+     * Publishes a single price without a batch, for streaming ticks.
+     * <p>
+     * The price is applied atomically for its instrument and under the same {@code asOf} rule as
+     * batches. Prices published close together are committed together, and a price superseded
+     * by a newer one for the same instrument before the commit is never visible.
+     *
+     * @param price the price record to publish
+     * @return a future completed with a snapshot version in which the price, or a newer one for
+     * its instrument, is visible
+     */
+    CompletableFuture<Long> publish(PriceData price);
+
+    /**
+     * Publishes several prices without a batch, as {@link #publish(PriceData)} does. Unlike a
+     * batch, the prices are not guaranteed to become visible in the same version.
+     *
+     * @param prices the price records to publish
+     * @return a future completed with a snapshot version in which all the prices, or newer ones
+     * for their instruments, are visible
+     */
+    CompletableFuture<Long> publishAll(Collection<PriceData> prices);
 
 
     /**
@@ -52,4 +140,12 @@ public interface PriceProducerService {
      */
     void cancelBatch(String batchId) throws NoSuchBatchException;
 
+    /**
+     * Cancels the batch of the handle and discards all staged data.
+     *
+     * @param batch the handle of the batch to cancel
+     * @throws BatchClosedException if the batch is no longer open
+     */
+    void cancelBatchOf(BatchHandle batch);
+
 }
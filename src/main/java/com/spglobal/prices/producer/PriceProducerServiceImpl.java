@@ -2,11 +2,15 @@ package com.spglobal.prices.producer;
 
 import com.spglobal.prices.dto.PriceData;
 import com.spglobal.prices.exception.NoSuchBatchException;
+import com.spglobal.prices.storage.BatchHandle;
+import com.spglobal.prices.storage.CommitPriority;
 import com.spglobal.prices.storage.PriceBatchBufferStorage;
 import com.spglobal.prices.storage.PrimaryPriceStorage;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implementation of {@link PriceProducerService}.
@@ -28,6 +32,11 @@ public class PriceProducerServiceImpl implements PriceProducerService {
         return bufferStorage.startBatch();
     }
 
+    @Override
+    public BatchHandle openBatch() {
+        return bufferStorage.openBatch();
+    }
+
     @Override
     public void uploadChunk(String batchId, List<PriceData> chunk) throws NoSuchBatchException {
         validateParameters(batchId, chunk);
@@ -39,15 +48,48 @@ public class PriceProducerServiceImpl implements PriceProducerService {
     }
 
     @Override
-    public void completeBatch(String batchId) throws NoSuchBatchException {
+    public void uploadChunkTo(BatchHandle batch, List<PriceData> chunk) {
+        Objects.requireNonNull(batch, "batch cannot be null");
+        Objects.requireNonNull(chunk, "chunk cannot be null");
+        bufferStorage.addChunkTo(batch, chunk);
+    }
+
+    @Override
+    public CompletableFuture<Long> completeBatch(String batchId) throws NoSuchBatchException {
+        return completeBatch(batchId, CommitPriority.NORMAL);
+    }
+
+    @Override
+    public CompletableFuture<Long> completeBatch(String batchId, CommitPriority priority) throws NoSuchBatchException {
         validateParameters(batchId);
-        List<PriceData> batch = bufferStorage.completeBatch(batchId);
+        Objects.requireNonNull(priority, "priority cannot be null");
+        return bufferStorage.completeBatch(batchId, batch -> commit(batch, priority));
+    }
 
+    @Override
+    public CompletableFuture<Long> completeBatchOf(BatchHandle batch, CommitPriority priority) {
+        Objects.requireNonNull(batch, "batch cannot be null");
+        Objects.requireNonNull(priority, "priority cannot be null");
+        return bufferStorage.completeBatchOf(batch, records -> commit(records, priority));
+    }
+
+    private CompletableFuture<Long> commit(List<PriceData> batch, CommitPriority priority) {
         if (batch == null || batch.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(storage.getVersion());
         }
+        return storage.updateRecords(batch, priority);
+    }
 
-        storage.updateRecords(batch);
+    @Override
+    public CompletableFuture<Long> publish(PriceData price) {
+        Objects.requireNonNull(price, "price cannot be null");
+        return storage.publish(price);
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAll(Collection<PriceData> prices) {
+        Objects.requireNonNull(prices, "prices cannot be null");
+        return storage.publishAll(prices);
     }
 
     @Override
@@ -56,6 +98,12 @@ public class PriceProducerServiceImpl implements PriceProducerService {
         bufferStorage.cancelBatch(batchId);
     }
 
+    @Override
+    public void cancelBatchOf(BatchHandle batch) {
+        Objects.requireNonNull(batch, "batch cannot be null");
+        bufferStorage.cancelBatchOf(batch);
+    }
+
     private void validateParameters(String batchId, List<PriceData> chunk) {
         validateParameters(batchId);
         Objects.requireNonNull(chunk, "chunk cannot be null");
@@ -0,0 +1,26 @@
+package com.spglobal.prices.storage;
+
+/**
+ * What a bounded commit queue does with a batch that does not fit.
+ *
+ * @see PrimaryPriceStorageOptions#backpressurePolicy()
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * The submitting thread waits until the writer has made room. Producers slow down to the
+     * writer's pace.
+     */
+    BLOCK,
+
+    /**
+     * The submitting thread waits up to {@link PrimaryPriceStorageOptions#backpressureTimeout()};
+     * if there is still no room, the batch is rejected.
+     */
+    TIMEOUT,
+
+    /**
+     * The batch is rejected right away.
+     */
+    REJECT
+}
@@ -0,0 +1,70 @@
+package com.spglobal.prices.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reference to a batch opened with {@link PriceBatchBufferStorage#openBatch()}.
+ * <p>
+ * The handle points directly at the batch's staging buffer, so operations through it skip the
+ * ID lookup, and it carries the batch's {@link BatchState}. Handles are only valid with the
+ * storage that opened them.
+ */
+public final class BatchHandle {
+    static final long CLOSED = -1;
+
+    private final String id;
+    private final Object owner;
+    private final AtomicReference<BatchState> state = new AtomicReference<>(BatchState.OPEN);
+
+    /**
+     * Replaced only when a completion is given up and the batch reopens.
+     */
+    volatile StagingBuffer buffer;
+
+    /**
+     * Records charged to the staging budget, or {@link #CLOSED} once the charge is returned.
+     */
+    final AtomicLong records = new AtomicLong();
+
+    volatile long lastActivity = System.nanoTime();
+
+    BatchHandle(String id, Object owner, StagingBuffer buffer) {
+        this.id = id;
+        this.owner = owner;
+        this.buffer = buffer;
+    }
+
+    /**
+     * The batch ID, also accepted by the ID-based operations of the storage that opened it.
+     */
+    public String id() {
+        return id;
+    }
+
+    public BatchState state() {
+        return state.get();
+    }
+
+    boolean isOwnedBy(Object storage) {
+        return owner == storage;
+    }
+
+    /**
+     * Moves the batch from {@code from} to {@code to}.
+     *
+     * @return {@code false} if the batch was not in {@code from}
+     */
+    boolean transition(BatchState from, BatchState to) {
+        return state.compareAndSet(from, to);
+    }
+
+    void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchHandle[" + id + ", " + state.get() + "]";
+    }
+}
@@ -0,0 +1,30 @@
+package com.spglobal.prices.storage;
+
+/**
+ * Lifecycle of a staged batch. A batch starts {@link #OPEN} and moves forward, except that a
+ * completion whose commit is rejected returns it from {@link #COMPLETING} to {@link #OPEN}. Each
+ * transition is taken by exactly one caller, so concurrent or out-of-order calls on the same
+ * batch are rejected instead of racing.
+ */
+public enum BatchState {
+
+    /**
+     * Accepts chunks.
+     */
+    OPEN,
+
+    /**
+     * Being completed; chunks are rejected.
+     */
+    COMPLETING,
+
+    /**
+     * Completed; its records have been handed to the primary storage.
+     */
+    COMPLETED,
+
+    /**
+     * Cancelled by the producer or discarded after its TTL; its records are gone.
+     */
+    CANCELLED
+}
@@ -0,0 +1,70 @@
+package com.spglobal.prices.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded journal of the instrument codes changed by each committed version.
+ * <p>
+ * The writer {@link #append appends} a version before publishing it; once the codes held exceed
+ * the capacity, the oldest versions are dropped. Readers ask for the versions after a given one:
+ * the entries are immutable, so the lock is only held while collecting references to them and
+ * an incremental poll costs time proportional to the changes it returns.
+ */
+final class ChangeJournal {
+    private final int capacity;
+
+    // Guarded by this.
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long retainedCodes;
+    private long floor;
+
+    /**
+     * @param capacity maximum number of codes retained over all versions
+     * @param floor    the first version whose successors are journaled
+     */
+    ChangeJournal(int capacity, long floor) {
+        this.capacity = capacity;
+        this.floor = floor;
+    }
+
+    /**
+     * Records the codes changed by {@code version}. Versions must be appended in increasing order.
+     */
+    synchronized void append(long version, int[] codes) {
+        entries.addLast(new Entry(version, codes));
+        retainedCodes += codes.length;
+        while (retainedCodes > capacity) {
+            Entry evicted = entries.removeFirst();
+            retainedCodes -= evicted.codes().length;
+            floor = evicted.version();
+        }
+    }
+
+    /**
+     * Returns the code arrays of the versions in {@code (since, upTo]}, or {@code null} if some
+     * of them are no longer retained.
+     */
+    synchronized List<int[]> changesBetween(long since, long upTo) {
+        if (since < floor) {
+            return null;
+        }
+        List<int[]> changes = new ArrayList<>();
+        Iterator<Entry> newestFirst = entries.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Entry entry = newestFirst.next();
+            if (entry.version() <= since) {
+                break;
+            }
+            if (entry.version() <= upTo) {
+                changes.add(entry.codes());
+            }
+        }
+        return changes;
+    }
+
+    private record Entry(long version, int[] codes) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.spglobal.prices.storage;
+
+import com.spglobal.prices.dto.PriceData;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link StagingMode#RETAIN_ALL} buffer that stages whole chunks instead of single records.
+ * <p>
+ * Each uploaded chunk is copied once into an array and pushed onto a lock-free stack with a
+ * single compare-and-set, so staging costs one small node per chunk rather than one queue node
+ * and one CAS per record. {@link #close()} swaps the head for a sentinel in one atomic step:
+ * every chunk pushed before it is part of the batch, every later push fails.
+ * <p>
+ * The completed batch is a {@link ChunkedList} over the staged arrays; records are not copied
+ * again.
+ */
+final class ChunkArrayStagingBuffer implements StagingBuffer {
+    private static final Chunk CLOSED = new Chunk(new PriceData[0], null, 0);
+
+    private final AtomicReference<Chunk> head = new AtomicReference<>();
+
+    @Override
+    public boolean add(List<PriceData> chunk) {
+        PriceData[] records = chunk.toArray(new PriceData[0]);
+        for (PriceData record : records) {
+            Objects.requireNonNull(record, "chunk cannot contain null records");
+        }
+
+        Chunk current;
+        Chunk next;
+        do {
+            current = head.get();
+            if (current == CLOSED) {
+                return false;
+            }
+            next = new Chunk(records, current, current == null ? records.length : current.total + records.length);
+        } while (!head.compareAndSet(current, next));
+        return true;
+    }
+
+    @Override
+    public List<PriceData> close() {
+        Chunk last = head.getAndSet(CLOSED);
+        if (last == null) {
+            return List.of();
+        }
+        if (last == CLOSED) {
+            throw new IllegalStateException("Staging buffer is already closed");
+        }
+
+        // The stack holds chunks newest first; lay them out in arrival order.
+        int count = 0;
+        for (Chunk c = last; c != null; c = c.next) {
+            count++;
+        }
+        PriceData[][] chunks = new PriceData[count][];
+        for (Chunk c = last; c != null; c = c.next) {
+            chunks[--count] = c.records;
+        }
+        return new ChunkedList(chunks, last.total);
+    }
+
+    private record Chunk(PriceData[] records, Chunk next, int total) {
+    }
+}
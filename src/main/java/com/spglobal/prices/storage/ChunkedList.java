@@ -0,0 +1,88 @@
+package com.spglobal.prices.storage;
+
+import com.spglobal.prices.dto.PriceData;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Immutable flattened view over a sequence of record arrays.
+ * <p>
+ * Random access is a binary search over chunk offsets; iteration walks the arrays directly.
+ * The arrays must not be modified once handed to this list.
+ */
+final class ChunkedList extends AbstractList<PriceData> implements RandomAccess {
+    private final PriceData[][] chunks;
+    private final int[] offsets;
+    private final int size;
+
+    ChunkedList(PriceData[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+        this.offsets = new int[chunks.length];
+        int offset = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            offsets[i] = offset;
+            offset += chunks[i].length;
+        }
+    }
+
+    @Override
+    public PriceData get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        int chunk = Arrays.binarySearch(offsets, index);
+        if (chunk < 0) {
+            chunk = -chunk - 2;
+        }
+        // Skip empty chunks sharing the same offset.
+        while (index - offsets[chunk] >= chunks[chunk].length) {
+            chunk++;
+        }
+        return chunks[chunk][index - offsets[chunk]];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(Consumer<? super PriceData> action) {
+        for (PriceData[] chunk : chunks) {
+            for (PriceData record : chunk) {
+                action.accept(record);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<PriceData> iterator() {
+        return new Iterator<>() {
+            private int chunk;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk < chunks.length && index >= chunks[chunk].length) {
+                    chunk++;
+                    index = 0;
+                }
+                return chunk < chunks.length;
+            }
+
+            @Override
+            public PriceData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunks[chunk][index++];
+            }
+        };
+    }
+}
@@ -0,0 +1,371 @@
+package com.spglobal.prices.storage;
+
+import com.spglobal.prices.exception.CommitRejectedException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Single-writer commit queue with group commit.
+ * <p>
+ * Producers {@link #submit(Object) submit} batches from any thread. A dedicated daemon thread
+ * takes the first pending batch, drains everything else that is already queued and hands the
+ * whole group to the {@link GroupCommitter}, which applies it in one pass and publishes one
+ * snapshot. All receipts of the group complete with that snapshot's version.
+ * <p>
+ * Under bursty load this turns N snapshot rebuilds into one, while each batch still becomes
+ * visible atomically because a group is published as a whole.
+ * <p>
+ * The queue can be bounded by weight, typically the number of records. Each batch takes permits
+ * for its weight on submission and returns them once its group is committed; a batch heavier
+ * than the whole capacity takes all of it. When there is no room, the {@link BackpressurePolicy}
+ * decides whether the producer waits, waits for a while, or gets a receipt failed with
+ * {@link CommitRejectedException}.
+ * <p>
+ * Batches reach the writer through a preallocated {@link CommitRing} of {@value #RING_SIZE}
+ * slots rather than a linked blocking queue, so a hand-off takes no lock and allocates no queue
+ * node. How the idle writer waits for the next batch is chosen by a {@link WaitStrategy}. When
+ * the ring itself is full, producers wait for the writer whatever the backpressure policy.
+ * <p>
+ * Each batch has a {@link CommitPriority}. The writer moves everything published in the ring to
+ * one backlog per priority and commits urgent batches first, in groups of their own, but lets a
+ * normal group through after {@value #MAX_URGENT_STREAK} urgent groups in a row. Normal groups
+ * stop growing at {@value #MAX_GROUP_WEIGHT} weight, so an urgent batch waits for at most one
+ * bounded group, or a single larger batch. Reordering across lanes does not change the
+ * outcome of a last-value merge, except that equal timestamps resolve in commit order.
+ *
+ * @param <T> the batch type
+ */
+final class CommitPipeline<T> {
+
+    /**
+     * Upper bound on batches merged into a single snapshot, so one huge burst cannot delay the
+     * first receipts indefinitely.
+     */
+    static final int MAX_GROUP_SIZE = 1024;
+
+    /**
+     * Slots in the ring between producers and the writer.
+     */
+    static final int RING_SIZE = 4096;
+
+    /**
+     * Weight beyond which a group of normal batches takes no further batch.
+     */
+    static final int MAX_GROUP_WEIGHT = 1 << 20;
+
+    /**
+     * Urgent groups committed in a row after which a waiting normal group goes first.
+     */
+    static final int MAX_URGENT_STREAK = 4;
+
+    /**
+     * Applies a group of batches and publishes them as one snapshot.
+     */
+    @FunctionalInterface
+    interface GroupCommitter<T> {
+
+        /**
+         * Called on the writer thread. Batches the committer cannot apply should be
+         * {@link PendingCommit#fail(Throwable) failed} individually; the rest complete with
+         * the returned version.
+         *
+         * @param group the pending batches, in submission order
+         * @return the version of the snapshot in which the group is visible
+         */
+        long commit(List<PendingCommit<T>> group);
+    }
+
+    /**
+     * A queued batch together with the receipt handed back to its producer.
+     */
+    static final class PendingCommit<T> {
+        private final T batch;
+        private final int weight;
+        private final boolean prepaid;
+        private final CommitPriority priority;
+        private final long submittedNanos = System.nanoTime();
+        private final CompletableFuture<Long> receipt = new CompletableFuture<>();
+
+        PendingCommit(T batch) {
+            this(batch, 0, false, CommitPriority.NORMAL);
+        }
+
+        private PendingCommit(T batch, int weight, boolean prepaid, CommitPriority priority) {
+            this.batch = batch;
+            this.weight = weight;
+            this.prepaid = prepaid;
+            this.priority = priority;
+        }
+
+        T batch() {
+            return batch;
+        }
+
+        void fail(Throwable cause) {
+            receipt.completeExceptionally(cause);
+        }
+
+        boolean isFailed() {
+            return receipt.isCompletedExceptionally();
+        }
+    }
+
+    private final CommitRing<PendingCommit<T>> ring;
+    private final GroupCommitter<T> committer;
+    private final ToIntFunction<T> weigher;
+    private final int capacity;
+    private final BackpressurePolicy policy;
+    private final Duration timeout;
+
+    /**
+     * Free capacity, or {@code null} when the queue is unbounded.
+     */
+    private final Semaphore permits;
+
+    private final AtomicLong queuedWeight = new AtomicLong();
+
+    /**
+     * Writer-owned: batches taken from the ring but not committed yet, per priority.
+     */
+    private final ArrayDeque<PendingCommit<T>> urgentBacklog = new ArrayDeque<>();
+    private final ArrayDeque<PendingCommit<T>> normalBacklog = new ArrayDeque<>();
+
+    /**
+     * Writer-owned: urgent groups committed since the last normal one.
+     */
+    private int urgentStreak;
+
+    /**
+     * Size and oldest entry of the backlogs, published by the writer for {@link #stats()}.
+     */
+    private volatile int backlogSize;
+    private volatile PendingCommit<T> backlogOldest;
+
+    private volatile long lastCommitLagNanos;
+
+    /**
+     * Creates a pipeline with an unbounded queue and a blocking writer.
+     */
+    CommitPipeline(String name, GroupCommitter<T> committer) {
+        this(name, committer, batch -> 1, Integer.MAX_VALUE, BackpressurePolicy.BLOCK, Duration.ZERO,
+                WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * Creates a pipeline whose queue holds batches up to a total weight.
+     *
+     * @param weigher  weight of a batch, typically its record count
+     * @param capacity maximum total weight of queued batches; {@link Integer#MAX_VALUE} for unbounded
+     * @param policy   what {@link #submit} does when a batch does not fit
+     * @param timeout  how long {@link BackpressurePolicy#TIMEOUT} waits for room
+     * @param waitStrategy how the writer waits for batches
+     */
+    CommitPipeline(String name, GroupCommitter<T> committer, ToIntFunction<T> weigher, int capacity,
+                   BackpressurePolicy policy, Duration timeout, WaitStrategy waitStrategy) {
+        this.committer = Objects.requireNonNull(committer, "committer cannot be null");
+        this.weigher = Objects.requireNonNull(weigher, "weigher cannot be null");
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.policy = Objects.requireNonNull(policy, "policy cannot be null");
+        this.timeout = Objects.requireNonNull(timeout, "timeout cannot be null");
+        this.permits = capacity == Integer.MAX_VALUE ? null : new Semaphore(capacity, true);
+        this.ring = new CommitRing<>(RING_SIZE, waitStrategy);
+
+        Thread writer = new Thread(this::run, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a normal batch for the writer thread.
+     *
+     * @see #submit(Object, CommitPriority)
+     */
+    CompletableFuture<Long> submit(T batch) {
+        return submit(batch, CommitPriority.NORMAL);
+    }
+
+    /**
+     * Queues a batch for the writer thread, applying the backpressure policy if the queue is
+     * full. With {@link BackpressurePolicy#BLOCK} and {@link BackpressurePolicy#TIMEOUT} the
+     * calling thread may wait here.
+     *
+     * @return a receipt completed with the version in which the batch is visible, or failed with
+     * {@link CommitRejectedException} if the batch was not queued
+     */
+    CompletableFuture<Long> submit(T batch, CommitPriority priority) {
+        Objects.requireNonNull(priority, "priority cannot be null");
+        int weight = Math.min(Math.max(weigher.applyAsInt(batch), 1), capacity);
+        if (permits != null && !admit(weight)) {
+            return CompletableFuture.failedFuture(new CommitRejectedException(
+                    "Commit queue is full: " + queuedWeight.get() + " of " + capacity + " queued"));
+        }
+        PendingCommit<T> pending = new PendingCommit<>(batch, weight, false, priority);
+        queuedWeight.addAndGet(weight);
+        ring.put(pending);
+        return pending.receipt;
+    }
+
+    /**
+     * Takes room for records ahead of the batch that will carry them, applying the backpressure
+     * policy like {@link #submit(Object, CommitPriority)}. The room is given back when that batch,
+     * queued with {@link #submitPrepaid}, has been committed.
+     *
+     * @return {@code false} if there was no room
+     */
+    boolean reserve(int weight) {
+        if (permits != null && !admit(weight)) {
+            return false;
+        }
+        queuedWeight.addAndGet(weight);
+        return true;
+    }
+
+    /**
+     * Gives back room taken by {@link #reserve} for records that no batch will carry.
+     */
+    void unreserve(int weight) {
+        queuedWeight.addAndGet(-weight);
+        if (permits != null) {
+            permits.release(weight);
+        }
+    }
+
+    /**
+     * Queues a batch whose records have already taken their room with {@link #reserve}, so it is
+     * never rejected. The batch may still be filled on the writer thread: its weight is taken
+     * after it has been committed, and that much room is given back.
+     */
+    CompletableFuture<Long> submitPrepaid(T batch, CommitPriority priority) {
+        Objects.requireNonNull(priority, "priority cannot be null");
+        PendingCommit<T> pending = new PendingCommit<>(batch, 0, true, priority);
+        ring.put(pending);
+        return pending.receipt;
+    }
+
+    private boolean admit(int weight) {
+        try {
+            return switch (policy) {
+                case BLOCK -> {
+                    permits.acquire(weight);
+                    yield true;
+                }
+                case TIMEOUT -> permits.tryAcquire(weight, timeout.toNanos(), TimeUnit.NANOSECONDS);
+                case REJECT -> permits.tryAcquire(weight);
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the current queue load.
+     */
+    CommitQueueStats stats() {
+        long now = System.nanoTime();
+        long age = Math.max(ageOf(ring.peek(), now), ageOf(backlogOldest, now));
+        return new CommitQueueStats(ring.size() + backlogSize, queuedWeight.get(), Duration.ofNanos(age),
+                Duration.ofNanos(lastCommitLagNanos));
+    }
+
+    private static long ageOf(PendingCommit<?> pending, long now) {
+        return pending == null ? 0 : now - pending.submittedNanos;
+    }
+
+    private void run() {
+        List<PendingCommit<T>> drained = new ArrayList<>();
+        List<PendingCommit<T>> group = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (urgentBacklog.isEmpty() && normalBacklog.isEmpty()) {
+                try {
+                    drained.add(ring.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            ring.drainTo(drained, RING_SIZE);
+            for (PendingCommit<T> pending : drained) {
+                (pending.priority == CommitPriority.URGENT ? urgentBacklog : normalBacklog).add(pending);
+            }
+            drained.clear();
+
+            nextGroup(group);
+            backlogSize = urgentBacklog.size() + normalBacklog.size();
+            backlogOldest = oldestOf(urgentBacklog.peekFirst(), normalBacklog.peekFirst());
+            commitGroup(group);
+            group.clear();
+        }
+    }
+
+    /**
+     * Moves the next group out of the backlogs: urgent batches if there are any, otherwise
+     * normal batches up to {@link #MAX_GROUP_WEIGHT}. After {@value #MAX_URGENT_STREAK} urgent
+     * groups in a row, waiting normal batches go first, so that they and the producers waiting
+     * for their permits are not starved by a steady urgent stream.
+     */
+    private void nextGroup(List<PendingCommit<T>> group) {
+        if (!urgentBacklog.isEmpty() && (urgentStreak < MAX_URGENT_STREAK || normalBacklog.isEmpty())) {
+            urgentStreak++;
+            while (group.size() < MAX_GROUP_SIZE && !urgentBacklog.isEmpty()) {
+                group.add(urgentBacklog.pollFirst());
+            }
+            return;
+        }
+        urgentStreak = 0;
+        long weight = 0;
+        while (group.size() < MAX_GROUP_SIZE && weight < MAX_GROUP_WEIGHT && !normalBacklog.isEmpty()) {
+            PendingCommit<T> pending = normalBacklog.pollFirst();
+            group.add(pending);
+            weight += pending.weight;
+        }
+    }
+
+    private static <T> PendingCommit<T> oldestOf(PendingCommit<T> a, PendingCommit<T> b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return a.submittedNanos - b.submittedNanos <= 0 ? a : b;
+    }
+
+    private void commitGroup(List<PendingCommit<T>> group) {
+        long version;
+        try {
+            version = committer.commit(group);
+            lastCommitLagNanos = System.nanoTime() - group.get(0).submittedNanos;
+        } catch (RuntimeException | Error e) {
+            // Nothing was published, so every batch of the group failed.
+            release(group);
+            for (PendingCommit<T> pending : group) {
+                pending.receipt.completeExceptionally(e);
+            }
+            return;
+        }
+        // Room is returned before the receipts complete, so a producer resubmitting from a
+        // receipt callback finds it.
+        release(group);
+        for (PendingCommit<T> pending : group) {
+            pending.receipt.complete(version);
+        }
+    }
+
+    private void release(List<PendingCommit<T>> group) {
+        int weight = 0;
+        for (PendingCommit<T> pending : group) {
+            weight += pending.prepaid ? weigher.applyAsInt(pending.batch) : pending.weight;
+        }
+        unreserve(weight);
+    }
+}
@@ -0,0 +1,21 @@
+package com.spglobal.prices.storage;
+
+/**
+ * Lane a batch takes to the storage's writer.
+ *
+ * @see PrimaryPriceStorage#updateRecords(java.util.List, CommitPriority)
+ */
+public enum CommitPriority {
+
+    /**
+     * Committed in submission order with other normal batches; suits bulk loads.
+     */
+    NORMAL,
+
+    /**
+     * Committed ahead of every queued normal batch, in groups of urgent batches only, so a small
+     * correction does not wait behind bulk loads. It still waits for the group the writer is
+     * already committing.
+     */
+    URGENT
+}
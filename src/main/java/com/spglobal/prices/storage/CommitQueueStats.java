@@ -0,0 +1,17 @@
+package com.spglobal.prices.storage;
+
+import java.time.Duration;
+
+/**
+ * Point-in-time load figures of a storage's commit queue.
+ *
+ * @param queuedBatches   batches waiting for the writer
+ * @param queuedRecords   records admitted but not yet published, including the group being
+ *                        committed; this is what counts against the queue bound
+ * @param oldestQueuedAge how long the oldest waiting batch has been queued, zero if none is
+ * @param lastCommitLag   time from submission to publication of the oldest batch of the last
+ *                        committed group, zero before the first commit
+ */
+public record CommitQueueStats(int queuedBatches, long queuedRecords, Duration oldestQueuedAge,
+                               Duration lastCommitLag) {
+}
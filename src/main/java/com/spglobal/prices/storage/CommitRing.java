@@ -0,0 +1,182 @@
+package com.spglobal.prices.storage;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated slots.
+ * <p>
+ * A producer claims the next sequence with one atomic increment, waits until the consumer has
+ * freed the slot one lap behind it, and publishes by writing the element into the slot. The
+ * consumer reads slots in sequence order; a non-null slot is a published element, and the
+ * consumer clears it before advancing its sequence, which hands the slot back to producers.
+ * There are no locks and no per-element nodes, and with {@link WaitStrategy#BLOCKING} a
+ * producer only unparks the consumer when it is actually parked.
+ * <p>
+ * Only one thread may call {@link #take()} and {@link #drainTo(Collection, int)}; producers may
+ * call {@link #put(Object)} from any thread.
+ *
+ * @param <E> element type
+ */
+final class CommitRing<E> {
+
+    /**
+     * Spins before {@link WaitStrategy#YIELDING} starts yielding.
+     */
+    private static final int SPIN_TRIES = 100;
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Last sequence handed to a producer.
+     */
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    /**
+     * Last sequence taken by the consumer. Written by the consumer only.
+     */
+    private volatile long consumed = -1;
+
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    /**
+     * @param capacity number of slots, a power of two
+     */
+    CommitRing(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy cannot be null");
+    }
+
+    /**
+     * Publishes an element, waiting for a free slot if the ring is full. The wait cannot be
+     * interrupted: the sequence is already claimed, and the consumer would stall on it.
+     */
+    void put(E element) {
+        Objects.requireNonNull(element, "element cannot be null");
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - slots.length();
+        int tries = 0;
+        while (wrapPoint > consumed) {
+            tries = waitForSlot(tries);
+        }
+        slots.set(index(sequence), element);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Takes the next element, waiting with the ring's strategy until one is published.
+     *
+     * @throws InterruptedException if the consumer thread is interrupted while waiting
+     */
+    E take() throws InterruptedException {
+        long next = consumed + 1;
+        int index = index(next);
+        E element;
+        int tries = 0;
+        while ((element = slots.get(index)) == null) {
+            tries = waitForElement(index, tries);
+        }
+        slots.set(index, null);
+        consumed = next;
+        return element;
+    }
+
+    /**
+     * Moves up to {@code maxElements} already published elements to {@code target}, without
+     * waiting.
+     *
+     * @return the number of elements moved
+     */
+    int drainTo(Collection<? super E> target, int maxElements) {
+        long next = consumed + 1;
+        int drained = 0;
+        while (drained < maxElements) {
+            int index = index(next);
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            target.add(element);
+            slots.set(index, null);
+            next++;
+            drained++;
+        }
+        if (drained > 0) {
+            consumed = next - 1;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns the oldest element not taken yet, or {@code null} if it is not published yet.
+     * Any thread may call this; the result can be stale by the time it is used.
+     */
+    E peek() {
+        return slots.get(index(consumed + 1));
+    }
+
+    /**
+     * Number of claimed sequences not taken yet, including ones still being published.
+     */
+    int size() {
+        return (int) Math.max(0, claimed.get() - consumed);
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private int waitForElement(int index, int tries) throws InterruptedException {
+        switch (waitStrategy) {
+            case BLOCKING -> {
+                consumer = Thread.currentThread();
+                consumerParked = true;
+                // Re-check after announcing the park: a producer either sees the flag or has
+                // already published, so no wake-up is lost.
+                if (slots.get(index) == null) {
+                    LockSupport.park(this);
+                }
+                consumerParked = false;
+            }
+            case YIELDING -> {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            case BUSY_SPIN -> Thread.onSpinWait();
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return tries + 1;
+    }
+
+    private int waitForSlot(int tries) {
+        switch (waitStrategy) {
+            case BLOCKING -> LockSupport.parkNanos(1_000);
+            case YIELDING -> {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            case BUSY_SPIN -> Thread.onSpinWait();
+        }
+        return tries + 1;
+    }
+}
@@ -0,0 +1,330 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only payload map storing numeric values in primitive slots laid out by a shared shape.
+ * <p>
+ * Most payloads carry the same few numeric fields (bid, ask, mid, size). A {@link Shape} holds
+ * the field names and value kinds once for all payloads with that layout, and each payload
+ * keeps only a {@code long[]} with one slot per field, so there is no per-instrument hash table,
+ * entry object or boxed number. Values read back with their original type ({@code Integer},
+ * {@code Long} or {@code Double}), so the map is equal to the one it was encoded from.
+ * <p>
+ * Shapes are registered in a {@link Shapes} registry owned by one storage, like its instrument
+ * dictionary, so the layouts of one storage never crowd out another's.
+ * {@link Shapes#encode(ImmutableMap)} falls back to the original map when a payload holds any
+ * other value type, or once the registry holds {@value #MAX_SHAPES} distinct shapes.
+ */
+final class CompactPayload extends AbstractMap<String, Object> {
+    private static final byte INT = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte UNSUPPORTED = -1;
+
+    private static final System.Logger LOGGER = System.getLogger(CompactPayload.class.getName());
+
+    /**
+     * Bounds a shape registry, which is never cleared.
+     */
+    static final int MAX_SHAPES = 1024;
+
+    private final Shape shape;
+    private final long[] slots;
+
+    private CompactPayload(Shape shape, long[] slots) {
+        this.shape = shape;
+        this.slots = slots;
+    }
+
+    /**
+     * Materializes a payload produced by {@link Shapes#encode(ImmutableMap)} as an {@link ImmutableMap}.
+     */
+    static ImmutableMap<String, Object> toImmutableMap(Map<String, Object> payload) {
+        if (payload instanceof ImmutableMap<String, Object> immutable) {
+            return immutable;
+        }
+        ImmutableMap.Builder<String, Object> builder = ImmutableMap.builderWithExpectedSize(payload.size());
+        payload.forEach(builder::put);
+        return builder.build();
+    }
+
+    /**
+     * Returns a projection keeping only the given fields of the payloads it is applied to.
+     */
+    static Projection projection(Set<String> fields) {
+        return new Projection(fields.stream().filter(Objects::nonNull).distinct().toArray(String[]::new));
+    }
+
+    @Override
+    public int size() {
+        return slots.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return shape.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = shape.indexOf(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        for (int i = 0; i < slots.length; i++) {
+            action.accept(shape.keys[i], valueAt(i));
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < slots.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= slots.length) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = next++;
+                        return new SimpleImmutableEntry<>(shape.keys[index], valueAt(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return slots.length;
+            }
+        };
+    }
+
+    private Object valueAt(int index) {
+        long slot = slots[index];
+        return switch (shape.kinds[index]) {
+            case INT -> (int) slot;
+            case LONG -> slot;
+            default -> Double.longBitsToDouble(slot);
+        };
+    }
+
+    private static byte kindOf(Object value) {
+        Class<?> type = value.getClass();
+        if (type == Integer.class) {
+            return INT;
+        }
+        if (type == Long.class) {
+            return LONG;
+        }
+        if (type == Double.class) {
+            return DOUBLE;
+        }
+        return UNSUPPORTED;
+    }
+
+    /**
+     * Registry of the shapes one storage has seen. Thread-safe.
+     */
+    static final class Shapes {
+        private final ConcurrentMap<Shape, Shape> shapes = new ConcurrentHashMap<>();
+        private final LongAdder fallbacks = new LongAdder();
+
+        /**
+         * Most payloads in a batch share one shape, so it is checked before the registry.
+         */
+        private volatile Shape lastShape;
+        private volatile boolean full;
+
+        /**
+         * Returns a compact map equal to {@code payload}, or {@code payload} itself when it
+         * cannot be encoded.
+         */
+        Map<String, Object> encode(ImmutableMap<String, Object> payload) {
+            if (payload.isEmpty()) {
+                return payload;
+            }
+            Shape shape = shapeOf(payload);
+            if (shape == null) {
+                return payload;
+            }
+            long[] slots = new long[shape.keys.length];
+            int i = 0;
+            for (Object value : payload.values()) {
+                slots[i] = shape.kinds[i] == DOUBLE
+                        ? Double.doubleToRawLongBits((Double) value)
+                        : ((Number) value).longValue();
+                i++;
+            }
+            return new CompactPayload(shape, slots);
+        }
+
+        /**
+         * Number of distinct shapes registered.
+         */
+        int size() {
+            return shapes.size();
+        }
+
+        /**
+         * Number of encodable payloads kept as plain maps because the registry was full.
+         */
+        long fallbacks() {
+            return fallbacks.sum();
+        }
+
+        private Shape shapeOf(ImmutableMap<String, Object> payload) {
+            Shape last = lastShape;
+            if (last != null && last.matches(payload)) {
+                return last;
+            }
+            String[] keys = new String[payload.size()];
+            byte[] kinds = new byte[payload.size()];
+            int i = 0;
+            for (Entry<String, Object> entry : payload.entrySet()) {
+                byte kind = kindOf(entry.getValue());
+                if (kind == UNSUPPORTED) {
+                    return null;
+                }
+                keys[i] = entry.getKey();
+                kinds[i] = kind;
+                i++;
+            }
+            Shape candidate = new Shape(keys, kinds);
+            Shape shape = shapes.get(candidate);
+            if (shape == null) {
+                if (shapes.size() >= MAX_SHAPES) {
+                    fallbacks.increment();
+                    if (!full) {
+                        full = true;
+                        LOGGER.log(System.Logger.Level.WARNING, "Payload shape registry is full at {0} shapes; "
+                                + "payloads with new layouts are stored uncompacted", MAX_SHAPES);
+                    }
+                    return null;
+                }
+                Shape existing = shapes.putIfAbsent(candidate, candidate);
+                shape = existing == null ? candidate : existing;
+            }
+            lastShape = shape;
+            return shape;
+        }
+    }
+
+    /**
+     * Materializes only some fields of payloads. Compact payloads read just the requested slots,
+     * and the slot indexes are kept for the last shape seen, so a run of payloads with the same
+     * layout resolves the field names once. Not thread-safe; use one instance per read.
+     */
+    static final class Projection {
+        private final String[] fields;
+        private Shape lastShape;
+        private int[] lastIndexes;
+
+        private Projection(String[] fields) {
+            this.fields = fields;
+        }
+
+        ImmutableMap<String, Object> apply(Map<String, Object> payload) {
+            ImmutableMap.Builder<String, Object> builder = ImmutableMap.builderWithExpectedSize(fields.length);
+            if (payload instanceof CompactPayload compact) {
+                int[] indexes = indexesFor(compact.shape);
+                for (int i = 0; i < fields.length; i++) {
+                    if (indexes[i] >= 0) {
+                        builder.put(fields[i], compact.valueAt(indexes[i]));
+                    }
+                }
+            } else {
+                for (String field : fields) {
+                    Object value = payload.get(field);
+                    if (value != null) {
+                        builder.put(field, value);
+                    }
+                }
+            }
+            return builder.build();
+        }
+
+        private int[] indexesFor(Shape shape) {
+            if (shape != lastShape) {
+                int[] indexes = new int[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    indexes[i] = shape.indexOf(fields[i]);
+                }
+                lastShape = shape;
+                lastIndexes = indexes;
+            }
+            return lastIndexes;
+        }
+    }
+
+    /**
+     * Field names and value kinds shared by all payloads with the same layout.
+     */
+    private static final class Shape {
+        private final String[] keys;
+        private final byte[] kinds;
+        private final int hash;
+
+        Shape(String[] keys, byte[] kinds) {
+            this.keys = keys;
+            this.kinds = kinds;
+            this.hash = 31 * Arrays.hashCode(keys) + Arrays.hashCode(kinds);
+        }
+
+        int indexOf(Object key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        boolean matches(ImmutableMap<String, Object> payload) {
+            if (payload.size() != keys.length) {
+                return false;
+            }
+            int i = 0;
+            for (Entry<String, Object> entry : payload.entrySet()) {
+                if (!keys[i].equals(entry.getKey()) || kinds[i] != kindOf(entry.getValue())) {
+                    return false;
+                }
+                i++;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Shape other && Arrays.equals(keys, other.keys) && Arrays.equals(kinds, other.kinds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+
+import java.util.Map;
+
+/**
+ * Stored form of a {@link PriceData} in {@link PrimaryPriceStorageImpl}.
+ * <p>
+ * The id is dropped, since the storage keys records by dictionary code, the {@code asOf}
+ * instant is kept inline as seconds and nanos, and the payload is encoded with
+ * {@link CompactPayload}. {@link ShardedPrimaryPriceStorage} and
+ * {@link OffHeapPrimaryPriceStorage} also use it to hand records to
+ * {@link SubscriptionRegistry}, with the payload left as it is.
+ *
+ * @param epochSecond seconds part of {@link PriceData#asOf()}
+ * @param nano        nanosecond part of {@link PriceData#asOf()}
+ * @param payload     the encoded payload
+ */
+record CompactPrice(long epochSecond, int nano, Map<String, Object> payload) {
+
+    static CompactPrice of(PriceData price, CompactPayload.Shapes shapes) {
+        return new CompactPrice(price.asOf().getEpochSecond(), price.asOf().getNano(),
+                shapes.encode(price.payload()));
+    }
+
+    /**
+     * Same rule as {@link PriceData#latest}: the later {@code asOf} wins and ties keep the
+     * current record.
+     */
+    static CompactPrice latest(CompactPrice current, CompactPrice candidate) {
+        boolean later = candidate.epochSecond != current.epochSecond
+                ? candidate.epochSecond > current.epochSecond
+                : candidate.nano > current.nano;
+        return later ? candidate : current;
+    }
+
+    ImmutableMap<String, Object> immutablePayload() {
+        return CompactPayload.toImmutableMap(payload);
+    }
+}
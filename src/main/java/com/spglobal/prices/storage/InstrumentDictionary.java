@@ -0,0 +1,117 @@
+package com.spglobal.prices.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
+/**
+ * Interning dictionary assigning dense {@code int} codes to instrument ids.
+ * <p>
+ * Codes are handed out in first-seen order starting at 0 and are never reused, so they can
+ * index array-like structures directly. The first {@code String} instance seen for an id
+ * becomes its canonical instance; storing only canonical ids avoids keeping one copy of the
+ * same symbol per record and per batch.
+ * <p>
+ * The table is an open-addressing hash table with linear probing over plain arrays.
+ * {@link #intern(String)} must only be called from a single writer thread; {@link #codeOf(String)}
+ * and {@link #idOf(int)} are lock-free and safe from any thread. A code becomes visible to readers
+ * no later than any snapshot published after it was interned.
+ */
+final class InstrumentDictionary {
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(String[].class);
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+
+    /**
+     * Returns the code of the id, or {@code -1} if it has never been interned.
+     */
+    int codeOf(String id) {
+        Table current = table;
+        int mask = current.keys.length - 1;
+        for (int slot = spread(id.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            String key = (String) KEYS.getAcquire(current.keys, slot);
+            if (key == null) {
+                return -1;
+            }
+            if (key == id || key.equals(id)) {
+                return current.codes[slot];
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical id for a code previously returned by this dictionary.
+     */
+    String idOf(int code) {
+        return table.ids[code];
+    }
+
+    /**
+     * Returns the code of the id, assigning the next free code if it is new. Writer thread only.
+     */
+    int intern(String id) {
+        Objects.requireNonNull(id, "id cannot be null");
+        int existing = codeOf(id);
+        if (existing >= 0) {
+            return existing;
+        }
+        Table current = table;
+        if ((size + 1) * 2 > current.keys.length) {
+            current = current.resize();
+            table = current;
+        }
+        int code = size++;
+        current.insert(id, code);
+        return code;
+    }
+
+    /**
+     * Number of interned ids; codes range from 0 to {@code size() - 1}.
+     */
+    int size() {
+        return size;
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    private static final class Table {
+        private final String[] keys;
+        private final int[] codes;
+        private final String[] ids;
+
+        Table(int capacity) {
+            keys = new String[capacity];
+            codes = new int[capacity];
+            ids = new String[capacity / 2];
+        }
+
+        /**
+         * Fills the code and reverse entry first and releases the key last, so a reader that
+         * finds the key also sees its code.
+         */
+        void insert(String id, int code) {
+            int mask = keys.length - 1;
+            int slot = spread(id.hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            codes[slot] = code;
+            ids[code] = id;
+            KEYS.setRelease(keys, slot, id);
+        }
+
+        Table resize() {
+            Table bigger = new Table(keys.length * 2);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != null) {
+                    bigger.insert(keys[slot], codes[slot]);
+                }
+            }
+            return bigger;
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.dto.PriceUpdate;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Implementation of {@link PrimaryPriceStorage} keeping the latest records outside the Java heap.
+ * <p>
+ * Records are encoded with {@link OffHeapRecordCodec} into direct {@link ByteBuffer} segments,
+ * and an off-heap index maps each {@link InstrumentDictionary} code to the address of its
+ * current record. The heap only holds the id and field name dictionaries, so tens of millions of
+ * instruments add little to GC work. {@link #getLatest(Set)} decodes only the requested records.
+ * <p>
+ * Batches stay atomic through double buffering (the left-right technique). There are two
+ * identical copies of the store: readers use the active one while the writer brings the standby
+ * copy up to date and then publishes it by switching the active copy with a single volatile
+ * write. Before touching a copy again the writer waits until the readers that were still using
+ * it have left, and replays the batch it missed. Readers that stay longer, such as an open
+ * {@link #snapshot()}, are left the copy they hold: after a bounded wait the writer rebuilds a
+ * fresh standby copy from the active one instead. Readers never block and never see a copy that
+ * is being written.
+ * <p>
+ * Payload values are limited to the types supported by {@link OffHeapRecordCodec}; a batch
+ * holding any other type is rejected.
+ * <p>
+ * Subscribers get the records of each commit that replaced the previous value of their
+ * instrument, found by comparing the new copy against the one it replaces.
+ */
+public class OffHeapPrimaryPriceStorage implements PrimaryPriceStorage {
+    private static final int INITIAL_SCRATCH_SIZE = 1 << 16;
+    private static final int READER_WAIT_SPINS = 100;
+    private static final long MAX_READER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_READER_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final InstrumentDictionary dictionary = new InstrumentDictionary();
+    private final InstrumentDictionary fieldNames = new InstrumentDictionary();
+
+    private volatile Side active = new Side();
+
+    private final VersionWaiters versionWaiters = new VersionWaiters(this::getVersion);
+    private final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
+
+    private final CommitPipeline<List<PriceData>> singleWriter =
+            new CommitPipeline<>("off-heap-price-storage-writer", this::commit);
+
+    // Writer thread only: the copy to write next, the group it has not seen yet, and a spare to
+    // encode into.
+    private Side standby = new Side();
+    private EncodedGroup missed;
+    private EncodedGroup spare = new EncodedGroup();
+    private boolean standbyStale;
+
+    @Override
+    public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids) {
+        Side side = enter();
+        try {
+            ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+            for (String id : ids) {
+                long address = id == null ? 0 : side.addressOf(dictionary.codeOf(id));
+                if (address != 0) {
+                    result.put(id, side.payloadAt(address, fieldNames));
+                }
+            }
+            return result.build();
+        } finally {
+            side.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Pins the active copy for reads until the handle is closed. Commits never wait for the
+     * handle: once the writer needs the pinned copy back, it gives it up to the handle and builds
+     * a new one, so an open handle costs a copy of the store until it is closed.
+     */
+    @Override
+    public PriceSnapshot snapshot() {
+        return new PinnedSnapshot(enter());
+    }
+
+    @Override
+    public PriceSubscription subscribe(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener) {
+        Objects.requireNonNull(ids, "ids cannot be null");
+        SubscriptionRegistry.Subscriber subscriber = subscriptions.register(ids, executor, listener);
+        // Registered before reading, so no version published in between is missed.
+        Side side = enter();
+        try {
+            Map<String, CompactPrice> initial = new HashMap<>();
+            for (String id : ids) {
+                long address = id == null ? 0 : side.addressOf(dictionary.codeOf(id));
+                if (address != 0) {
+                    initial.put(id, side.priceAt(address, fieldNames));
+                }
+            }
+            subscriber.offer(side.version, initial);
+        } finally {
+            side.readers.decrementAndGet();
+        }
+        return subscriber;
+    }
+
+    @Override
+    public PriceSubscription subscribeAll(Executor executor, Consumer<PriceUpdate> listener) {
+        return subscriptions.register(null, executor, listener);
+    }
+
+    @Override
+    public CompletableFuture<Long> updateRecords(List<PriceData> priceDataList) {
+        if (priceDataList == null || priceDataList.isEmpty()) {
+            return CompletableFuture.completedFuture(getVersion());
+        }
+        return singleWriter.submit(priceDataList);
+    }
+
+    @Override
+    public long getVersion() {
+        return active.version;
+    }
+
+    @Override
+    public CompletableFuture<Long> awaitVersion(long version) {
+        return versionWaiters.await(version);
+    }
+
+    /**
+     * Registers the calling reader on the active copy. The re-check after registering ensures the
+     * writer either sees this reader or has not switched copies yet.
+     */
+    private Side enter() {
+        while (true) {
+            Side side = active;
+            side.readers.incrementAndGet();
+            if (side == active) {
+                return side;
+            }
+            side.readers.decrementAndGet();
+        }
+    }
+
+    private long commit(List<CommitPipeline.PendingCommit<List<PriceData>>> group) {
+        Side current = active;
+        EncodedGroup encoded = encode(group);
+        if (encoded.count == 0) {
+            return current.version;
+        }
+
+        Side standby = this.standby;
+        if (!awaitReadersLeft(standby)) {
+            standby = new Side();
+            standbyStale = true;
+        }
+        try {
+            if (standbyStale) {
+                standby.rebuildFrom(current);
+                standbyStale = false;
+            } else if (missed != null) {
+                standby.apply(missed);
+            }
+            standby.apply(encoded);
+            standby.compactIfNeeded();
+        } catch (RuntimeException | Error e) {
+            // The standby copy is half-written; rebuild it from the active one next time.
+            standbyStale = true;
+            throw e;
+        }
+
+        standby.version = current.version + 1;
+        Map<String, CompactPrice> changes = subscriptions.isEmpty() ? null : changes(encoded, current, standby);
+        active = standby;
+        this.standby = current;
+        spare = missed == null ? new EncodedGroup() : missed;
+        missed = encoded;
+        versionWaiters.published(standby.version);
+        if (changes != null) {
+            subscriptions.publish(standby.version, changes);
+        }
+        return standby.version;
+    }
+
+    /**
+     * Returns the records of the group that replaced the previous value of their instrument:
+     * those now held by {@code next} with a later {@code asOf} than in {@code previous}.
+     */
+    private Map<String, CompactPrice> changes(EncodedGroup group, Side previous, Side next) {
+        Map<String, CompactPrice> changes = new HashMap<>();
+        for (int i = 0; i < group.count; i++) {
+            int code = group.codes[i];
+            long address = next.addressOf(code);
+            long before = previous.addressOf(code);
+            if (before == 0 || next.isAfter(address, previous, before)) {
+                changes.put(dictionary.idOf(code), next.priceAt(address, fieldNames));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Waits for the readers of {@code side} to leave: spinning at first, then parking with a
+     * growing delay.
+     *
+     * @return {@code false} if readers were still using it after {@code MAX_READER_WAIT_NANOS}
+     */
+    private static boolean awaitReadersLeft(Side side) {
+        long start = System.nanoTime();
+        long park = 1_000;
+        for (int spins = 0; side.readers.get() != 0; spins++) {
+            if (spins < READER_WAIT_SPINS) {
+                Thread.onSpinWait();
+            } else if (System.nanoTime() - start >= MAX_READER_WAIT_NANOS) {
+                return false;
+            } else {
+                LockSupport.parkNanos(park);
+                park = Math.min(park * 2, MAX_READER_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the group into the spare buffer. A batch that cannot be encoded is failed on its
+     * own and the rest of the group goes ahead.
+     */
+    private EncodedGroup encode(List<CommitPipeline.PendingCommit<List<PriceData>>> group) {
+        EncodedGroup out = spare;
+        out.clear();
+        for (CommitPipeline.PendingCommit<List<PriceData>> pending : group) {
+            int count = out.count;
+            int size = out.size;
+            try {
+                for (PriceData price : pending.batch()) {
+                    out.add(dictionary.intern(price.id()), price, fieldNames);
+                }
+            } catch (IllegalArgumentException | NullPointerException e) {
+                out.count = count;
+                out.size = size;
+                pending.fail(e);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Read handle on one copy, registered as a reader of it until closed.
+     */
+    private final class PinnedSnapshot implements PriceSnapshot {
+        private final Side side;
+        private final long version;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        PinnedSnapshot(Side side) {
+            this.side = side;
+            this.version = side.version;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public ImmutableMap<String, Object> get(String id) {
+            ensureOpen();
+            long address = id == null ? 0 : side.addressOf(dictionary.codeOf(id));
+            return address == 0 ? null : side.payloadAt(address, fieldNames);
+        }
+
+        @Override
+        public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids) {
+            ensureOpen();
+            ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+            for (String id : Objects.requireNonNull(ids, "ids cannot be null")) {
+                long address = id == null ? 0 : side.addressOf(dictionary.codeOf(id));
+                if (address != 0) {
+                    result.put(id, side.payloadAt(address, fieldNames));
+                }
+            }
+            return result.build();
+        }
+
+        @Override
+        public int size() {
+            ensureOpen();
+            return side.count;
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, ImmutableMap<String, Object>> action) {
+            ensureOpen();
+            Objects.requireNonNull(action, "action cannot be null");
+            for (int code = 0; code < side.capacity(); code++) {
+                long address = side.addressOf(code);
+                if (address != 0) {
+                    action.accept(dictionary.idOf(code), side.payloadAt(address, fieldNames));
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                side.readers.decrementAndGet();
+            }
+        }
+
+        private void ensureOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+        }
+    }
+
+    /**
+     * Encoded records of one commit group on the heap, kept until both copies have applied them.
+     */
+    private static final class EncodedGroup {
+        private ByteBuffer data = ByteBuffer.allocate(INITIAL_SCRATCH_SIZE);
+        private int[] codes = new int[1024];
+        private int[] offsets = new int[1024];
+        private int count;
+        private int size;
+
+        void clear() {
+            count = 0;
+            size = 0;
+        }
+
+        void add(int code, PriceData price, InstrumentDictionary fieldNames) {
+            int recordSize = OffHeapRecordCodec.encodedSize(price);
+            if (data.capacity() - size < recordSize) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(data.capacity() * 2, size + recordSize));
+                grown.put(0, data, 0, size);
+                data = grown;
+            }
+            if (count == codes.length) {
+                codes = Arrays.copyOf(codes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            OffHeapRecordCodec.encode(price, fieldNames, data, size);
+            codes[count] = code;
+            offsets[count] = size;
+            count++;
+            size += OffHeapRecordCodec.recordSize(data, offsets[count - 1]);
+        }
+    }
+
+    /**
+     * One copy of the store: an index of record addresses by code and the segments holding the
+     * records. Only the writer modifies a copy, and only while no reader uses it.
+     * <p>
+     * An address packs {@code segment + 1} in the high and the offset in the low 32 bits, so 0
+     * means no record.
+     */
+    private static final class Side {
+        private static final int INITIAL_INDEX_CAPACITY = 1024;
+        private static final int INITIAL_SEGMENT_SIZE = 1 << 16;
+        private static final int MAX_SEGMENT_SIZE = 1 << 28;
+        private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+        private final AtomicInteger readers = new AtomicInteger();
+        private long version;
+        private int count;
+
+        private ByteBuffer index = ByteBuffer.allocateDirect(INITIAL_INDEX_CAPACITY * Long.BYTES);
+        private List<ByteBuffer> segments = new ArrayList<>();
+        private ByteBuffer tail;
+        private long usedBytes;
+        private long liveBytes;
+
+        long addressOf(int code) {
+            return code >= 0 && code < capacity() ? index.getLong(code * Long.BYTES) : 0;
+        }
+
+        /**
+         * Number of codes the index has room for.
+         */
+        int capacity() {
+            return index.capacity() / Long.BYTES;
+        }
+
+        ImmutableMap<String, Object> payloadAt(long address, InstrumentDictionary fieldNames) {
+            return OffHeapRecordCodec.decodePayload(segmentOf(address), (int) address, fieldNames);
+        }
+
+        CompactPrice priceAt(long address, InstrumentDictionary fieldNames) {
+            ByteBuffer segment = segmentOf(address);
+            return new CompactPrice(OffHeapRecordCodec.epochSecond(segment, (int) address),
+                    OffHeapRecordCodec.nano(segment, (int) address), payloadAt(address, fieldNames));
+        }
+
+        /**
+         * Whether the record at {@code address} is later than the one at {@code otherAddress} of
+         * {@code other}.
+         */
+        boolean isAfter(long address, Side other, long otherAddress) {
+            return OffHeapRecordCodec.isAfter(segmentOf(address), (int) address, other.segmentOf(otherAddress),
+                    (int) otherAddress);
+        }
+
+        void apply(EncodedGroup group) {
+            for (int i = 0; i < group.count; i++) {
+                int code = group.codes[i];
+                int offset = group.offsets[i];
+                long address = addressOf(code);
+                if (address != 0) {
+                    ByteBuffer segment = segmentOf(address);
+                    if (!OffHeapRecordCodec.isAfter(group.data, offset, segment, (int) address)) {
+                        continue;
+                    }
+                    liveBytes -= OffHeapRecordCodec.recordSize(segment, (int) address);
+                }
+                put(code, group.data, offset);
+            }
+        }
+
+        /**
+         * Compacts once overwritten records take more space than live ones.
+         */
+        void compactIfNeeded() {
+            if (usedBytes >= MIN_COMPACTION_BYTES && usedBytes - liveBytes > liveBytes) {
+                rebuildFrom(this);
+            }
+        }
+
+        /**
+         * Replaces this copy's content with the live records of {@code source}, which may be
+         * this copy itself.
+         */
+        void rebuildFrom(Side source) {
+            ByteBuffer sourceIndex = source.index;
+            List<ByteBuffer> sourceSegments = source.segments;
+            index = ByteBuffer.allocateDirect(sourceIndex.capacity());
+            segments = new ArrayList<>();
+            tail = null;
+            usedBytes = 0;
+            liveBytes = 0;
+            count = 0;
+            for (int code = 0; code < sourceIndex.capacity() / Long.BYTES; code++) {
+                long address = sourceIndex.getLong(code * Long.BYTES);
+                if (address != 0) {
+                    put(code, sourceSegments.get((int) (address >>> 32) - 1), (int) address);
+                }
+            }
+        }
+
+        private void put(int code, ByteBuffer source, int offset) {
+            int size = OffHeapRecordCodec.recordSize(source, offset);
+            if (tail == null || tail.capacity() - tail.position() < size) {
+                int previous = tail == null ? INITIAL_SEGMENT_SIZE / 2 : tail.capacity();
+                tail = ByteBuffer.allocateDirect(Math.max(size, Math.min(MAX_SEGMENT_SIZE, previous * 2)));
+                segments.add(tail);
+            }
+            int position = tail.position();
+            tail.put(position, source, offset, size);
+            tail.position(position + size);
+            usedBytes += size;
+            liveBytes += size;
+            if (addressOf(code) == 0) {
+                count++;
+            }
+
+            if (code >= index.capacity() / Long.BYTES) {
+                int capacity = Math.max(code + 1, index.capacity() / Long.BYTES * 2);
+                ByteBuffer grown = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+                grown.put(0, index, 0, index.capacity());
+                index = grown;
+            }
+            index.putLong(code * Long.BYTES, ((long) segments.size() << 32) | position);
+        }
+
+        private ByteBuffer segmentOf(long address) {
+            return segments.get((int) (address >>> 32) - 1);
+        }
+    }
+}
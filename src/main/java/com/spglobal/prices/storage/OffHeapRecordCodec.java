@@ -0,0 +1,219 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Binary layout of a price record held outside the Java heap, used by
+ * {@link OffHeapPrimaryPriceStorage} and by {@link SnapshotCheckpoint} files.
+ * <pre>
+ * record  := epochSecond:long nano:int payloadLength:int payload
+ * payload := fieldCount:int field*
+ * field   := nameCode:int tag:byte value
+ * </pre>
+ * Field names are stored as codes of a shared {@link InstrumentDictionary}, so each record
+ * carries 4 bytes per name instead of the name itself. All reads and writes use absolute
+ * offsets and never move a buffer's position, so several readers can decode the same buffer
+ * concurrently.
+ * <p>
+ * Payload values must be one of {@code Integer}, {@code Long}, {@code Double}, {@code Float},
+ * {@code Short}, {@code Byte}, {@code Boolean}, {@code Character} or {@code String}; they decode
+ * back to the same type.
+ */
+final class OffHeapRecordCodec {
+    static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private static final byte INT = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte FLOAT = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte CHAR = 7;
+    private static final byte STRING = 8;
+
+    private OffHeapRecordCodec() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode} needs for the record.
+     *
+     * @throws IllegalArgumentException if the payload holds an unsupported value type
+     */
+    static int encodedSize(PriceData price) {
+        return encodedSize(price.payload());
+    }
+
+    static int encodedSize(Map<String, Object> payload) {
+        int size = HEADER_SIZE + Integer.BYTES;
+        for (Map.Entry<String, Object> field : payload.entrySet()) {
+            size += Integer.BYTES + 1 + valueSize(field.getValue());
+        }
+        return size;
+    }
+
+    /**
+     * Writes the record at {@code offset}, which must have {@link #encodedSize} bytes available.
+     * Field names are interned into {@code fieldNames}, so this must run on its writer thread.
+     */
+    static void encode(PriceData price, InstrumentDictionary fieldNames, ByteBuffer out, int offset) {
+        encode(price.asOf().getEpochSecond(), price.asOf().getNano(), price.payload(), fieldNames, out, offset);
+    }
+
+    static void encode(long epochSecond, int nano, Map<String, Object> payload, InstrumentDictionary fieldNames,
+                       ByteBuffer out, int offset) {
+        int position = offset + HEADER_SIZE;
+        out.putLong(offset, epochSecond);
+        out.putInt(offset + Long.BYTES, nano);
+        out.putInt(position, payload.size());
+        position += Integer.BYTES;
+        for (Map.Entry<String, Object> field : payload.entrySet()) {
+            out.putInt(position, fieldNames.intern(field.getKey()));
+            position = putValue(out, position + Integer.BYTES, field.getValue());
+        }
+        out.putInt(offset + Long.BYTES + Integer.BYTES, position - offset - HEADER_SIZE);
+    }
+
+    static long epochSecond(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset);
+    }
+
+    static int nano(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + Long.BYTES);
+    }
+
+    static int recordSize(ByteBuffer buffer, int offset) {
+        return HEADER_SIZE + buffer.getInt(offset + Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Last-value rule on encoded records: whether the candidate's {@code asOf} is strictly later.
+     */
+    static boolean isAfter(ByteBuffer candidate, int candidateOffset, ByteBuffer current, int currentOffset) {
+        long candidateSecond = candidate.getLong(candidateOffset);
+        long currentSecond = current.getLong(currentOffset);
+        if (candidateSecond != currentSecond) {
+            return candidateSecond > currentSecond;
+        }
+        return candidate.getInt(candidateOffset + Long.BYTES) > current.getInt(currentOffset + Long.BYTES);
+    }
+
+    static ImmutableMap<String, Object> decodePayload(ByteBuffer buffer, int offset, InstrumentDictionary fieldNames) {
+        int position = offset + HEADER_SIZE;
+        int fieldCount = buffer.getInt(position);
+        position += Integer.BYTES;
+        ImmutableMap.Builder<String, Object> payload = ImmutableMap.builderWithExpectedSize(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            String name = fieldNames.idOf(buffer.getInt(position));
+            byte tag = buffer.get(position + Integer.BYTES);
+            position += Integer.BYTES + 1;
+            Object value;
+            switch (tag) {
+                case INT -> value = buffer.getInt(position);
+                case LONG -> value = buffer.getLong(position);
+                case DOUBLE -> value = buffer.getDouble(position);
+                case FLOAT -> value = buffer.getFloat(position);
+                case SHORT -> value = buffer.getShort(position);
+                case BYTE -> value = buffer.get(position);
+                case BOOLEAN -> value = buffer.get(position) != 0;
+                case CHAR -> value = buffer.getChar(position);
+                case STRING -> {
+                    byte[] bytes = new byte[buffer.getInt(position)];
+                    buffer.get(position + Integer.BYTES, bytes);
+                    value = new String(bytes, StandardCharsets.UTF_8);
+                }
+                default -> throw new IllegalStateException("Corrupt record: unknown tag " + tag);
+            }
+            position += tag == STRING ? Integer.BYTES + buffer.getInt(position) : fixedSize(tag);
+            payload.put(name, value);
+        }
+        return payload.build();
+    }
+
+    private static int valueSize(Object value) {
+        if (value instanceof String string) {
+            return Integer.BYTES + utf8Length(string);
+        }
+        return fixedSize(tagOf(value));
+    }
+
+    private static int putValue(ByteBuffer out, int position, Object value) {
+        byte tag = tagOf(value);
+        out.put(position++, tag);
+        switch (tag) {
+            case INT -> out.putInt(position, (Integer) value);
+            case LONG -> out.putLong(position, (Long) value);
+            case DOUBLE -> out.putDouble(position, (Double) value);
+            case FLOAT -> out.putFloat(position, (Float) value);
+            case SHORT -> out.putShort(position, (Short) value);
+            case BYTE -> out.put(position, (Byte) value);
+            case BOOLEAN -> out.put(position, (byte) ((Boolean) value ? 1 : 0));
+            case CHAR -> out.putChar(position, (Character) value);
+            default -> {
+                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                out.putInt(position, bytes.length);
+                out.put(position + Integer.BYTES, bytes);
+                return position + Integer.BYTES + bytes.length;
+            }
+        }
+        return position + fixedSize(tag);
+    }
+
+    private static byte tagOf(Object value) {
+        if (value instanceof Integer) {
+            return INT;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        } else if (value instanceof Short) {
+            return SHORT;
+        } else if (value instanceof Byte) {
+            return BYTE;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        } else if (value instanceof Character) {
+            return CHAR;
+        } else if (value instanceof String) {
+            return STRING;
+        }
+        throw new IllegalArgumentException("Unsupported payload value type for off-heap storage: "
+                + value.getClass().getName());
+    }
+
+    private static int fixedSize(byte tag) {
+        return switch (tag) {
+            case INT, FLOAT -> Integer.BYTES;
+            case LONG, DOUBLE -> Long.BYTES;
+            case SHORT, CHAR -> Short.BYTES;
+            case BYTE, BOOLEAN -> 1;
+            default -> throw new IllegalStateException("Not a fixed-size tag: " + tag);
+        };
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,370 @@
+package com.spglobal.prices.storage;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+
+/**
+ * Immutable hash array mapped trie (CHAMP layout) with structural sharing.
+ * <p>
+ * Every update copies only the path from the root to the touched entry (at most 7 nodes),
+ * so producing a new version costs O(log32 n) per key instead of O(n) for a full copy.
+ * Old versions stay valid and unchanged, which makes an instance safe to publish as a
+ * snapshot to any number of concurrent readers.
+ * <p>
+ * Bulk updates go through a {@link Builder}: nodes created by a builder are owned by it
+ * and are mutated in place until {@link Builder#build()}, so a batch touching the same
+ * subtree many times copies each node at most once.
+ * <p>
+ * Keys and values must be non-null. Removal is not supported because the price book
+ * never forgets an instrument.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns the value mapped to the key, or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        return (V) root.find(key, hash(key), 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a new map with the given mapping added or replaced. This map is not modified.
+     */
+    public PersistentHashMap<K, V> with(K key, V value) {
+        return toBuilder().put(key, value).build();
+    }
+
+    /**
+     * Visits every mapping. Iteration order is unspecified but stable for a given instance.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action, "action cannot be null");
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    /**
+     * Returns a builder seeded with this map. The map itself is never modified by the builder.
+     */
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(root, size);
+    }
+
+    static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    /**
+     * Single-threaded builder producing a new {@link PersistentHashMap} version.
+     * <p>
+     * Not thread-safe. Once {@link #build()} has been called the builder cannot be used again,
+     * since the nodes it owned now belong to a published, immutable map.
+     */
+    public static final class Builder<K, V> {
+        private Object edit = new Object();
+        private Node root;
+        private int size;
+
+        private Builder(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            return merge(key, value, null);
+        }
+
+        /**
+         * Associates the value with the key. If a value is already present, {@code remapping}
+         * receives {@code (current, value)} and its result is stored; returning {@code current}
+         * leaves the map untouched and copies nothing.
+         *
+         * @param remapping merge function, or {@code null} to always replace
+         */
+        public Builder<K, V> merge(K key, V value, BinaryOperator<V> remapping) {
+            Objects.requireNonNull(key, "key cannot be null");
+            Objects.requireNonNull(value, "value cannot be null");
+            ensureEditable();
+            root = root.merge(this, key, hash(key), value, 0, remapping);
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            ensureEditable();
+            return key == null ? null : (V) root.find(key, hash(key), 0);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PersistentHashMap<K, V> build() {
+            ensureEditable();
+            edit = null;
+            return new PersistentHashMap<>(root, size);
+        }
+
+        private void ensureEditable() {
+            if (edit == null) {
+                throw new IllegalStateException("Builder has already been built");
+            }
+        }
+    }
+
+    private abstract static class Node {
+        abstract Object find(Object key, int hash, int shift);
+
+        abstract Node merge(Builder<?, ?> ctx, Object key, int hash, Object value, int shift,
+                            BinaryOperator<?> remapping);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static Object remap(BinaryOperator remapping, Object current, Object value) {
+            return remapping == null ? value : Objects.requireNonNull(remapping.apply(current, value),
+                    "remapping function returned null");
+        }
+    }
+
+    /**
+     * Inner node: key/value pairs are stored inline at the front of {@code content}, child
+     * nodes at the back in reverse order, each located through its own bitmap.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, 0, new Object[0]);
+
+        private final Object edit;
+        private int dataMap;
+        private int nodeMap;
+        private Object[] content;
+
+        BitmapNode(Object edit, int dataMap, int nodeMap, Object[] content) {
+            this.edit = edit;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int idx = index(dataMap, bit);
+                return key.equals(content[2 * idx]) ? content[2 * idx + 1] : null;
+            }
+            if ((nodeMap & bit) != 0) {
+                return nodeAt(bit).find(key, hash, shift + BITS);
+            }
+            return null;
+        }
+
+        @Override
+        Node merge(Builder<?, ?> ctx, Object key, int hash, Object value, int shift, BinaryOperator<?> remapping) {
+            int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int idx = index(dataMap, bit);
+                Object currentKey = content[2 * idx];
+                Object currentValue = content[2 * idx + 1];
+                if (currentKey.equals(key)) {
+                    Object merged = remap(remapping, currentValue, value);
+                    if (merged == currentValue) {
+                        return this;
+                    }
+                    BitmapNode target = editable(ctx);
+                    target.content[2 * idx + 1] = merged;
+                    return target;
+                }
+                Node child = pair(ctx.edit, currentKey, hash(currentKey), currentValue, key, hash, value,
+                        shift + BITS);
+                ctx.size++;
+                return dataToNode(ctx, bit, idx, child);
+            }
+            if ((nodeMap & bit) != 0) {
+                int pos = content.length - 1 - index(nodeMap, bit);
+                Node child = (Node) content[pos];
+                Node updated = child.merge(ctx, key, hash, value, shift + BITS, remapping);
+                if (updated == child) {
+                    return this;
+                }
+                BitmapNode target = editable(ctx);
+                target.content[pos] = updated;
+                return target;
+            }
+            ctx.size++;
+            return insertData(ctx, bit, key, value);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            int entries = Integer.bitCount(dataMap);
+            for (int i = 0; i < entries; i++) {
+                action.accept(content[2 * i], content[2 * i + 1]);
+            }
+            for (int i = 2 * entries; i < content.length; i++) {
+                ((Node) content[i]).forEach(action);
+            }
+        }
+
+        private Node nodeAt(int bit) {
+            return (Node) content[content.length - 1 - index(nodeMap, bit)];
+        }
+
+        private BitmapNode editable(Builder<?, ?> ctx) {
+            if (edit == ctx.edit) {
+                return this;
+            }
+            return new BitmapNode(ctx.edit, dataMap, nodeMap, content.clone());
+        }
+
+        private Node insertData(Builder<?, ?> ctx, int bit, Object key, Object value) {
+            int idx = 2 * index(dataMap, bit);
+            Object[] updated = new Object[content.length + 2];
+            System.arraycopy(content, 0, updated, 0, idx);
+            updated[idx] = key;
+            updated[idx + 1] = value;
+            System.arraycopy(content, idx, updated, idx + 2, content.length - idx);
+            return replace(ctx, dataMap | bit, nodeMap, updated);
+        }
+
+        private Node dataToNode(Builder<?, ?> ctx, int bit, int dataIdx, Node child) {
+            int oldPos = 2 * dataIdx;
+            int newPos = content.length - 2 - index(nodeMap, bit);
+            Object[] updated = new Object[content.length - 1];
+            System.arraycopy(content, 0, updated, 0, oldPos);
+            System.arraycopy(content, oldPos + 2, updated, oldPos, newPos - oldPos);
+            updated[newPos] = child;
+            System.arraycopy(content, newPos + 2, updated, newPos + 1, content.length - newPos - 2);
+            return replace(ctx, dataMap ^ bit, nodeMap | bit, updated);
+        }
+
+        private Node replace(Builder<?, ?> ctx, int newDataMap, int newNodeMap, Object[] newContent) {
+            if (edit == ctx.edit) {
+                dataMap = newDataMap;
+                nodeMap = newNodeMap;
+                content = newContent;
+                return this;
+            }
+            return new BitmapNode(ctx.edit, newDataMap, newNodeMap, newContent);
+        }
+
+        private static Node pair(Object edit, Object k1, int h1, Object v1, Object k2, int h2, Object v2, int shift) {
+            if (h1 == h2) {
+                return new CollisionNode(edit, h1, new Object[]{k1, v1, k2, v2});
+            }
+            int b1 = bitpos(h1, shift);
+            int b2 = bitpos(h2, shift);
+            if (b1 == b2) {
+                return new BitmapNode(edit, 0, b1, new Object[]{pair(edit, k1, h1, v1, k2, h2, v2, shift + BITS)});
+            }
+            Object[] content = Integer.compareUnsigned(b1, b2) < 0 ? new Object[]{k1, v1, k2, v2} : new Object[]{k2, v2, k1, v1};
+            return new BitmapNode(edit, b1 | b2, 0, content);
+        }
+    }
+
+    /**
+     * Leaf holding keys whose full 32-bit hashes are equal.
+     */
+    private static final class CollisionNode extends Node {
+        private final Object edit;
+        private final int hash;
+        private Object[] entries;
+
+        CollisionNode(Object edit, int hash, Object[] entries) {
+            this.edit = edit;
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            for (int i = 0; i < entries.length; i += 2) {
+                if (key.equals(entries[i])) {
+                    return entries[i + 1];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node merge(Builder<?, ?> ctx, Object key, int hash, Object value, int shift, BinaryOperator<?> remapping) {
+            if (hash != this.hash) {
+                BitmapNode parent = new BitmapNode(ctx.edit, 0, bitpos(this.hash, shift), new Object[]{this});
+                return parent.merge(ctx, key, hash, value, shift, remapping);
+            }
+            for (int i = 0; i < entries.length; i += 2) {
+                if (key.equals(entries[i])) {
+                    Object current = entries[i + 1];
+                    Object merged = remap(remapping, current, value);
+                    if (merged == current) {
+                        return this;
+                    }
+                    CollisionNode target = edit == ctx.edit ? this
+                            : new CollisionNode(ctx.edit, hash, entries.clone());
+                    target.entries[i + 1] = merged;
+                    return target;
+                }
+            }
+            ctx.size++;
+            Object[] updated = Arrays.copyOf(entries, entries.length + 2);
+            updated[entries.length] = key;
+            updated[entries.length + 1] = value;
+            if (edit == ctx.edit) {
+                entries = updated;
+                return this;
+            }
+            return new CollisionNode(ctx.edit, hash, updated);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < entries.length; i += 2) {
+                action.accept(entries[i], entries[i + 1]);
+            }
+        }
+    }
+}
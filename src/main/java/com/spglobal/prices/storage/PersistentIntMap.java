@@ -0,0 +1,369 @@
+package com.spglobal.prices.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Immutable map from non-negative {@code int} keys to values, laid out as a 32-way radix trie.
+ * <p>
+ * Designed for the dense codes handed out by {@link InstrumentDictionary}: a lookup is a handful
+ * of array index operations on the key bits, with no hashing, no {@code equals} and no boxed
+ * keys. Updates copy only the path from the root to the touched leaf and share the rest with
+ * the previous version, so older versions stay valid snapshots for concurrent readers.
+ * <p>
+ * As with {@link PersistentHashMap}, bulk updates go through a {@link Builder} that mutates the
+ * nodes it created in place until {@link Builder#build()}.
+ *
+ * @param <V> value type
+ */
+public final class PersistentIntMap<V> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * Aim for a few partitions per worker so uneven partitions still balance out.
+     */
+    private static final int PARTITIONS_PER_WORKER = 4;
+
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(new Node(null, new Object[WIDTH]), 0, 0);
+
+    private final Node root;
+    private final int shift;
+    private final int size;
+
+    private PersistentIntMap(Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * Returns the value for the key, or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key < 0 || !fits(key, shift)) {
+            return null;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[(key >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (V) node.slots[key & MASK];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visits every mapping in ascending key order.
+     */
+    public void forEach(ObjIntConsumer<? super V> action) {
+        Objects.requireNonNull(action, "action cannot be null");
+        forEach(root, shift, 0, action);
+    }
+
+    public Builder<V> toBuilder() {
+        return new Builder<>(root, shift, size);
+    }
+
+    /**
+     * Merges many values in parallel and returns the resulting map.
+     * <p>
+     * Keys are partitioned into contiguous ranges that each map to one subtree, deep enough in
+     * the trie to give every worker several partitions. Each non-empty partition is merged into
+     * its subtree on the pool; the subtrees are then linked under a new root on the calling
+     * thread. Within a partition values are applied in slice order, so the outcome equals a
+     * sequential merge of all slices.
+     *
+     * @param keySlices   keys of each slice
+     * @param valueSlices values of each slice, aligned with {@code keySlices}
+     * @param remapping   merge function applied as in {@link Builder#merge}
+     * @param pool        the pool running the partition and merge tasks
+     * @return the merged map; this map is not modified
+     */
+    public PersistentIntMap<V> mergeAll(List<int[]> keySlices, List<? extends List<? extends V>> valueSlices,
+                                        BinaryOperator<V> remapping, ForkJoinPool pool) {
+        Objects.requireNonNull(pool, "pool cannot be null");
+        if (keySlices.size() != valueSlices.size()) {
+            throw new IllegalArgumentException("keySlices and valueSlices must have the same size");
+        }
+
+        int maxKey = -1;
+        for (int[] keys : keySlices) {
+            for (int key : keys) {
+                if (key < 0) {
+                    throw new IllegalArgumentException("keys must not be negative: " + key);
+                }
+                maxKey = Math.max(maxKey, key);
+            }
+        }
+        if (maxKey < 0) {
+            return this;
+        }
+
+        // Grow the root first, so every partition hangs below it.
+        Builder<V> assembler = toBuilder();
+        assembler.ensureCapacity(maxKey);
+
+        int target = pool.getParallelism() * PARTITIONS_PER_WORKER;
+        int partitionShift = assembler.shift + BITS;
+        while (partitionShift > BITS && (maxKey >>> partitionShift) + 1 < target) {
+            partitionShift -= BITS;
+        }
+        int partitionBits = partitionShift;
+        int partitions = (maxKey >>> partitionBits) + 1;
+
+        List<Callable<int[][]>> partitionTasks = new ArrayList<>(keySlices.size());
+        for (int[] keys : keySlices) {
+            partitionTasks.add(() -> partition(keys, partitionBits, partitions));
+        }
+        List<int[][]> partitioned = ForkJoinTasks.invokeAll(pool, partitionTasks);
+
+        Node base = assembler.root;
+        int baseShift = assembler.shift;
+        Node[] subtrees = new Node[partitions];
+        int[] added = new int[partitions];
+        List<Callable<Void>> mergeTasks = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            if (partitioned.stream().allMatch(buckets -> buckets[partition].length == 0)) {
+                continue;
+            }
+            mergeTasks.add(() -> {
+                int subtreeShift = partitionBits - BITS;
+                Builder<V> ctx = new Builder<>(subtree(base, baseShift, partition, partitionBits), subtreeShift, 0);
+                for (int s = 0; s < keySlices.size(); s++) {
+                    int[] keys = keySlices.get(s);
+                    List<? extends V> values = valueSlices.get(s);
+                    for (int index : partitioned.get(s)[partition]) {
+                        V value = Objects.requireNonNull(values.get(index), "value cannot be null");
+                        ctx.root = ctx.merge(ctx.root, subtreeShift, keys[index], value, remapping);
+                    }
+                }
+                subtrees[partition] = ctx.root;
+                added[partition] = ctx.size;
+                return null;
+            });
+        }
+        ForkJoinTasks.invokeAll(pool, mergeTasks);
+
+        for (int p = 0; p < partitions; p++) {
+            if (subtrees[p] != null) {
+                assembler.setSubtree(p, partitionBits, subtrees[p]);
+                assembler.size += added[p];
+            }
+        }
+        return assembler.build();
+    }
+
+    private static int[][] partition(int[] keys, int partitionBits, int partitions) {
+        int[] counts = new int[partitions];
+        for (int key : keys) {
+            counts[key >>> partitionBits]++;
+        }
+        int[][] buckets = new int[partitions][];
+        for (int p = 0; p < partitions; p++) {
+            buckets[p] = new int[counts[p]];
+            counts[p] = 0;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            int p = keys[i] >>> partitionBits;
+            buckets[p][counts[p]++] = i;
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns the node covering partition {@code partition} (keys sharing the bits above
+     * {@code partitionBits}), or {@code null} if that part of the trie is still empty.
+     */
+    private static Node subtree(Node root, int rootShift, int partition, int partitionBits) {
+        Node node = root;
+        for (int level = rootShift; level >= partitionBits; level -= BITS) {
+            int key = partition << partitionBits;
+            node = (Node) node.slots[(key >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Whether a trie whose root indexes bits {@code shift..shift+4} can hold the key. Keys are
+     * non-negative, so the root never needs to go above shift 25.
+     */
+    private static boolean fits(int key, int shift) {
+        return (key >>> (shift + BITS)) == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, int level, int prefix, ObjIntConsumer<? super V> action) {
+        for (int i = 0; i < WIDTH; i++) {
+            Object slot = node.slots[i];
+            if (slot == null) {
+                continue;
+            }
+            int key = prefix | (i << level);
+            if (level == 0) {
+                action.accept((V) slot, key);
+            } else {
+                forEach((Node) slot, level - BITS, key, action);
+            }
+        }
+    }
+
+    /**
+     * Single-threaded builder producing a new {@link PersistentIntMap} version. Cannot be used
+     * after {@link #build()}.
+     */
+    public static final class Builder<V> {
+        private Object edit = new Object();
+        private Node root;
+        private int shift;
+        private int size;
+
+        private Builder(Node root, int shift, int size) {
+            this.root = root;
+            this.shift = shift;
+            this.size = size;
+        }
+
+        public Builder<V> put(int key, V value) {
+            return merge(key, value, null);
+        }
+
+        /**
+         * Associates the value with the key. If a value is already present, {@code remapping}
+         * receives {@code (current, value)} and its result is stored; returning {@code current}
+         * copies nothing.
+         *
+         * @param remapping merge function, or {@code null} to always replace
+         */
+        public Builder<V> merge(int key, V value, BinaryOperator<V> remapping) {
+            if (key < 0) {
+                throw new IllegalArgumentException("key must not be negative: " + key);
+            }
+            Objects.requireNonNull(value, "value cannot be null");
+            ensureEditable();
+            ensureCapacity(key);
+            root = merge(root, shift, key, value, remapping);
+            return this;
+        }
+
+        public V get(int key) {
+            ensureEditable();
+            return new PersistentIntMap<V>(root, shift, size).get(key);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PersistentIntMap<V> build() {
+            ensureEditable();
+            edit = null;
+            return new PersistentIntMap<>(root, shift, size);
+        }
+
+        private void ensureCapacity(int key) {
+            while (!fits(key, shift)) {
+                Object[] slots = new Object[WIDTH];
+                slots[0] = root;
+                root = new Node(edit, slots);
+                shift += BITS;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node merge(Node node, int level, int key, V value, BinaryOperator<V> remapping) {
+            int idx = (key >>> level) & MASK;
+            if (node == null) {
+                node = new Node(edit, new Object[WIDTH]);
+            }
+            Object current = node.slots[idx];
+            Object updated;
+            if (level == 0) {
+                if (current == null) {
+                    size++;
+                    updated = value;
+                } else {
+                    updated = remapping == null ? value
+                            : Objects.requireNonNull(remapping.apply((V) current, value),
+                            "remapping function returned null");
+                }
+            } else {
+                updated = merge((Node) current, level - BITS, key, value, remapping);
+            }
+            if (updated == current) {
+                return node;
+            }
+            Node target = node.edit == edit ? node : new Node(edit, node.slots.clone());
+            target.slots[idx] = updated;
+            return target;
+        }
+
+        /**
+         * Links a subtree built elsewhere in place of partition {@code partition}.
+         */
+        private void setSubtree(int partition, int partitionBits, Node subtree) {
+            int key = partition << partitionBits;
+            if (partitionBits > shift) {
+                root = subtree;
+                return;
+            }
+            root = link(root, shift, key, partitionBits, subtree);
+        }
+
+        private Node link(Node node, int level, int key, int partitionBits, Node subtree) {
+            int idx = (key >>> level) & MASK;
+            Node target = node == null ? new Node(edit, new Object[WIDTH])
+                    : node.edit == edit ? node : new Node(edit, node.slots.clone());
+            target.slots[idx] = level == partitionBits
+                    ? subtree
+                    : link((Node) target.slots[idx], level - BITS, key, partitionBits, subtree);
+            return target;
+        }
+
+        private void ensureEditable() {
+            if (edit == null) {
+                throw new IllegalStateException("Builder has already been built");
+            }
+        }
+    }
+
+    /**
+     * Trie node: 32 slots holding child nodes, or values at the leaf level. Nodes owned by a
+     * builder's {@code edit} token may be mutated in place by that builder.
+     */
+    private static final class Node {
+        private final Object edit;
+        private final Object[] slots;
+
+        Node(Object edit, Object[] slots) {
+            this.edit = edit;
+            this.slots = slots;
+        }
+    }
+}
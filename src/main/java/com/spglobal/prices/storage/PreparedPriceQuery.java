@@ -0,0 +1,37 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Objects;
+
+/**
+ * A fixed set of instrument IDs registered once with {@link PrimaryPriceStorage#prepare} and
+ * then polled repeatedly.
+ * <p>
+ * Implementations resolve the IDs to their internal representation when the query is prepared,
+ * so each poll skips the per-ID hashing of {@link PrimaryPriceStorage#getLatest(java.util.Set)}.
+ * Instruments that have no price yet are picked up once they appear. Thread-safe; every poll
+ * reads a single snapshot.
+ */
+public interface PreparedPriceQuery {
+
+    /**
+     * Returns the latest price records of the query's instruments.
+     *
+     * @return an immutable map from instrument ID to payload; IDs without a price are left out
+     */
+    ImmutableMap<String, ImmutableMap<String, Object>> getLatest();
+
+    /**
+     * Passes the latest price records of the query's instruments to {@code sink}.
+     *
+     * @param sink receives each instrument that has a price, with its payload
+     * @return the number of instruments passed to the sink
+     */
+    default int getLatest(PriceSink sink) {
+        Objects.requireNonNull(sink, "sink cannot be null");
+        ImmutableMap<String, ImmutableMap<String, Object>> latest = getLatest();
+        latest.forEach(sink::accept);
+        return latest.size();
+    }
+}
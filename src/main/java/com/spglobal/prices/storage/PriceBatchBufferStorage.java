@@ -1,15 +1,23 @@
 package com.spglobal.prices.storage;
 
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.exception.BatchClosedException;
+import com.spglobal.prices.exception.CommitRejectedException;
 import com.spglobal.prices.exception.NoSuchBatchException;
+import com.spglobal.prices.exception.StagingBudgetExceededException;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Storage for staging price records in batches before committing them to the main storage.
  * <p>
  * Supports concurrent chunk uploads for the same batch. Once a batch is completed,
  * all its records become visible atomically to consumers.
+ * <p>
+ * Batches can be addressed by ID or, faster, by the {@link BatchHandle} returned from
+ * {@link #openBatch()}, which skips the ID lookup.
  */
 public interface PriceBatchBufferStorage {
 
@@ -20,6 +28,14 @@ public interface PriceBatchBufferStorage {
      */
     String startBatch();
 
+    /**
+     * Starts a new batch and returns a handle to it. The handle's {@link BatchHandle#id() ID}
+     * works with the ID-based methods as well.
+     *
+     * @return a handle to the newly created batch
+     */
+    BatchHandle openBatch();
+
     /**
      * Adds a chunk of price records to the specified batch.
      * <p>
@@ -27,11 +43,25 @@ public interface PriceBatchBufferStorage {
      *
      * @param batchId the ID of the batch to add records to
      * @param chunk   the list of price records to add
-     * @throws NoSuchBatchException if the batch with the given ID does not exist,
-     *                              has been cancelled, or has already been completed
+     * @throws NoSuchBatchException           if the batch with the given ID does not exist,
+     *                                        has been cancelled, has expired, or has already been completed
+     * @throws StagingBudgetExceededException if staging the chunk would exceed the staging budget;
+     *                                        the batch stays open
      */
     void addChunk(String batchId, List<PriceData> chunk);
 
+    /**
+     * Adds a chunk of price records to the batch of the handle, as {@link #addChunk(String, List)}.
+     *
+     * @param batch the handle of the batch to add records to
+     * @param chunk the list of price records to add
+     * @throws BatchClosedException           if the batch is no longer open
+     * @throws NoSuchBatchException           if the handle was opened by another storage
+     * @throws StagingBudgetExceededException if staging the chunk would exceed the staging budget;
+     *                                        the batch stays open
+     */
+    void addChunkTo(BatchHandle batch, List<PriceData> chunk);
+
     /**
      * Completes the batch, making all its records visible atomically to consumers.
      * <p>
@@ -44,6 +74,46 @@ public interface PriceBatchBufferStorage {
      */
     List<PriceData> completeBatch(String batchId);
 
+    /**
+     * Completes the batch of the handle, as {@link #completeBatch(String)}.
+     *
+     * @param batch the handle of the batch to complete
+     * @return an immutable list of all price records in this batch
+     * @throws BatchClosedException if the batch is no longer open
+     * @throws NoSuchBatchException if the handle was opened by another storage
+     */
+    List<PriceData> completeBatchOf(BatchHandle batch);
+
+    /**
+     * Completes the batch only if {@code commit} accepts its records.
+     * <p>
+     * The batch is closed to new chunks and its records are passed to {@code commit}, while they
+     * stay charged to the staging budget. If the returned receipt has already failed with
+     * {@link CommitRejectedException}, the batch reopens with its records, so the completion can
+     * be retried; otherwise it is completed as {@link #completeBatch(String)} does. If
+     * {@code commit} throws, the batch is discarded.
+     *
+     * @param batchId the ID of the batch to complete
+     * @param commit  hands the records to the primary storage and returns its receipt
+     * @return the receipt returned by {@code commit}
+     * @throws NoSuchBatchException if the batch with the given ID does not exist,
+     *                              has been cancelled, or has already been completed
+     */
+    CompletableFuture<Long> completeBatch(String batchId, Function<List<PriceData>, CompletableFuture<Long>> commit);
+
+    /**
+     * Completes the batch of the handle if {@code commit} accepts its records, as
+     * {@link #completeBatch(String, Function)}.
+     *
+     * @param batch  the handle of the batch to complete
+     * @param commit hands the records to the primary storage and returns its receipt
+     * @return the receipt returned by {@code commit}
+     * @throws BatchClosedException if the batch is no longer open
+     * @throws NoSuchBatchException if the handle was opened by another storage
+     */
+    CompletableFuture<Long> completeBatchOf(BatchHandle batch,
+                                          Function<List<PriceData>, CompletableFuture<Long>> commit);
+
     /**
      * Cancels the batch, discarding all staged data.
      * <p>
@@ -54,4 +124,13 @@ public interface PriceBatchBufferStorage {
      *                              has been cancelled, or has already been completed
      */
     void cancelBatch(String batchId);
+
+    /**
+     * Cancels the batch of the handle, as {@link #cancelBatch(String)}.
+     *
+     * @param batch the handle of the batch to cancel
+     * @throws BatchClosedException if the batch is no longer open
+     * @throws NoSuchBatchException if the handle was opened by another storage
+     */
+    void cancelBatchOf(BatchHandle batch);
 }
@@ -1,31 +1,111 @@
 package com.spglobal.prices.storage;
 
-import com.google.common.collect.ImmutableList;
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.exception.BatchClosedException;
+import com.spglobal.prices.exception.CommitRejectedException;
 import com.spglobal.prices.exception.NoSuchBatchException;
+import com.spglobal.prices.exception.StagingBudgetExceededException;
 
 import java.util.List;
 import java.util.Objects;
-import java.util.Queue;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Thread-safe in-memory implementation of {@link PriceBatchBufferStorage}.
  * <p>
  * Supports concurrent chunk uploads for the same batch. Once a batch is completed,
  * all records become visible atomically via an immutable snapshot.
+ * <p>
+ * How records are staged is chosen by {@link StagingMode}; by default every record is kept.
+ * <p>
+ * Staging can be bounded with {@link PriceBatchBufferStorageOptions}:
+ * <ul>
+ *     <li>every uploaded record is charged against a global and a per-batch record budget, and a
+ *     chunk that would exceed either is rejected with {@link StagingBudgetExceededException}; the
+ *     charge is returned when the batch completes, is cancelled or expires;</li>
+ *     <li>with a batch TTL, a background reaper discards batches that have not received a chunk
+ *     for that long, so a producer that dies mid-batch does not leak its staged records.</li>
+ * </ul>
+ * <p>
+ * Each batch is a {@link BatchHandle} with a {@link BatchState} changed by compare-and-set:
+ * completion, cancellation and expiry each need to move an open batch out of
+ * {@link BatchState#OPEN}, so exactly one of them wins and later calls are rejected with
+ * {@link BatchClosedException}. Operations on a handle reach its buffer directly; ID-based
+ * operations look the handle up first.
  */
-public class PriceBatchBufferStorageImpl implements PriceBatchBufferStorage {
-    private final ConcurrentMap<String, ConcurrentLinkedQueue<PriceData>> storage = new ConcurrentHashMap<>();
+public class PriceBatchBufferStorageImpl implements PriceBatchBufferStorage, AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(PriceBatchBufferStorageImpl.class.getName());
+
+    private final ConcurrentMap<String, BatchHandle> storage = new ConcurrentHashMap<>();
+    private final PriceBatchBufferStorageOptions options;
+    private final AtomicLong stagedRecords = new AtomicLong();
+
+    /**
+     * Reaps expired batches every half TTL, or {@code null} when batches do not expire.
+     */
+    private final ScheduledExecutorService reaper;
+
+    /**
+     * Batch IDs are a random per-storage prefix and a counter: unique within the storage, and
+     * unlike with {@code UUID.randomUUID()} no shared {@code SecureRandom} is involved.
+     */
+    private final String idPrefix = Integer.toHexString(ThreadLocalRandom.current().nextInt()) + "-";
+    private final AtomicLong nextId = new AtomicLong();
+
+    public PriceBatchBufferStorageImpl() {
+        this(PriceBatchBufferStorageOptions.defaults());
+    }
+
+    public PriceBatchBufferStorageImpl(StagingMode stagingMode) {
+        this(PriceBatchBufferStorageOptions.builder().stagingMode(stagingMode).build());
+    }
+
+    public PriceBatchBufferStorageImpl(PriceBatchBufferStorageOptions options) {
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+        if (options.batchTtl() == null) {
+            reaper = null;
+        } else {
+            long period = Math.max(1, options.batchTtl().toMillis() / 2);
+            reaper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "price-batch-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaper.scheduleWithFixedDelay(this::reapQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background reaper. Staged batches stay usable, but no longer expire on their own;
+     * {@link #reapExpired()} still discards them on demand.
+     */
+    @Override
+    public void close() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
 
     @Override
     public String startBatch() {
-        String batchId = UUID.randomUUID().toString();
-        storage.put(batchId, new ConcurrentLinkedQueue<>());
-        return batchId;
+        return openBatch().id();
+    }
+
+    @Override
+    public BatchHandle openBatch() {
+        BatchHandle batch = new BatchHandle(idPrefix + Long.toString(nextId.incrementAndGet(), 36), this,
+                StagingBuffer.create(options.stagingMode()));
+        storage.put(batch.id(), batch);
+        return batch;
     }
 
     @Override
@@ -35,35 +115,230 @@ public class PriceBatchBufferStorageImpl implements PriceBatchBufferStorage {
         if (chunk == null || chunk.isEmpty()) {
             return;
         }
+        addChunkTo(lookup(batchId), chunk);
+    }
 
-        Queue<PriceData> batch = storage.get(batchId);
-        if (batch == null) {
-            throw new NoSuchBatchException(batchId);
-        }
+    @Override
+    public void addChunkTo(BatchHandle batch, List<PriceData> chunk) {
+        validateHandle(batch);
+        ensureOpen(batch);
 
-        batch.addAll(chunk);
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        reserve(batch, chunk.size());
+        batch.touch();
+        // A concurrent completion may close the buffer after the reservation; the chunk is then
+        // rejected and its reservation returned, here or by the completion.
+        if (!batch.buffer.add(chunk)) {
+            unreserve(batch, chunk.size());
+            throw new BatchClosedException(batch.id(), batch.state().name());
+        }
     }
 
     @Override
-    public ImmutableList<PriceData> completeBatch(String batchId) {
+    public List<PriceData> completeBatch(String batchId) {
         validateParameters(batchId);
+        return completeBatchOf(lookup(batchId));
+    }
 
-        Queue<PriceData> batch = storage.remove(batchId);
+    @Override
+    public List<PriceData> completeBatchOf(BatchHandle batch) {
+        validateHandle(batch);
+        close(batch, BatchState.COMPLETING);
+        List<PriceData> records = batch.buffer.close();
+        batch.transition(BatchState.COMPLETING, BatchState.COMPLETED);
+        return records;
+    }
 
-        if (batch == null) {
-            throw new NoSuchBatchException(batchId);
-        }
+    @Override
+    public CompletableFuture<Long> completeBatch(String batchId,
+                                                 Function<List<PriceData>, CompletableFuture<Long>> commit) {
+        validateParameters(batchId);
+        return completeBatchOf(lookup(batchId), commit);
+    }
 
-        return ImmutableList.copyOf(batch);
+    /**
+     * Keeps the batch registered and charged while {@code commit} runs, so a rejected commit
+     * can put the records back into a fresh buffer and reopen the batch.
+     */
+    @Override
+    public CompletableFuture<Long> completeBatchOf(BatchHandle batch,
+                                                 Function<List<PriceData>, CompletableFuture<Long>> commit) {
+        validateHandle(batch);
+        Objects.requireNonNull(commit, "commit cannot be null");
+        if (!batch.transition(BatchState.OPEN, BatchState.COMPLETING)) {
+            throw new BatchClosedException(batch.id(), batch.state().name());
+        }
+        List<PriceData> records = batch.buffer.close();
+        CompletableFuture<Long> receipt;
+        try {
+            receipt = commit.apply(records);
+        } catch (RuntimeException | Error e) {
+            storage.remove(batch.id(), batch);
+            release(batch);
+            batch.transition(BatchState.COMPLETING, BatchState.CANCELLED);
+            throw e;
+        }
+        if (receipt.state() == Future.State.FAILED && receipt.exceptionNow() instanceof CommitRejectedException) {
+            StagingBuffer reopened = StagingBuffer.create(options.stagingMode());
+            if (!records.isEmpty()) {
+                reopened.add(records);
+            }
+            batch.buffer = reopened;
+            batch.touch();
+            batch.transition(BatchState.COMPLETING, BatchState.OPEN);
+            return receipt;
+        }
+        storage.remove(batch.id(), batch);
+        release(batch);
+        batch.transition(BatchState.COMPLETING, BatchState.COMPLETED);
+        return receipt;
     }
 
     @Override
     public void cancelBatch(String batchId) {
         validateParameters(batchId);
+        cancelBatchOf(lookup(batchId));
+    }
+
+    @Override
+    public void cancelBatchOf(BatchHandle batch) {
+        validateHandle(batch);
+        close(batch, BatchState.CANCELLED);
+        // Rejects uploads that passed the state check just before the cancellation.
+        batch.buffer.close();
+    }
+
+    /**
+     * Discards every open batch that has not received a chunk for longer than the configured
+     * TTL. Called periodically by the reaper; does nothing without a TTL.
+     *
+     * @return the number of batches discarded
+     */
+    public int reapExpired() {
+        if (options.batchTtl() == null) {
+            return 0;
+        }
+        long deadline = System.nanoTime() - options.batchTtl().toNanos();
+        int reaped = 0;
+        for (BatchHandle batch : storage.values()) {
+            if (batch.lastActivity - deadline < 0 && batch.transition(BatchState.OPEN, BatchState.CANCELLED)) {
+                storage.remove(batch.id(), batch);
+                release(batch);
+                // Rejects uploads that passed the state check just before the batch expired.
+                batch.buffer.close();
+                reaped++;
+            }
+        }
+        return reaped;
+    }
+
+    /**
+     * Number of records staged over all open batches, as charged against the budget.
+     */
+    public long stagedRecords() {
+        return stagedRecords.get();
+    }
+
+    private void reapQuietly() {
+        try {
+            int reaped = reapExpired();
+            if (reaped > 0) {
+                LOGGER.log(System.Logger.Level.WARNING, "Discarded {0} abandoned batches", reaped);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Batch reaper failed", e);
+        }
+    }
 
-        if (storage.remove(batchId) == null) {
+    /**
+     * Charges {@code records} to the global budget, then to the batch. Both checks reserve
+     * before staging, so concurrent uploads can never overshoot a budget.
+     */
+    private void reserve(BatchHandle batch, long records) {
+        long staged;
+        do {
+            staged = stagedRecords.get();
+            if (records > options.maxStagedRecords() - staged) {
+                throw new StagingBudgetExceededException(batch.id(), "staging budget of "
+                        + options.maxStagedRecords() + " records exhausted");
+            }
+        } while (!stagedRecords.compareAndSet(staged, staged + records));
+
+        long current;
+        do {
+            current = batch.records.get();
+            if (current == BatchHandle.CLOSED) {
+                stagedRecords.addAndGet(-records);
+                throw new BatchClosedException(batch.id(), batch.state().name());
+            }
+            if (records > options.maxBatchRecords() - current) {
+                stagedRecords.addAndGet(-records);
+                throw new StagingBudgetExceededException(batch.id(), "batch limit of "
+                        + options.maxBatchRecords() + " records reached");
+            }
+        } while (!batch.records.compareAndSet(current, current + records));
+    }
+
+    /**
+     * Returns the reservation of a chunk that was not staged, unless the batch's charge has been
+     * returned already.
+     */
+    private void unreserve(BatchHandle batch, long records) {
+        long current;
+        do {
+            current = batch.records.get();
+            if (current == BatchHandle.CLOSED) {
+                return;
+            }
+        } while (!batch.records.compareAndSet(current, current - records));
+        stagedRecords.addAndGet(-records);
+    }
+
+    /**
+     * Seals the batch's charge and returns it to the global budget. Reservations made before
+     * the seal are included, whether or not their chunk makes it into the buffer.
+     */
+    private void release(BatchHandle batch) {
+        long charged = batch.records.getAndSet(BatchHandle.CLOSED);
+        if (charged != BatchHandle.CLOSED) {
+            stagedRecords.addAndGet(-charged);
+        }
+    }
+
+    /**
+     * Takes the batch out of {@link BatchState#OPEN} into {@code target}, unregisters it and
+     * returns its charge. Only one caller can close a batch; everyone else is rejected.
+     */
+    private void close(BatchHandle batch, BatchState target) {
+        if (!batch.transition(BatchState.OPEN, target)) {
+            throw new BatchClosedException(batch.id(), batch.state().name());
+        }
+        storage.remove(batch.id(), batch);
+        release(batch);
+    }
+
+    private BatchHandle lookup(String batchId) {
+        BatchHandle batch = storage.get(batchId);
+        if (batch == null) {
             throw new NoSuchBatchException(batchId);
         }
+        return batch;
+    }
+
+    private void ensureOpen(BatchHandle batch) {
+        BatchState state = batch.state();
+        if (state != BatchState.OPEN) {
+            throw new BatchClosedException(batch.id(), state.name());
+        }
+    }
+
+    private void validateHandle(BatchHandle batch) {
+        Objects.requireNonNull(batch, "batch cannot be null");
+        if (!batch.isOwnedBy(this)) {
+            throw new NoSuchBatchException(batch.id());
+        }
     }
 
     private void validateParameters(String batchId) {
@@ -0,0 +1,109 @@
+package com.spglobal.prices.storage;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Options for {@link PriceBatchBufferStorageImpl}.
+ * <p>
+ * Immutable; create instances with {@link #builder()} or use {@link #defaults()}. By default
+ * batches never expire and staging is unbounded.
+ */
+public final class PriceBatchBufferStorageOptions {
+
+    private static final PriceBatchBufferStorageOptions DEFAULTS = builder().build();
+
+    private final StagingMode stagingMode;
+    private final Duration batchTtl;
+    private final long maxStagedRecords;
+    private final long maxBatchRecords;
+
+    private PriceBatchBufferStorageOptions(Builder builder) {
+        this.stagingMode = builder.stagingMode;
+        this.batchTtl = builder.batchTtl;
+        this.maxStagedRecords = builder.maxStagedRecords;
+        this.maxBatchRecords = builder.maxBatchRecords;
+    }
+
+    public static PriceBatchBufferStorageOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * How records of open batches are staged.
+     */
+    public StagingMode stagingMode() {
+        return stagingMode;
+    }
+
+    /**
+     * How long a batch may stay open without a chunk upload before it is discarded, or
+     * {@code null} if open batches never expire.
+     */
+    public Duration batchTtl() {
+        return batchTtl;
+    }
+
+    /**
+     * Maximum number of uploaded records staged over all open batches.
+     */
+    public long maxStagedRecords() {
+        return maxStagedRecords;
+    }
+
+    /**
+     * Maximum number of uploaded records staged for one batch. Keeping it below
+     * {@link #maxStagedRecords()} stops a single runaway batch from using up the whole budget.
+     */
+    public long maxBatchRecords() {
+        return maxBatchRecords;
+    }
+
+    public static final class Builder {
+        private StagingMode stagingMode = StagingMode.RETAIN_ALL;
+        private Duration batchTtl;
+        private long maxStagedRecords = Long.MAX_VALUE;
+        private long maxBatchRecords = Long.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        public Builder stagingMode(StagingMode stagingMode) {
+            this.stagingMode = Objects.requireNonNull(stagingMode, "stagingMode cannot be null");
+            return this;
+        }
+
+        public Builder batchTtl(Duration batchTtl) {
+            Objects.requireNonNull(batchTtl, "batchTtl cannot be null");
+            if (batchTtl.isNegative() || batchTtl.isZero()) {
+                throw new IllegalArgumentException("batchTtl must be positive");
+            }
+            this.batchTtl = batchTtl;
+            return this;
+        }
+
+        public Builder maxStagedRecords(long maxStagedRecords) {
+            if (maxStagedRecords < 1) {
+                throw new IllegalArgumentException("maxStagedRecords must be positive");
+            }
+            this.maxStagedRecords = maxStagedRecords;
+            return this;
+        }
+
+        public Builder maxBatchRecords(long maxBatchRecords) {
+            if (maxBatchRecords < 1) {
+                throw new IllegalArgumentException("maxBatchRecords must be positive");
+            }
+            this.maxBatchRecords = maxBatchRecords;
+            return this;
+        }
+
+        public PriceBatchBufferStorageOptions build() {
+            return new PriceBatchBufferStorageOptions(this);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.spglobal.prices.storage;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable bounded history of one instrument: its most recent records ordered by {@code asOf}.
+ * <p>
+ * Timestamps are held in parallel primitive arrays and payloads in their {@link CompactPayload}
+ * form, so an entry costs a {@code long}, an {@code int} and a reference on top of the payload,
+ * and an as-of lookup is a binary search over the seconds array. Adding a record copies the
+ * arrays, which keeps published snapshots unchanged; the depth is meant to stay small.
+ */
+final class PriceHistory {
+    private final int depth;
+    private final long[] epochSeconds;
+    private final int[] nanos;
+    /**
+     * {@code Map<String, Object>} payloads; an {@code Object[]} since generic arrays cannot be created.
+     */
+    private final Object[] payloads;
+
+    private PriceHistory(int depth, long[] epochSeconds, int[] nanos, Object[] payloads) {
+        this.depth = depth;
+        this.epochSeconds = epochSeconds;
+        this.nanos = nanos;
+        this.payloads = payloads;
+    }
+
+    /**
+     * Returns a history holding only {@code price}, keeping at most {@code depth} records.
+     */
+    static PriceHistory of(CompactPrice price, int depth) {
+        return new PriceHistory(depth, new long[]{price.epochSecond()}, new int[]{price.nano()},
+                new Object[]{price.payload()});
+    }
+
+    /**
+     * Merges the single record of {@code candidate} into {@code current}. A record with the same
+     * {@code asOf} as a held one is ignored, as in {@link CompactPrice#latest}; once the history
+     * is full, the oldest record is dropped, or the candidate if it is older than all of them.
+     */
+    static PriceHistory add(PriceHistory current, PriceHistory candidate) {
+        long second = candidate.epochSeconds[0];
+        int nano = candidate.nanos[0];
+        int found = current.search(second, nano);
+        if (found >= 0) {
+            return current;
+        }
+        int insertAt = -found - 1;
+        int size = current.size();
+        boolean full = size >= current.depth;
+        if (full && insertAt == 0) {
+            return current;
+        }
+        // When full, drop index 0 and shift the records before the insertion point left.
+        int drop = full ? 1 : 0;
+        int newSize = size + 1 - drop;
+        long[] seconds = new long[newSize];
+        int[] nanos = new int[newSize];
+        Object[] payloads = new Object[newSize];
+        int before = insertAt - drop;
+        System.arraycopy(current.epochSeconds, drop, seconds, 0, before);
+        System.arraycopy(current.nanos, drop, nanos, 0, before);
+        System.arraycopy(current.payloads, drop, payloads, 0, before);
+        seconds[before] = second;
+        nanos[before] = nano;
+        payloads[before] = candidate.payloads[0];
+        System.arraycopy(current.epochSeconds, insertAt, seconds, before + 1, size - insertAt);
+        System.arraycopy(current.nanos, insertAt, nanos, before + 1, size - insertAt);
+        System.arraycopy(current.payloads, insertAt, payloads, before + 1, size - insertAt);
+        return new PriceHistory(current.depth, seconds, nanos, payloads);
+    }
+
+    int size() {
+        return epochSeconds.length;
+    }
+
+    /**
+     * Returns the payload of the newest record with {@code asOf} at or before {@code instant}, or
+     * {@code null} if all held records are later.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> payloadAt(Instant instant) {
+        int found = search(instant.getEpochSecond(), instant.getNano());
+        int index = found >= 0 ? found : -found - 2;
+        return index < 0 ? null : (Map<String, Object>) payloads[index];
+    }
+
+    /**
+     * Binary search by {@code (second, nano)} with the contract of {@link Arrays#binarySearch}.
+     */
+    private int search(long second, int nano) {
+        int low = 0;
+        int high = epochSeconds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = epochSeconds[mid] != second ? Long.compare(epochSeconds[mid], second)
+                    : Integer.compare(nanos[mid], nano);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,20 @@
+package com.spglobal.prices.storage;
+
+import java.util.Map;
+
+/**
+ * Receives the results of {@link PrimaryPriceStorage#getLatest(java.util.Collection, PriceSink)} one
+ * instrument at a time.
+ */
+@FunctionalInterface
+public interface PriceSink {
+
+    /**
+     * Called once for every requested instrument that has a price.
+     *
+     * @param id      the instrument ID as requested
+     * @param payload read-only view of the stored payload; it never changes and may be kept
+     *                after the call returns
+     */
+    void accept(String id, Map<String, Object> payload);
+}
@@ -0,0 +1,56 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable view of one published storage version.
+ * <p>
+ * Every call on the same handle reads the same version, so a consumer can fetch a large
+ * portfolio in several calls, or iterate it, without mixing batches. The handle is cheap: it
+ * pins the version without copying it, and payloads are only materialized when asked for.
+ * <p>
+ * Close the handle when done; calls on a closed handle throw {@link IllegalStateException}.
+ * Implementations may use the open-to-close interval to track snapshot lifetimes.
+ */
+public interface PriceSnapshot extends AutoCloseable {
+
+    /**
+     * Returns the storage version this snapshot was taken at.
+     */
+    long version();
+
+    /**
+     * Returns the payload of the instrument, or {@code null} if it has none.
+     *
+     * @param id the instrument ID
+     */
+    ImmutableMap<String, Object> get(String id);
+
+    /**
+     * Returns the payloads of the given instruments; IDs without a price are left out.
+     *
+     * @param ids the set of instrument IDs to fetch
+     */
+    ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids);
+
+    /**
+     * Returns the number of instruments with a price.
+     */
+    int size();
+
+    /**
+     * Visits every instrument with its payload, in no particular order.
+     *
+     * @param action receives the instrument ID and its payload
+     */
+    void forEach(BiConsumer<String, ImmutableMap<String, Object>> action);
+
+    /**
+     * Releases the handle. Closing twice has no effect.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,14 @@
+package com.spglobal.prices.storage;
+
+/**
+ * Handle of a registered price subscription.
+ */
+public interface PriceSubscription extends AutoCloseable {
+
+    /**
+     * Stops delivery. An update already being delivered may still complete; no further updates
+     * are delivered afterwards. Closing twice has no effect.
+     */
+    @Override
+    void close();
+}
@@ -1,16 +1,33 @@
 package com.spglobal.prices.storage;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.spglobal.prices.dto.PriceChanges;
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.dto.PriceUpdate;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Thread-safe storage for the latest price records of financial instruments.
  * <p>
  * Supports atomic updates and snapshot reads. Consumers can request the latest prices
  * for a set of instrument IDs. Producers can update records in batches.
+ * <p>
+ * Every published snapshot carries a monotonically increasing version. Producers receive the
+ * version their batch became visible in, and consumers can wait for a version to get
+ * read-your-writes without polling.
+ * <p>
+ * Implementations may also push changes to subscribers instead of having them poll
+ * {@link #getLatest(Set)}.
  */
 public interface PrimaryPriceStorage {
 
@@ -25,13 +42,222 @@ public interface PrimaryPriceStorage {
      */
     ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids);
 
+    /**
+     * Returns the latest price records for the given instrument IDs, keeping only the given
+     * payload fields. Implementations with a compact payload layout never materialize the other
+     * fields.
+     * <p>
+     * The default implementation filters the result of {@link #getLatest(Set)}.
+     *
+     * @param ids    the set of instrument IDs to fetch prices for
+     * @param fields the payload fields to return; fields missing from a payload are left out
+     * @return an immutable map from instrument ID to the projected payload; instruments without
+     * a price are left out, instruments with none of the fields map to an empty payload
+     */
+    default ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids, Set<String> fields) {
+        Objects.requireNonNull(fields, "fields cannot be null");
+        ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+        getLatest(ids).forEach((id, payload) -> result.put(id, ImmutableMap.copyOf(
+                Maps.filterKeys(payload, fields::contains))));
+        return result.build();
+    }
+
+    /**
+     * Passes the latest price records for the given instrument IDs to {@code sink}, all read
+     * from the same snapshot. Meant for hot read paths: implementations can hand out the
+     * stored payloads as they are, without building a result map.
+     * <p>
+     * The default implementation delegates to {@link #getLatest(Set)}.
+     *
+     * @param ids  the instrument IDs to fetch prices for; {@code null} elements are ignored
+     * @param sink receives each instrument that has a price, with its payload
+     * @return the number of instruments passed to the sink
+     */
+    default int getLatest(Collection<String> ids, PriceSink sink) {
+        Objects.requireNonNull(sink, "sink cannot be null");
+        Set<String> unique = new HashSet<>(ids);
+        unique.remove(null);
+        ImmutableMap<String, ImmutableMap<String, Object>> latest = getLatest(unique);
+        latest.forEach(sink::accept);
+        return latest.size();
+    }
+
     /**
      * Updates the storage with the provided price records.
      * <p>
      * If multiple records exist for the same instrument ID, the one with the latest
      * {@code asOf} timestamp will be retained. The update is atomic and thread-safe.
+     * <p>
+     * The update is applied asynchronously. The returned future completes with the version of
+     * the first snapshot containing the records, or immediately with the current version when
+     * there is nothing to apply.
+     * <p>
+     * Implementations with a bounded commit queue may make the caller wait for room, or fail
+     * the future with {@link com.spglobal.prices.exception.CommitRejectedException}; the records
+     * are then not applied.
      *
      * @param newRecords the list of price records to apply
+     * @return a future completed with the snapshot version in which the records are visible
+     */
+    CompletableFuture<Long> updateRecords(List<PriceData> newRecords);
+
+    /**
+     * Updates the storage with the provided price records, committed in the given lane.
+     * <p>
+     * Behaves as {@link #updateRecords(List)}; implementations with priority lanes commit
+     * {@link CommitPriority#URGENT} batches ahead of queued normal ones. The default ignores the
+     * priority.
+     *
+     * @param newRecords the list of price records to apply
+     * @param priority   the lane of the batch
+     * @return a future completed with the snapshot version in which the records are visible
+     */
+    default CompletableFuture<Long> updateRecords(List<PriceData> newRecords, CommitPriority priority) {
+        Objects.requireNonNull(priority, "priority cannot be null");
+        return updateRecords(newRecords);
+    }
+
+    /**
+     * Applies a single price outside of any batch, under the last-value rule.
+     * <p>
+     * Implementations may conflate prices published close together into one commit, in which
+     * case a price superseded by a newer one for the same instrument is never visible. The
+     * default commits the price as an urgent batch of its own.
+     *
+     * @param price the price record to apply
+     * @return a future completed with a snapshot version in which the price, or a newer one for
+     * its instrument, is visible
+     */
+    default CompletableFuture<Long> publish(PriceData price) {
+        Objects.requireNonNull(price, "price cannot be null");
+        return updateRecords(List.of(price), CommitPriority.URGENT);
+    }
+
+    /**
+     * Applies several prices as {@link #publish(PriceData)} does. Each instrument is updated
+     * atomically, but the prices are not guaranteed to become visible in the same version.
+     *
+     * @param prices the price records to apply
+     * @return a future completed with a snapshot version in which all the prices, or newer ones
+     * for their instruments, are visible
+     */
+    default CompletableFuture<Long> publishAll(Collection<PriceData> prices) {
+        Objects.requireNonNull(prices, "prices cannot be null");
+        return updateRecords(List.copyOf(prices), CommitPriority.URGENT);
+    }
+
+    /**
+     * Returns the version of the currently visible snapshot. The empty storage has version 0.
+     *
+     * @return the current snapshot version
+     */
+    long getVersion();
+
+    /**
+     * Returns a future that completes once the visible snapshot version is at least
+     * {@code version}. The future is completed with the version actually published.
+     *
+     * @param version the version to wait for
+     * @return a future completed with a published version greater than or equal to {@code version}
+     */
+    CompletableFuture<Long> awaitVersion(long version);
+
+    /**
+     * Returns, for each given instrument, the payload of its newest record with {@code asOf} at
+     * or before {@code asOf}, looked up in the bounded history the implementation keeps.
+     * Instruments without such a record in the history are left out.
+     *
+     * @param ids   the set of instrument IDs to fetch prices for
+     * @param asOf  the point in time to read
+     * @return an immutable map from instrument ID to the payload valid at {@code asOf}
+     * @throws UnsupportedOperationException if the implementation keeps no history
+     */
+    default ImmutableMap<String, ImmutableMap<String, Object>> getAsOf(Set<String> ids, Instant asOf) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " keeps no price history");
+    }
+
+    /**
+     * Registers a set of instrument IDs to be polled repeatedly.
+     * <p>
+     * The default implementation calls {@link #getLatest(Set)} on every poll.
+     *
+     * @param ids the instrument IDs to watch; {@code null} elements are ignored
+     * @return a query returning the latest prices of those instruments
+     */
+    default PreparedPriceQuery prepare(Set<String> ids) {
+        Set<String> copy = new HashSet<>(ids);
+        copy.remove(null);
+        Set<String> prepared = Set.copyOf(copy);
+        return () -> getLatest(prepared);
+    }
+
+    /**
+     * Pins the current version and returns a handle to read it, for consumers that need several
+     * consistent reads.
+     *
+     * @return a handle on the currently visible snapshot
+     * @throws UnsupportedOperationException if the implementation does not hand out snapshots
+     */
+    default PriceSnapshot snapshot() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not hand out snapshots");
+    }
+
+    /**
+     * Returns the instruments updated after snapshot {@code version}, for consumers that poll
+     * incrementally. Passing the returned version to the next call continues from there.
+     * <p>
+     * Implementations that only keep recent changes return every instrument, flagged as
+     * {@link PriceChanges#full()}, when {@code version} is too old.
+     * <p>
+     * The default implementation tracks no changes: unless {@code version} is the current one,
+     * it returns every instrument of a {@link #snapshot()}, flagged as full.
+     *
+     * @param version the snapshot version the caller is up to date with
+     * @return the latest payloads of the instruments changed since {@code version}
+     * @throws UnsupportedOperationException if the implementation neither tracks changes nor
+     *                                       hands out snapshots
+     */
+    default PriceChanges getChangesSince(long version) {
+        try (PriceSnapshot snapshot = snapshot()) {
+            if (version == snapshot.version()) {
+                return new PriceChanges(version, false, ImmutableMap.of());
+            }
+            ImmutableMap.Builder<String, ImmutableMap<String, Object>> all =
+                    ImmutableMap.builderWithExpectedSize(snapshot.size());
+            snapshot.forEach(all::put);
+            return new PriceChanges(snapshot.version(), true, all.build());
+        }
+    }
+
+    /**
+     * Subscribes to changes of the given instruments.
+     * <p>
+     * The listener first receives the current prices of the instruments that have one, then one
+     * {@link PriceUpdate} per committed version that changed any of them. Updates are delivered
+     * one at a time on {@code executor}. A listener that falls behind is never queued for: the
+     * changes it has not yet received are conflated per instrument and delivered together.
+     *
+     * @param ids      the instrument IDs to watch
+     * @param executor runs the listener
+     * @param listener receives the updates
+     * @return a handle that stops delivery when closed
+     * @throws UnsupportedOperationException if the implementation does not support subscriptions
+     */
+    default PriceSubscription subscribe(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support subscriptions");
+    }
+
+    /**
+     * Subscribes to changes of all instruments. Works like {@link #subscribe(Set, Executor, Consumer)},
+     * except that no initial state is delivered: the first update covers the first version
+     * committed after subscribing.
+     *
+     * @param executor runs the listener
+     * @param listener receives the updates
+     * @return a handle that stops delivery when closed
+     * @throws UnsupportedOperationException if the implementation does not support subscriptions
      */
-    void updateRecords(List<PriceData> newRecords);
+    default PriceSubscription subscribeAll(Executor executor, Consumer<PriceUpdate> listener) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support subscriptions");
+    }
 }
@@ -1,59 +1,799 @@
 package com.spglobal.prices.storage;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.spglobal.prices.dto.PriceChanges;
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.dto.PriceUpdate;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Thread-safe implementation of {@link PrimaryPriceStorage}.
  * <p>
- * Supports atomic snapshot reads and single-threaded batch updates.
+ * Supports atomic snapshot reads and single-threaded batch updates. Records are stored as
+ * {@link CompactPrice} in a {@link PersistentIntMap} keyed by {@link InstrumentDictionary} codes,
+ * and batches are merged by a {@link CommitPipeline} writer; single prices reach it through a
+ * {@link TickLane}. Optional features are configured with {@link PrimaryPriceStorageOptions}:
+ * {@link PriceHistory per-instrument history}, a {@link ChangeJournal}, and durability through
+ * {@link SnapshotPersistence}. Changes are pushed to subscribers by a {@link SubscriptionRegistry}.
  */
-public class PrimaryPriceStorageImpl implements PrimaryPriceStorage {
-    private final AtomicReference<ImmutableMap<String, PriceData>> storage = new AtomicReference<>();
+public class PrimaryPriceStorageImpl implements PrimaryPriceStorage, AutoCloseable {
+    private static final int MIN_SLICE_SIZE = 16_384;
 
-    private final ExecutorService singleWriter = Executors.newSingleThreadExecutor(r -> {
-        Thread t = new Thread(r);
-        t.setDaemon(true);
-        return t;
-    });
+    private final AtomicReference<Snapshot> storage = new AtomicReference<>(Snapshot.EMPTY);
+
+    private final InstrumentDictionary dictionary = new InstrumentDictionary();
+    private final CompactPayload.Shapes shapes = new CompactPayload.Shapes();
+
+    private final PrimaryPriceStorageOptions options;
+
+    private final SnapshotPersistence persistence;
+
+    /**
+     * Checkpoint restored on startup, or {@code null}. Reads fall back to it for instruments not
+     * updated since, and a batch loads an instrument's checkpointed record before merging into it,
+     * so the last-value rule still holds.
+     */
+    private final SnapshotCheckpoint restored;
+
+    private final VersionWaiters versionWaiters = new VersionWaiters(this::getVersion);
+
+    private final LongAdder openSnapshots = new LongAdder();
+
+    private final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
+
+    /**
+     * Codes changed by each recent version, or {@code null} when disabled.
+     */
+    private final ChangeJournal journal;
+
+    /**
+     * Writer-owned: the last version each code was recorded as changed in, to report it once.
+     */
+    private long[] changeMarks = new long[0];
+
+    private final CommitPipeline<List<PriceData>> singleWriter;
+
+    /**
+     * Single prices published outside of batches, flushed to the writer as urgent batches weighed
+     * by the instruments they drain.
+     */
+    private final TickLane ticks;
 
     public PrimaryPriceStorageImpl() {
-        storage.set(ImmutableMap.of());
+        this(PrimaryPriceStorageOptions.defaults());
+    }
+
+    public PrimaryPriceStorageImpl(PrimaryPriceStorageOptions options) {
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+        this.singleWriter = new CommitPipeline<>("primary-price-storage-writer", this::commit, List::size,
+                options.maxQueuedRecords(), options.backpressurePolicy(), options.backpressureTimeout(),
+                options.commitWaitStrategy());
+        this.ticks = new TickLane(flush -> singleWriter.submitPrepaid(flush, CommitPriority.URGENT),
+                singleWriter::reserve, singleWriter::unreserve);
+        this.persistence = new SnapshotPersistence(options, dictionary, storage::get);
+        this.restored = persistence.restored();
+        if (restored != null) {
+            storage.set(new Snapshot(PersistentIntMap.empty(), PersistentIntMap.empty(), restored.version()));
+        }
+        replayLog();
+        journal = options.changeJournalCapacity() == 0 ? null
+                : new ChangeJournal(options.changeJournalCapacity(), storage.get().version());
+        persistence.startCheckpoints();
+    }
+
+    /**
+     * Applies the batches logged after the restored snapshot version.
+     */
+    private void replayLog() {
+        Snapshot current = storage.get();
+        PersistentIntMap.Builder<CompactPrice> builder = current.prices().toBuilder();
+        PersistentIntMap.Builder<PriceHistory> history = current.history().toBuilder();
+        long version = persistence.replayLog(current.version(), (logged, records) -> records.forEach(
+                price -> merge(builder, options.historyDepth() == 0 ? null : history, price)));
+        if (version != current.version()) {
+            storage.set(new Snapshot(builder.build(), history.build(), version));
+        }
     }
 
     @Override
     public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids) {
-        Map<String, PriceData> snapshot = storage.get();
-        return ids.stream()
-                  .filter(Objects::nonNull)
-                  .map(snapshot::get)
-                  .filter(Objects::nonNull)
-                  .collect(ImmutableMap.toImmutableMap(PriceData::id, PriceData::payload));
+        // Read the snapshot first: every code it holds was interned before it was published.
+        return latest(storage.get(), ids);
+    }
+
+    /**
+     * Allocation-free lookup: the stored payload views are passed to the sink as they are, and a
+     * {@link RandomAccess} list of ids is walked by index. Only instruments still served from a
+     * restored checkpoint have their payload decoded, which allocates.
+     */
+    @Override
+    public int getLatest(Collection<String> ids, PriceSink sink) {
+        Objects.requireNonNull(sink, "sink cannot be null");
+        Snapshot snapshot = storage.get();
+        int found = 0;
+        if (ids instanceof List<String> list && ids instanceof RandomAccess) {
+            for (int i = 0, n = list.size(); i < n; i++) {
+                found += lookup(snapshot, list.get(i), sink);
+            }
+        } else {
+            for (String id : ids) {
+                found += lookup(snapshot, id, sink);
+            }
+        }
+        return found;
+    }
+
+    private int lookup(Snapshot snapshot, String id, PriceSink sink) {
+        if (id == null) {
+            return 0;
+        }
+        int code = dictionary.codeOf(id);
+        CompactPrice price = code < 0 ? null : snapshot.prices().get(code);
+        Map<String, Object> payload = price != null ? price.payload()
+                : restored == null ? null : restored.payload(id);
+        if (payload == null) {
+            return 0;
+        }
+        sink.accept(id, payload);
+        return 1;
+    }
+
+    /**
+     * Projects stored payloads through a {@link CompactPayload.Projection}, which boxes only the
+     * requested slots. Instruments still served from a restored checkpoint are decoded in full
+     * before projecting.
+     */
+    @Override
+    public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids, Set<String> fields) {
+        CompactPayload.Projection projection = CompactPayload.projection(Objects.requireNonNull(fields,
+                "fields cannot be null"));
+        ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+        getLatest(ids, (id, payload) -> result.put(id, projection.apply(payload)));
+        return result.build();
+    }
+
+    private ImmutableMap<String, ImmutableMap<String, Object>> latest(Snapshot snapshot, Set<String> ids) {
+        ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+        for (String id : ids) {
+            ImmutableMap<String, Object> payload = payload(snapshot, id);
+            if (payload != null) {
+                result.put(id, payload);
+            }
+        }
+        return result.build();
+    }
+
+    private ImmutableMap<String, Object> payload(Snapshot snapshot, String id) {
+        if (id == null) {
+            return null;
+        }
+        int code = dictionary.codeOf(id);
+        CompactPrice price = code < 0 ? null : snapshot.prices().get(code);
+        if (price != null) {
+            return price.immutablePayload();
+        }
+        return restored == null ? null : restored.payload(id);
+    }
+
+    @Override
+    public ImmutableMap<String, ImmutableMap<String, Object>> getAsOf(Set<String> ids, Instant asOf) {
+        Objects.requireNonNull(asOf, "asOf cannot be null");
+        if (options.historyDepth() == 0) {
+            throw new UnsupportedOperationException("No price history configured");
+        }
+        Snapshot snapshot = storage.get();
+        ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+        for (String id : ids) {
+            if (id == null) {
+                continue;
+            }
+            int code = dictionary.codeOf(id);
+            PriceHistory history = code < 0 ? null : snapshot.history().get(code);
+            Map<String, Object> payload;
+            if (history != null) {
+                payload = history.payloadAt(asOf);
+            } else {
+                // Not updated since the restart: the checkpointed record is all there is.
+                CompactPrice checkpointed = restored == null ? null : restored.get(id, shapes);
+                payload = checkpointed == null || isAfter(checkpointed, asOf) ? null : checkpointed.payload();
+            }
+            if (payload != null) {
+                result.put(id, CompactPayload.toImmutableMap(payload));
+            }
+        }
+        return result.build();
+    }
+
+    private static boolean isAfter(CompactPrice price, Instant instant) {
+        return price.epochSecond() != instant.getEpochSecond()
+                ? price.epochSecond() > instant.getEpochSecond()
+                : price.nano() > instant.getNano();
+    }
+
+    /**
+     * Resolves the ids to dictionary codes up front; a poll is then one trie lookup per id.
+     * Ids unknown so far are resolved again only after new ids have been interned.
+     */
+    @Override
+    public PreparedPriceQuery prepare(Set<String> ids) {
+        return new PreparedQuery(ids.stream().filter(Objects::nonNull).distinct().toArray(String[]::new));
     }
 
+    /**
+     * Pins the current snapshot. The handle keeps the published version reachable, while
+     * reads on it resolve ids through the dictionary as {@link #getLatest(Set)} does.
+     */
     @Override
-    public void updateRecords(List<PriceData> priceDataList) {
+    public PriceSnapshot snapshot() {
+        openSnapshots.increment();
+        return new PinnedSnapshot(storage.get());
+    }
+
+    /**
+     * Number of handles returned by {@link #snapshot()} that have not been closed yet.
+     */
+    public long openSnapshots() {
+        return openSnapshots.sum();
+    }
+
+    /**
+     * Current load of the commit queue: batches and records waiting for the writer, and how far
+     * publication lags behind submission.
+     */
+    public CommitQueueStats commitQueueStats() {
+        return singleWriter.stats();
+    }
+
+    @Override
+    public CompletableFuture<Long> publish(PriceData price) {
+        return ticks.publish(price);
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAll(Collection<PriceData> prices) {
+        Objects.requireNonNull(prices, "prices cannot be null");
+        if (prices.isEmpty()) {
+            return CompletableFuture.completedFuture(getVersion());
+        }
+        return ticks.publishAll(prices);
+    }
+
+    @Override
+    public CompletableFuture<Long> updateRecords(List<PriceData> priceDataList) {
+        return updateRecords(priceDataList, CommitPriority.NORMAL);
+    }
+
+    @Override
+    public CompletableFuture<Long> updateRecords(List<PriceData> priceDataList, CommitPriority priority) {
+        Objects.requireNonNull(priority, "priority cannot be null");
         if (priceDataList == null || priceDataList.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(getVersion());
         }
-        singleWriter.submit(() -> {
-            Map<String, PriceData> snapshot = new HashMap<>(storage.get());
+        return singleWriter.submit(priceDataList, priority);
+    }
+
+    @Override
+    public long getVersion() {
+        return storage.get().version();
+    }
 
-            for (PriceData price : priceDataList) {
-                snapshot.merge(price.id(), price,
-                        (oldValue, newValue) -> newValue.asOf().isAfter(oldValue.asOf()) ? newValue : oldValue);
+    @Override
+    public CompletableFuture<Long> awaitVersion(long version) {
+        return versionWaiters.await(version);
+    }
+
+    @Override
+    public PriceChanges getChangesSince(long version) {
+        Snapshot snapshot = storage.get();
+        // The journal gets a version before it is published, so it covers the whole snapshot.
+        List<int[]> journaled = journal == null ? null : journal.changesBetween(version, snapshot.version());
+        if (journaled == null) {
+            return new PriceChanges(snapshot.version(), true, all(snapshot));
+        }
+        ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+        for (int[] codes : journaled) {
+            for (int code : codes) {
+                result.put(dictionary.idOf(code), snapshot.prices().get(code).immutablePayload());
+            }
+        }
+        return new PriceChanges(snapshot.version(), false, result.buildKeepingLast());
+    }
+
+    private ImmutableMap<String, ImmutableMap<String, Object>> all(Snapshot snapshot) {
+        ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+        forEach(snapshot, result::put);
+        return result.build();
+    }
+
+    /**
+     * Visits every instrument of the snapshot, including those still only in the restored
+     * checkpoint.
+     */
+    private void forEach(Snapshot snapshot, BiConsumer<String, ImmutableMap<String, Object>> action) {
+        snapshot.prices().forEach((price, code) -> action.accept(dictionary.idOf(code), price.immutablePayload()));
+        if (restored != null) {
+            restored.forEach((id, window, offset) -> {
+                if (!inMemory(snapshot, id)) {
+                    action.accept(id, restored.payload(id));
+                }
+            });
+        }
+    }
+
+    private boolean inMemory(Snapshot snapshot, String id) {
+        int code = dictionary.codeOf(id);
+        return code >= 0 && snapshot.prices().get(code) != null;
+    }
+
+    @Override
+    public PriceSubscription subscribe(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener) {
+        Objects.requireNonNull(ids, "ids cannot be null");
+        SubscriptionRegistry.Subscriber subscriber = subscriptions.register(ids, executor, listener);
+        // Registered before reading: every later version reaches the subscriber, and a version
+        // seen both here and as a change is harmless, since the newer entry wins per id.
+        Snapshot snapshot = storage.get();
+        Map<String, CompactPrice> initial = new HashMap<>();
+        for (String id : ids) {
+            int code = id == null ? -1 : dictionary.codeOf(id);
+            CompactPrice price = code < 0 ? null : snapshot.prices().get(code);
+            if (price == null && id != null && restored != null) {
+                price = restored.get(id, shapes);
             }
+            if (price != null) {
+                initial.put(id, price);
+            }
+        }
+        subscriber.offer(snapshot.version(), initial);
+        return subscriber;
+    }
+
+    @Override
+    public PriceSubscription subscribeAll(Executor executor, Consumer<PriceUpdate> listener) {
+        return subscriptions.register(null, executor, listener);
+    }
+
+    /**
+     * Writes the currently published snapshot to the configured checkpoint file.
+     *
+     * @return the version of the checkpointed snapshot
+     * @throws IllegalStateException if no checkpoint path is configured or the storage is closed
+     * @throws IOException           if the file cannot be written
+     */
+    public long checkpoint() throws IOException {
+        return persistence.checkpoint();
+    }
+
+    /**
+     * Stops the periodic checkpoints, closes the write-ahead log and releases the restored
+     * checkpoint file. Waits for a checkpoint that is being written to finish. The storage must
+     * not be used after it is closed; batches committed afterwards fail when a write-ahead log is
+     * configured. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        persistence.close();
+    }
+
+    /**
+     * Applies a group of batches on the writer thread and publishes them as the next snapshot
+     * version. The group is {@link SnapshotPersistence#log logged} first; batches that cannot be
+     * made durable are skipped, and the entry is rolled back if the group then fails to apply.
+     */
+    private long commit(List<CommitPipeline.PendingCommit<List<PriceData>>> group) {
+        Snapshot current = storage.get();
+
+        boolean empty = true;
+        for (CommitPipeline.PendingCommit<List<PriceData>> pending : group) {
+            if (pending.batch() instanceof TickLane.Flush flush) {
+                flush.drain();
+            }
+            empty &= pending.batch().isEmpty();
+        }
+        if (empty) {
+            // Only tick flushes whose prices an earlier flush already took.
+            return current.version();
+        }
+
+        persistence.log(current.version() + 1, group);
+        if (group.stream().anyMatch(CommitPipeline.PendingCommit::isFailed)) {
+            group = group.stream().filter(pending -> !pending.isFailed()).toList();
+            if (group.isEmpty()) {
+                return current.version();
+            }
+        }
+
+        List<int[]> touched = new ArrayList<>();
+        Snapshot next;
+        int[] changed;
+        boolean subscribed;
+        try {
+            next = mergeGroup(current, group, touched);
+            subscribed = !subscriptions.isEmpty();
+            changed = journal != null || subscribed
+                    ? changedCodes(current.prices(), next.prices(), touched, next.version())
+                    : null;
+            if (journal != null) {
+                journal.append(next.version(), changed);
+            }
+            storage.set(next);
+        } catch (RuntimeException | Error e) {
+            // Every logged version must have been published: take back the entry of a failed group.
+            persistence.rollback(e);
+            throw e;
+        }
+        versionWaiters.published(next.version());
+        if (subscribed) {
+            Map<String, CompactPrice> changes = new HashMap<>();
+            for (int code : changed) {
+                changes.put(dictionary.idOf(code), next.prices().get(code));
+            }
+            subscriptions.publish(next.version(), changes);
+        }
+        return next.version();
+    }
+
+    /**
+     * Merges the group into the next snapshot version, adding the codes it touched to
+     * {@code touched}.
+     */
+    private Snapshot mergeGroup(Snapshot current, List<CommitPipeline.PendingCommit<List<PriceData>>> group,
+                                List<int[]> touched) {
+        long records = 0;
+        for (CommitPipeline.PendingCommit<List<PriceData>> pending : group) {
+            records += pending.batch().size();
+        }
+
+        PersistentIntMap<CompactPrice> merged;
+        PersistentIntMap<PriceHistory> history = current.history();
+        if (records >= options.parallelMergeThreshold()) {
+            List<List<CompactPrice>> encoded = new ArrayList<>();
+            merged = mergeParallel(current.prices(), group, records, touched, encoded);
+            if (options.historyDepth() > 0) {
+                history = recordHistoryParallel(history, touched, encoded);
+            }
+        } else {
+            PersistentIntMap.Builder<PriceHistory> historyBuilder =
+                    options.historyDepth() == 0 ? null : history.toBuilder();
+            merged = mergeSequential(current.prices(), historyBuilder, group, records, touched);
+            if (historyBuilder != null) {
+                history = historyBuilder.build();
+            }
+        }
+
+        return new Snapshot(merged, history, current.version() + 1);
+    }
+
+    /**
+     * Returns the touched codes whose value differs between the two snapshots, each once.
+     */
+    private int[] changedCodes(PersistentIntMap<CompactPrice> before, PersistentIntMap<CompactPrice> after,
+                               List<int[]> touched, long version) {
+        if (changeMarks.length < dictionary.size()) {
+            changeMarks = Arrays.copyOf(changeMarks, Math.max(dictionary.size(), changeMarks.length * 2));
+        }
+        int count = 0;
+        for (int[] codes : touched) {
+            count += codes.length;
+        }
+        int[] changed = new int[count];
+        int size = 0;
+        for (int[] codes : touched) {
+            for (int code : codes) {
+                if (changeMarks[code] != version && after.get(code) != before.get(code)) {
+                    changeMarks[code] = version;
+                    changed[size++] = code;
+                }
+            }
+        }
+        return Arrays.copyOf(changed, size);
+    }
+
+    /**
+     * Merges the group on the writer thread, adding the code of every record to {@code touched}
+     * and, if {@code history} is not {@code null}, every record to its instrument's history.
+     */
+    private PersistentIntMap<CompactPrice> mergeSequential(
+            PersistentIntMap<CompactPrice> prices, PersistentIntMap.Builder<PriceHistory> history,
+            List<CommitPipeline.PendingCommit<List<PriceData>>> group, long records, List<int[]> touched) {
+        PersistentIntMap.Builder<CompactPrice> builder = prices.toBuilder();
+        int[] codes = new int[(int) records];
+        int index = 0;
+        for (CommitPipeline.PendingCommit<List<PriceData>> pending : group) {
+            for (PriceData price : pending.batch()) {
+                codes[index++] = merge(builder, history, price);
+            }
+        }
+        touched.add(codes);
+        return builder.build();
+    }
+
+    private int merge(PersistentIntMap.Builder<CompactPrice> builder, PersistentIntMap.Builder<PriceHistory> history,
+                      PriceData price) {
+        int code = dictionary.intern(price.id());
+        if (restored != null && builder.get(code) == null) {
+            restore(builder, code, price.id());
+        }
+        CompactPrice compact = CompactPrice.of(price, shapes);
+        builder.merge(code, compact, CompactPrice::latest);
+        if (history != null) {
+            if (restored != null && history.get(code) == null) {
+                restoreHistory(history, code);
+            }
+            history.merge(code, PriceHistory.of(compact, options.historyDepth()), PriceHistory::add);
+        }
+        return code;
+    }
+
+    /**
+     * Adds the records merged by {@link #mergeParallel} to the histories, on the merge pool.
+     */
+    private PersistentIntMap<PriceHistory> recordHistoryParallel(
+            PersistentIntMap<PriceHistory> history, List<int[]> codes, List<List<CompactPrice>> encoded) {
+        PersistentIntMap<PriceHistory> base = history;
+        if (restored != null) {
+            PersistentIntMap.Builder<PriceHistory> seeded = history.toBuilder();
+            for (int[] sliceCodes : codes) {
+                for (int code : sliceCodes) {
+                    if (seeded.get(code) == null) {
+                        restoreHistory(seeded, code);
+                    }
+                }
+            }
+            base = seeded.build();
+        }
+        int depth = options.historyDepth();
+        List<List<PriceHistory>> entries = new ArrayList<>(encoded.size());
+        for (List<CompactPrice> slice : encoded) {
+            entries.add(Lists.transform(slice, price -> PriceHistory.of(price, depth)));
+        }
+        return base.mergeAll(codes, entries, PriceHistory::add, options.mergePool());
+    }
+
+    /**
+     * Merges the group on the merge pool, adding the codes of every slice to {@code touched} and
+     * the encoded records, aligned with them, to {@code encoded}.
+     */
+    private PersistentIntMap<CompactPrice> mergeParallel(
+            PersistentIntMap<CompactPrice> prices, List<CommitPipeline.PendingCommit<List<PriceData>>> group,
+            long records, List<int[]> touched, List<List<CompactPrice>> encoded) {
+        ForkJoinPool pool = options.mergePool();
+        int sliceSize = (int) Math.max(MIN_SLICE_SIZE, records / pool.getParallelism());
+
+        List<List<PriceData>> slices = new ArrayList<>();
+        for (CommitPipeline.PendingCommit<List<PriceData>> pending : group) {
+            List<PriceData> batch = pending.batch() instanceof RandomAccess
+                    ? pending.batch()
+                    : new ArrayList<>(pending.batch());
+            for (int from = 0; from < batch.size(); from += sliceSize) {
+                slices.add(batch.subList(from, Math.min(batch.size(), from + sliceSize)));
+            }
+        }
+
+        // Ids are resolved and records encoded in parallel; only ids seen for the first time are
+        // left for the writer thread, which is the only one allowed to intern.
+        List<int[]> codes = new ArrayList<>(slices.size());
+        List<Callable<Void>> lookups = new ArrayList<>(slices.size());
+        for (List<PriceData> slice : slices) {
+            int[] sliceCodes = new int[slice.size()];
+            CompactPrice[] sliceValues = new CompactPrice[slice.size()];
+            codes.add(sliceCodes);
+            encoded.add(Arrays.asList(sliceValues));
+            lookups.add(() -> {
+                for (int i = 0; i < sliceCodes.length; i++) {
+                    PriceData price = slice.get(i);
+                    sliceCodes[i] = dictionary.codeOf(price.id());
+                    sliceValues[i] = CompactPrice.of(price, shapes);
+                }
+                return null;
+            });
+        }
+        ForkJoinTasks.invokeAll(pool, lookups);
+        PersistentIntMap.Builder<CompactPrice> withRestored = restored == null ? null : prices.toBuilder();
+        for (int s = 0; s < slices.size(); s++) {
+            int[] sliceCodes = codes.get(s);
+            for (int i = 0; i < sliceCodes.length; i++) {
+                if (sliceCodes[i] < 0) {
+                    sliceCodes[i] = dictionary.intern(slices.get(s).get(i).id());
+                }
+                if (withRestored != null && withRestored.get(sliceCodes[i]) == null) {
+                    restore(withRestored, sliceCodes[i], slices.get(s).get(i).id());
+                }
+            }
+        }
+        touched.addAll(codes);
+        PersistentIntMap<CompactPrice> base = withRestored == null ? prices : withRestored.build();
+        return base.mergeAll(codes, encoded, CompactPrice::latest, pool);
+    }
+
+    /**
+     * Loads the checkpointed record of an instrument before its first update since the restart.
+     */
+    private void restore(PersistentIntMap.Builder<CompactPrice> builder, int code, String id) {
+        CompactPrice checkpointed = restored.get(id, shapes);
+        if (checkpointed != null) {
+            builder.put(code, checkpointed);
+        }
+    }
+
+    /**
+     * Starts an instrument's history from its checkpointed record.
+     */
+    private void restoreHistory(PersistentIntMap.Builder<PriceHistory> history, int code) {
+        CompactPrice checkpointed = restored.get(dictionary.idOf(code), shapes);
+        if (checkpointed != null) {
+            history.put(code, PriceHistory.of(checkpointed, options.historyDepth()));
+        }
+    }
+
+    private final class PreparedQuery implements PreparedPriceQuery {
+        private final String[] ids;
+        private volatile Resolution resolution;
+
+        PreparedQuery(String[] ids) {
+            this.ids = ids;
+            int[] all = new int[ids.length];
+            Arrays.setAll(all, i -> i);
+            int[] codes = new int[ids.length];
+            Arrays.fill(codes, -1);
+            this.resolution = resolve(new Resolution(codes, all, -1));
+        }
+
+        @Override
+        public ImmutableMap<String, ImmutableMap<String, Object>> getLatest() {
+            ImmutableMap.Builder<String, ImmutableMap<String, Object>> result =
+                    ImmutableMap.builderWithExpectedSize(ids.length);
+            poll((id, payload) -> result.put(id, CompactPayload.toImmutableMap(payload)));
+            return result.build();
+        }
+
+        @Override
+        public int getLatest(PriceSink sink) {
+            return poll(Objects.requireNonNull(sink, "sink cannot be null"));
+        }
+
+        private int poll(PriceSink sink) {
+            // Snapshot first, so the dictionary size read next covers every code it holds.
+            Snapshot snapshot = storage.get();
+            Resolution current = resolution;
+            if (current.unresolved().length > 0 && current.dictionarySize() != dictionary.size()) {
+                current = resolve(current);
+                resolution = current;
+            }
+            int[] codes = current.codes();
+            int found = 0;
+            for (int i = 0; i < ids.length; i++) {
+                CompactPrice price = codes[i] < 0 ? null : snapshot.prices().get(codes[i]);
+                Map<String, Object> payload = price != null ? price.payload()
+                        : restored == null ? null : restored.payload(ids[i]);
+                if (payload != null) {
+                    sink.accept(ids[i], payload);
+                    found++;
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Looks up the codes of the ids still unresolved in {@code previous}.
+         */
+        private Resolution resolve(Resolution previous) {
+            int dictionarySize = dictionary.size();
+            int[] codes = previous.codes().clone();
+            int[] unresolved = new int[previous.unresolved().length];
+            int remaining = 0;
+            for (int index : previous.unresolved()) {
+                codes[index] = dictionary.codeOf(ids[index]);
+                if (codes[index] < 0) {
+                    unresolved[remaining++] = index;
+                }
+            }
+            return new Resolution(codes, Arrays.copyOf(unresolved, remaining), dictionarySize);
+        }
+    }
+
+    /**
+     * Codes of a prepared query's ids, {@code -1} for the ones unknown when the dictionary held
+     * {@code dictionarySize} ids.
+     */
+    private record Resolution(int[] codes, int[] unresolved, int dictionarySize) {
+    }
+
+    private final class PinnedSnapshot implements PriceSnapshot {
+        private final Snapshot snapshot;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private int size = -1;
+
+        PinnedSnapshot(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public long version() {
+            return snapshot.version();
+        }
+
+        @Override
+        public ImmutableMap<String, Object> get(String id) {
+            ensureOpen();
+            return payload(snapshot, id);
+        }
+
+        @Override
+        public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids) {
+            ensureOpen();
+            return latest(snapshot, Objects.requireNonNull(ids, "ids cannot be null"));
+        }
+
+        /**
+         * With a restored checkpoint the size includes its entries not loaded into memory yet,
+         * which takes one pass over the checkpoint; the result is cached.
+         */
+        @Override
+        public int size() {
+            ensureOpen();
+            if (size < 0) {
+                int count = snapshot.prices().size();
+                if (restored != null) {
+                    int[] onlyRestored = new int[1];
+                    restored.forEach((id, window, offset) -> {
+                        if (!inMemory(snapshot, id)) {
+                            onlyRestored[0]++;
+                        }
+                    });
+                    count += onlyRestored[0];
+                }
+                size = count;
+            }
+            return size;
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, ImmutableMap<String, Object>> action) {
+            ensureOpen();
+            PrimaryPriceStorageImpl.this.forEach(snapshot, Objects.requireNonNull(action, "action cannot be null"));
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                openSnapshots.decrement();
+            }
+        }
+
+        private void ensureOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+        }
+    }
 
-            storage.set(ImmutableMap.copyOf(snapshot));
-        });
+    /**
+     * Immutable published state: the price map and the per-instrument histories (empty unless enabled), both keyed
+     * by dictionary code, together with the version they were published as.
+     */
+    private record Snapshot(PersistentIntMap<CompactPrice> prices, PersistentIntMap<PriceHistory> history, long version)
+            implements SnapshotPersistence.Source {
+        static final Snapshot EMPTY = new Snapshot(PersistentIntMap.empty(), PersistentIntMap.empty(), 0L);
     }
 }
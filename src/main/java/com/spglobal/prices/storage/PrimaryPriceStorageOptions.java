@@ -0,0 +1,259 @@
+package com.spglobal.prices.storage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tuning options for {@link PrimaryPriceStorageImpl}.
+ * <p>
+ * Immutable; create instances with {@link #builder()} or use {@link #defaults()}.
+ */
+public final class PrimaryPriceStorageOptions {
+
+    /**
+     * Commits with at least this many records are merged in parallel by default.
+     */
+    public static final int DEFAULT_PARALLEL_MERGE_THRESHOLD = 100_000;
+
+    /**
+     * Default delay between two periodic snapshot checkpoints.
+     */
+    public static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * Default number of changed-instrument entries kept for {@link PrimaryPriceStorage#getChangesSince(long)}.
+     */
+    public static final int DEFAULT_CHANGE_JOURNAL_CAPACITY = 1_000_000;
+
+    /**
+     * Default time {@link BackpressurePolicy#TIMEOUT} waits for room in the commit queue.
+     */
+    public static final Duration DEFAULT_BACKPRESSURE_TIMEOUT = Duration.ofSeconds(1);
+
+    private static final PrimaryPriceStorageOptions DEFAULTS = builder().build();
+
+    private final int parallelMergeThreshold;
+    private final ForkJoinPool mergePool;
+    private final Path checkpointPath;
+    private final Duration checkpointInterval;
+    private final Path walDirectory;
+    private final int changeJournalCapacity;
+    private final int historyDepth;
+    private final int maxQueuedRecords;
+    private final BackpressurePolicy backpressurePolicy;
+    private final Duration backpressureTimeout;
+    private final WaitStrategy commitWaitStrategy;
+
+    private PrimaryPriceStorageOptions(Builder builder) {
+        this.parallelMergeThreshold = builder.parallelMergeThreshold;
+        this.mergePool = builder.mergePool;
+        this.checkpointPath = builder.checkpointPath;
+        this.checkpointInterval = builder.checkpointInterval;
+        this.walDirectory = builder.walDirectory;
+        this.changeJournalCapacity = builder.changeJournalCapacity;
+        this.historyDepth = builder.historyDepth;
+        this.maxQueuedRecords = builder.maxQueuedRecords;
+        this.backpressurePolicy = builder.backpressurePolicy;
+        this.backpressureTimeout = builder.backpressureTimeout;
+        this.commitWaitStrategy = builder.commitWaitStrategy;
+    }
+
+    public static PrimaryPriceStorageOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Minimum number of records in a commit group for the writer to merge it on
+     * {@link #mergePool()} instead of on the writer thread alone.
+     */
+    public int parallelMergeThreshold() {
+        return parallelMergeThreshold;
+    }
+
+    /**
+     * Pool used for parallel merges of large commits.
+     */
+    public ForkJoinPool mergePool() {
+        return mergePool;
+    }
+
+    /**
+     * File the published snapshot is checkpointed to and restored from on startup, or
+     * {@code null} when checkpointing is disabled (the default).
+     * <p>
+     * When set, payload values are limited to the types of the binary record format, as with
+     * {@link #walDirectory()}; a batch holding any other value is rejected at commit.
+     */
+    public Path checkpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * Delay between two periodic checkpoints when {@link #checkpointPath()} is set.
+     */
+    public Duration checkpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Directory of the write-ahead log, or {@code null} when logging is disabled (the default).
+     * <p>
+     * When set, every commit group is appended and forced to disk before it is applied, and the
+     * log is replayed on startup. Payload values are then limited to the types supported by the
+     * binary record format: boxed primitives, {@code Character} and {@code String}.
+     */
+    public Path walDirectory() {
+        return walDirectory;
+    }
+
+    /**
+     * Maximum number of instrument changes kept in the change journal, summed over the retained
+     * versions. Polls reaching back further than the journal get a full snapshot instead of a
+     * delta; {@code 0} disables the journal.
+     */
+    public int changeJournalCapacity() {
+        return changeJournalCapacity;
+    }
+
+    /**
+     * Number of most recent records kept per instrument for
+     * {@link PrimaryPriceStorage#getAsOf(java.util.Set, java.time.Instant)}, or {@code 0} to keep
+     * no history (the default).
+     */
+    public int historyDepth() {
+        return historyDepth;
+    }
+
+    /**
+     * Maximum number of records in batches waiting for the writer, or {@link Integer#MAX_VALUE}
+     * for an unbounded commit queue (the default). A batch larger than the bound is admitted
+     * once the queue is empty.
+     */
+    public int maxQueuedRecords() {
+        return maxQueuedRecords;
+    }
+
+    /**
+     * What {@link PrimaryPriceStorage#updateRecords(java.util.List)} does when a batch does not fit
+     * in a bounded commit queue; {@link BackpressurePolicy#BLOCK} by default.
+     */
+    public BackpressurePolicy backpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    /**
+     * How long {@link BackpressurePolicy#TIMEOUT} waits for room in the commit queue.
+     */
+    public Duration backpressureTimeout() {
+        return backpressureTimeout;
+    }
+
+    /**
+     * How the writer thread waits for the next batch; {@link WaitStrategy#BLOCKING} by default.
+     */
+    public WaitStrategy commitWaitStrategy() {
+        return commitWaitStrategy;
+    }
+
+    public static final class Builder {
+        private int parallelMergeThreshold = DEFAULT_PARALLEL_MERGE_THRESHOLD;
+        private ForkJoinPool mergePool = ForkJoinPool.commonPool();
+        private Path checkpointPath;
+        private Duration checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        private Path walDirectory;
+        private int changeJournalCapacity = DEFAULT_CHANGE_JOURNAL_CAPACITY;
+        private int historyDepth;
+        private int maxQueuedRecords = Integer.MAX_VALUE;
+        private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+        private Duration backpressureTimeout = DEFAULT_BACKPRESSURE_TIMEOUT;
+        private WaitStrategy commitWaitStrategy = WaitStrategy.BLOCKING;
+
+        private Builder() {
+        }
+
+        public Builder parallelMergeThreshold(int parallelMergeThreshold) {
+            if (parallelMergeThreshold < 1) {
+                throw new IllegalArgumentException("parallelMergeThreshold must be positive");
+            }
+            this.parallelMergeThreshold = parallelMergeThreshold;
+            return this;
+        }
+
+        public Builder mergePool(ForkJoinPool mergePool) {
+            this.mergePool = Objects.requireNonNull(mergePool, "mergePool cannot be null");
+            return this;
+        }
+
+        public Builder checkpointPath(Path checkpointPath) {
+            this.checkpointPath = Objects.requireNonNull(checkpointPath, "checkpointPath cannot be null");
+            return this;
+        }
+
+        public Builder checkpointInterval(Duration checkpointInterval) {
+            Objects.requireNonNull(checkpointInterval, "checkpointInterval cannot be null");
+            if (checkpointInterval.isNegative() || checkpointInterval.isZero()) {
+                throw new IllegalArgumentException("checkpointInterval must be positive");
+            }
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        public Builder walDirectory(Path walDirectory) {
+            this.walDirectory = Objects.requireNonNull(walDirectory, "walDirectory cannot be null");
+            return this;
+        }
+
+        public Builder changeJournalCapacity(int changeJournalCapacity) {
+            if (changeJournalCapacity < 0) {
+                throw new IllegalArgumentException("changeJournalCapacity must not be negative");
+            }
+            this.changeJournalCapacity = changeJournalCapacity;
+            return this;
+        }
+
+        public Builder historyDepth(int historyDepth) {
+            if (historyDepth < 0) {
+                throw new IllegalArgumentException("historyDepth must not be negative");
+            }
+            this.historyDepth = historyDepth;
+            return this;
+        }
+
+        public Builder maxQueuedRecords(int maxQueuedRecords) {
+            if (maxQueuedRecords < 1) {
+                throw new IllegalArgumentException("maxQueuedRecords must be positive");
+            }
+            this.maxQueuedRecords = maxQueuedRecords;
+            return this;
+        }
+
+        public Builder backpressurePolicy(BackpressurePolicy backpressurePolicy) {
+            this.backpressurePolicy = Objects.requireNonNull(backpressurePolicy, "backpressurePolicy cannot be null");
+            return this;
+        }
+
+        public Builder backpressureTimeout(Duration backpressureTimeout) {
+            Objects.requireNonNull(backpressureTimeout, "backpressureTimeout cannot be null");
+            if (backpressureTimeout.isNegative()) {
+                throw new IllegalArgumentException("backpressureTimeout must not be negative");
+            }
+            this.backpressureTimeout = backpressureTimeout;
+            return this;
+        }
+
+        public Builder commitWaitStrategy(WaitStrategy commitWaitStrategy) {
+            this.commitWaitStrategy = Objects.requireNonNull(commitWaitStrategy, "commitWaitStrategy cannot be null");
+            return this;
+        }
+
+        public PrimaryPriceStorageOptions build() {
+            return new PrimaryPriceStorageOptions(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableList;
+import com.spglobal.prices.dto.PriceData;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link StagingMode#LATEST_PER_INSTRUMENT} buffer keeping only the newest record per instrument.
+ * <p>
+ * Chunks are reduced as they arrive with {@link PriceData#latest}, the same rule the primary
+ * storage applies on commit, so the completed batch is equivalent to the full one. Concurrent
+ * uploads only contend on the map bins of the instruments they share.
+ */
+final class ReducingStagingBuffer implements StagingBuffer {
+    private final ConcurrentMap<String, PriceData> latest = new ConcurrentHashMap<>();
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    @Override
+    public boolean add(List<PriceData> chunk) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            for (PriceData price : chunk) {
+                latest.merge(price.id(), price, PriceData::latest);
+            }
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PriceData> close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        return ImmutableList.copyOf(latest.values());
+    }
+}
@@ -0,0 +1,418 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.dto.PriceUpdate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Hash-sharded implementation of {@link PrimaryPriceStorage} with one writer per shard.
+ * <p>
+ * Instruments are spread over N shards by id hash. Each shard owns a {@link PersistentHashMap}
+ * and a {@link CommitPipeline} thread, so batches touching different shards are merged on
+ * different cores.
+ * <p>
+ * Atomicity across shards is kept with a global commit epoch:
+ * <ul>
+ *     <li>every batch gets the next epoch, and its per-shard slices are added to per-shard
+ *     queues under one lock, so every shard applies epochs in the same order. The queues are
+ *     handed to the shard writers outside of the lock, so a shard writer that falls behind
+ *     only holds up the producers writing to that shard;</li>
+ *     <li>a shard reports the snapshot it produced for each epoch;</li>
+ *     <li>once all slices of the oldest in-flight epoch are done, a new {@link View}, holding one
+ *     snapshot per shard, is published with a single atomic set.</li>
+ * </ul>
+ * Readers only ever see whole views, so {@link #getLatest(Set)} never observes a batch that is
+ * applied on some shards and not on others. The epoch doubles as the snapshot version.
+ * <p>
+ * Subscribers are notified as each view is published, with the records of that epoch that
+ * replaced their instrument's previous value.
+ */
+public class ShardedPrimaryPriceStorage implements PrimaryPriceStorage {
+
+    private final Shard[] shards;
+    private final AtomicReference<View> view;
+    private final VersionWaiters versionWaiters = new VersionWaiters(this::getVersion);
+    private final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
+
+    private final Object sequencer = new Object();
+    private final Object publishLock = new Object();
+    private final Queue<EpochCommit> inFlight = new ConcurrentLinkedQueue<>();
+    private long lastEpoch;
+    private Throwable failure;
+
+    public ShardedPrimaryPriceStorage() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedPrimaryPriceStorage(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        shards = new Shard[shardCount];
+        List<PersistentHashMap<String, PriceData>> empty = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+            empty.add(PersistentHashMap.empty());
+        }
+        view = new AtomicReference<>(new View(List.copyOf(empty), 0L));
+    }
+
+    @Override
+    public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids) {
+        View snapshot = view.get();
+        return ids.stream()
+                  .filter(Objects::nonNull)
+                  .map(snapshot::get)
+                  .filter(Objects::nonNull)
+                  .collect(ImmutableMap.toImmutableMap(PriceData::id, PriceData::payload));
+    }
+
+    /**
+     * Returns a handle on the current view. Views are immutable, so the handle holds nothing
+     * but a reference and may stay open as long as needed.
+     */
+    @Override
+    public PriceSnapshot snapshot() {
+        return new ViewSnapshot(view.get());
+    }
+
+    @Override
+    public PriceSubscription subscribe(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener) {
+        Objects.requireNonNull(ids, "ids cannot be null");
+        SubscriptionRegistry.Subscriber subscriber = subscriptions.register(ids, executor, listener);
+        // Registered before reading, so no epoch published in between is missed.
+        View snapshot = view.get();
+        Map<String, CompactPrice> initial = new HashMap<>();
+        for (String id : ids) {
+            PriceData price = id == null ? null : snapshot.get(id);
+            if (price != null) {
+                initial.put(id, compact(price));
+            }
+        }
+        subscriber.offer(snapshot.version(), initial);
+        return subscriber;
+    }
+
+    @Override
+    public PriceSubscription subscribeAll(Executor executor, Consumer<PriceUpdate> listener) {
+        return subscriptions.register(null, executor, listener);
+    }
+
+    @Override
+    public CompletableFuture<Long> updateRecords(List<PriceData> priceDataList) {
+        if (priceDataList == null || priceDataList.isEmpty()) {
+            return CompletableFuture.completedFuture(getVersion());
+        }
+        List<List<PriceData>> slices = partition(priceDataList);
+        EpochCommit commit;
+        synchronized (sequencer) {
+            if (failure != null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Storage has failed", failure));
+            }
+            commit = new EpochCommit(++lastEpoch, slices);
+            inFlight.add(commit);
+            for (int i = 0; i < shards.length; i++) {
+                if (!slices.get(i).isEmpty()) {
+                    shards[i].queued.add(new ShardTask(commit, slices.get(i)));
+                }
+            }
+        }
+        // Submitting may wait for room in a shard's commit ring, so it happens outside the lock.
+        for (int i = 0; i < shards.length; i++) {
+            if (!slices.get(i).isEmpty()) {
+                shards[i].submitQueued();
+            }
+        }
+        return commit.receipt;
+    }
+
+    @Override
+    public long getVersion() {
+        return view.get().version();
+    }
+
+    @Override
+    public CompletableFuture<Long> awaitVersion(long version) {
+        return versionWaiters.await(version);
+    }
+
+    private List<List<PriceData>> partition(List<PriceData> priceDataList) {
+        List<List<PriceData>> slices = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            slices.add(new ArrayList<>());
+        }
+        for (PriceData price : priceDataList) {
+            Objects.requireNonNull(price, "price records cannot be null");
+            slices.get(shardOf(price.id(), shards.length)).add(price);
+        }
+        return slices;
+    }
+
+    /**
+     * Maps an id to a shard with multiplicative hashing on the high bits, which keeps the shard
+     * choice independent of the low hash bits the per-shard trie branches on.
+     */
+    static int shardOf(String id, int shardCount) {
+        int mixed = PersistentHashMap.hash(id) * 0x9E3779B9;
+        return (int) ((Integer.toUnsignedLong(mixed) * shardCount) >>> 32);
+    }
+
+    /**
+     * Publishes every leading in-flight epoch whose slices have all been applied.
+     */
+    private void publishCompleted() {
+        synchronized (publishLock) {
+            EpochCommit head;
+            while ((head = inFlight.peek()) != null && head.isApplied()) {
+                inFlight.poll();
+                View previous = view.get();
+                View next = previous.with(head);
+                view.set(next);
+                versionWaiters.published(next.version());
+                if (!subscriptions.isEmpty()) {
+                    subscriptions.publish(next.version(), changes(previous, next, head));
+                }
+                head.receipt.complete(next.version());
+            }
+        }
+    }
+
+    /**
+     * Returns the records of the epoch that replaced the previous value of their instrument.
+     */
+    private static Map<String, CompactPrice> changes(View previous, View next, EpochCommit commit) {
+        Map<String, CompactPrice> changes = new HashMap<>();
+        for (List<PriceData> slice : commit.slices) {
+            for (PriceData price : slice) {
+                PriceData stored = next.get(price.id());
+                if (stored != previous.get(price.id())) {
+                    changes.put(price.id(), compact(stored));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Wraps a stored record for {@link SubscriptionRegistry}; the payload is already immutable
+     * and is delivered as it is.
+     */
+    private static CompactPrice compact(PriceData price) {
+        return new CompactPrice(price.asOf().getEpochSecond(), price.asOf().getNano(), price.payload());
+    }
+
+    private void fail(Throwable cause) {
+        synchronized (sequencer) {
+            failure = cause;
+            synchronized (publishLock) {
+                EpochCommit commit;
+                while ((commit = inFlight.poll()) != null) {
+                    commit.receipt.completeExceptionally(new IllegalStateException("Storage has failed", cause));
+                }
+            }
+        }
+    }
+
+    /**
+     * One shard: its writer thread and the writer-local latest snapshot.
+     */
+    private final class Shard {
+        private final int index;
+        private final CommitPipeline<ShardTask> writer;
+        private PersistentHashMap<String, PriceData> current = PersistentHashMap.empty();
+
+        /**
+         * Slices in epoch order, waiting to be submitted to the writer.
+         */
+        private final Queue<ShardTask> queued = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean submitting = new AtomicBoolean();
+
+        Shard(int index) {
+            this.index = index;
+            this.writer = new CommitPipeline<>("sharded-price-storage-writer-" + index, this::apply);
+        }
+
+        /**
+         * Submits the queued slices in queue order. One caller at a time does the submitting;
+         * the others leave their slices to it, and the re-check after it is done picks up slices
+         * queued just before it let go.
+         */
+        void submitQueued() {
+            while (!queued.isEmpty() && submitting.compareAndSet(false, true)) {
+                try {
+                    ShardTask task;
+                    while ((task = queued.poll()) != null) {
+                        writer.submit(task);
+                    }
+                } finally {
+                    submitting.set(false);
+                }
+            }
+        }
+
+        /**
+         * Applies the queued slices one epoch at a time, since the view for each epoch needs
+         * this shard's state exactly after that epoch.
+         */
+        private long apply(List<CommitPipeline.PendingCommit<ShardTask>> group) {
+            long epoch = 0;
+            for (CommitPipeline.PendingCommit<ShardTask> pending : group) {
+                ShardTask task = pending.batch();
+                try {
+                    PersistentHashMap.Builder<String, PriceData> builder = current.toBuilder();
+                    for (PriceData price : task.records()) {
+                        builder.merge(price.id(), price, PriceData::latest);
+                    }
+                    current = builder.build();
+                } catch (RuntimeException | Error e) {
+                    // Other shards may already hold this epoch, so it can be neither published
+                    // nor rolled back: stop publishing rather than expose a partial batch.
+                    fail(e);
+                    throw e;
+                }
+                epoch = task.commit().epoch;
+                if (task.commit().applied(index, current)) {
+                    publishCompleted();
+                }
+            }
+            return epoch;
+        }
+    }
+
+    private static final class ViewSnapshot implements PriceSnapshot {
+        private final View view;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        ViewSnapshot(View view) {
+            this.view = view;
+        }
+
+        @Override
+        public long version() {
+            return view.version();
+        }
+
+        @Override
+        public ImmutableMap<String, Object> get(String id) {
+            ensureOpen();
+            PriceData price = id == null ? null : view.get(id);
+            return price == null ? null : price.payload();
+        }
+
+        @Override
+        public ImmutableMap<String, ImmutableMap<String, Object>> getLatest(Set<String> ids) {
+            ensureOpen();
+            ImmutableMap.Builder<String, ImmutableMap<String, Object>> result = ImmutableMap.builder();
+            for (String id : Objects.requireNonNull(ids, "ids cannot be null")) {
+                PriceData price = id == null ? null : view.get(id);
+                if (price != null) {
+                    result.put(id, price.payload());
+                }
+            }
+            return result.build();
+        }
+
+        @Override
+        public int size() {
+            ensureOpen();
+            int size = 0;
+            for (PersistentHashMap<String, PriceData> shard : view.shards()) {
+                size += shard.size();
+            }
+            return size;
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, ImmutableMap<String, Object>> action) {
+            ensureOpen();
+            Objects.requireNonNull(action, "action cannot be null");
+            for (PersistentHashMap<String, PriceData> shard : view.shards()) {
+                shard.forEach((id, price) -> action.accept(id, price.payload()));
+            }
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+
+        private void ensureOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+        }
+    }
+
+    private record ShardTask(EpochCommit commit, List<PriceData> records) {
+    }
+
+    /**
+     * Tracks the per-shard results of one batch until all of them are in.
+     */
+    private static final class EpochCommit {
+        private final long epoch;
+        private final List<List<PriceData>> slices;
+        private final AtomicReferenceArray<PersistentHashMap<String, PriceData>> results;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Long> receipt = new CompletableFuture<>();
+
+        EpochCommit(long epoch, List<List<PriceData>> slices) {
+            this.epoch = epoch;
+            this.slices = slices;
+            this.results = new AtomicReferenceArray<>(slices.size());
+            this.remaining = new AtomicInteger((int) slices.stream().filter(slice -> !slice.isEmpty()).count());
+        }
+
+        /**
+         * Records the shard snapshot for this epoch.
+         *
+         * @return {@code true} if this was the last outstanding shard
+         */
+        boolean applied(int shard, PersistentHashMap<String, PriceData> snapshot) {
+            results.set(shard, snapshot);
+            return remaining.decrementAndGet() == 0;
+        }
+
+        boolean isApplied() {
+            return remaining.get() == 0;
+        }
+    }
+
+    /**
+     * Immutable published state: one snapshot per shard, all as of the same epoch.
+     */
+    private record View(List<PersistentHashMap<String, PriceData>> shards, long version) {
+
+        PriceData get(String id) {
+            return shards.get(shardOf(id, shards.size())).get(id);
+        }
+
+        View with(EpochCommit commit) {
+            List<PersistentHashMap<String, PriceData>> next = new ArrayList<>(shards);
+            for (int i = 0; i < next.size(); i++) {
+                PersistentHashMap<String, PriceData> result = commit.results.get(i);
+                if (result != null) {
+                    next.set(i, result);
+                }
+            }
+            return new View(List.copyOf(next), commit.epoch);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped, read-only checkpoint of a published snapshot.
+ * <p>
+ * File layout:
+ * <pre>
+ * header  := magic:int format:int version:long count:int tableCapacity:int namesOffset:long
+ * table   := entryOffset:long * tableCapacity      (open addressing by id hash, 0 = empty)
+ * entries := (idLength:int id:utf8 record)*        (record as in {@link OffHeapRecordCodec})
+ * names   := nameCount:int (length:int name:utf8)* (field names, indexed by code)
+ * </pre>
+ * {@link #open(Path)} reads only the header and the field names and maps the rest, so a restart
+ * serves reads right away: a lookup probes the table and decodes one entry, and the OS pages in
+ * just the parts of the file that are touched.
+ * <p>
+ * The file is mapped in 1 GiB windows and the writer pads so that no entry crosses a window.
+ */
+final class SnapshotCheckpoint {
+    private static final int MAGIC = 0x50534331;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int WINDOW_BITS = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_BITS;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final MappedByteBuffer[] windows;
+    private final InstrumentDictionary fieldNames;
+    private final long version;
+    private final int count;
+    private final int tableCapacity;
+
+    private SnapshotCheckpoint(MappedByteBuffer[] windows, InstrumentDictionary fieldNames, long version, int count,
+                               int tableCapacity) {
+        this.windows = windows;
+        this.fieldNames = fieldNames;
+        this.version = version;
+        this.count = count;
+        this.tableCapacity = tableCapacity;
+    }
+
+    /**
+     * Visits one checkpointed entry; {@code offset} locates its record in {@code window}.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        void accept(String id, ByteBuffer window, int offset);
+    }
+
+    static SnapshotCheckpoint open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+                throw new IOException("Not a price snapshot checkpoint: " + path);
+            }
+            long version = header.getLong(8);
+            int count = header.getInt(16);
+            int tableCapacity = header.getInt(20);
+            long namesOffset = header.getLong(24);
+
+            long size = channel.size();
+            MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) >>> WINDOW_BITS)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = (long) i << WINDOW_BITS;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            }
+
+            InstrumentDictionary fieldNames = new InstrumentDictionary();
+            DataInputStream names = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel.position(namesOffset))));
+            int nameCount = names.readInt();
+            for (int i = 0; i < nameCount; i++) {
+                byte[] name = new byte[names.readInt()];
+                names.readFully(name);
+                fieldNames.intern(new String(name, StandardCharsets.UTF_8));
+            }
+            return new SnapshotCheckpoint(windows, fieldNames, version, count, tableCapacity);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of {@code prices} layered over {@code base} (the checkpoint the storage
+     * was restored from, or {@code null}) and atomically replaces {@code path} with it. Entries
+     * of {@code prices} win over {@code base}. The file is written under a unique temporary name
+     * next to {@code path}, so concurrent writers never share a partial file, and {@code path} is
+     * left as it was if the checkpoint fails.
+     *
+     * @return the number of entries written
+     * @throws IOException if the file cannot be written, or a payload holds a value type
+     *                     {@link OffHeapRecordCodec} cannot encode
+     */
+    static int write(Path path, long version, PersistentIntMap<CompactPrice> prices, InstrumentDictionary ids,
+                     SnapshotCheckpoint base) throws IOException {
+        long bound = (long) prices.size() + (base == null ? 0 : base.count);
+        int capacity = Integer.highestOneBit((int) Math.max(2, Math.min(1 << 29, bound * 4 / 3 + 1))) << 1;
+        InstrumentDictionary fieldNames = new InstrumentDictionary();
+        if (base != null) {
+            // Same codes as the base file, so its records can be copied as they are.
+            for (int code = 0; code < base.fieldNames.size(); code++) {
+                fieldNames.intern(base.fieldNames.idOf(code));
+            }
+        }
+
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            EntryWriter writer = new EntryWriter(channel, HEADER_SIZE + (long) capacity * Long.BYTES, capacity);
+            try {
+                prices.forEach((price, code) -> {
+                    int recordSize;
+                    try {
+                        recordSize = OffHeapRecordCodec.encodedSize(price.payload());
+                    } catch (IllegalArgumentException unsupported) {
+                        // A checkpoint missing the record would lose the instrument on restart.
+                        throw new UncheckedIOException(new IOException(
+                                "Cannot checkpoint price of " + ids.idOf(code), unsupported));
+                    }
+                    ByteBuffer entry = writer.startEntry(ids.idOf(code), recordSize);
+                    OffHeapRecordCodec.encode(price.epochSecond(), price.nano(), price.payload(), fieldNames,
+                            entry, entry.position());
+                    writer.finishEntry(OffHeapRecordCodec.recordSize(entry, entry.position()));
+                });
+                if (base != null) {
+                    base.forEach((id, window, offset) -> {
+                        int code = ids.codeOf(id);
+                        if (code >= 0 && prices.get(code) != null) {
+                            return;
+                        }
+                        int recordSize = OffHeapRecordCodec.recordSize(window, offset);
+                        ByteBuffer entry = writer.startEntry(id, recordSize);
+                        entry.put(entry.position(), window, offset, recordSize);
+                        writer.finishEntry(recordSize);
+                    });
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish(version, fieldNames);
+            channel.force(true);
+            int written = writer.count;
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Drops the mapped windows so the file can be unmapped once they are collected. Reads fail
+     * afterwards.
+     */
+    void close() {
+        Arrays.fill(windows, null);
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the checkpointed record for the id, with its payload encoded by {@code shapes}, or
+     * {@code null} if there is none.
+     */
+    CompactPrice get(String id, CompactPayload.Shapes shapes) {
+        long position = find(id);
+        if (position < 0) {
+            return null;
+        }
+        ByteBuffer window = windowOf(position);
+        int offset = offsetOf(position);
+        return new CompactPrice(OffHeapRecordCodec.epochSecond(window, offset), OffHeapRecordCodec.nano(window, offset),
+                shapes.encode(OffHeapRecordCodec.decodePayload(window, offset, fieldNames)));
+    }
+
+    /**
+     * Returns the checkpointed payload for the id, or {@code null} if there is none.
+     */
+    ImmutableMap<String, Object> payload(String id) {
+        long position = find(id);
+        return position < 0 ? null : OffHeapRecordCodec.decodePayload(windowOf(position), offsetOf(position), fieldNames);
+    }
+
+    void forEach(EntryVisitor visitor) {
+        for (int slot = 0; slot < tableCapacity; slot++) {
+            long entry = tableAt(slot);
+            if (entry != 0) {
+                ByteBuffer window = windowOf(entry);
+                int offset = offsetOf(entry);
+                byte[] id = new byte[window.getInt(offset)];
+                window.get(offset + Integer.BYTES, id);
+                visitor.accept(new String(id, StandardCharsets.UTF_8), window, offset + Integer.BYTES + id.length);
+            }
+        }
+    }
+
+    /**
+     * Returns the file position of the id's record, or {@code -1}.
+     */
+    private long find(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int mask = tableCapacity - 1;
+        for (int slot = spread(id.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            long entry = tableAt(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (idEquals(windowOf(entry), offsetOf(entry), key)) {
+                return entry + Integer.BYTES + key.length;
+            }
+        }
+    }
+
+    private static boolean idEquals(ByteBuffer window, int offset, byte[] key) {
+        if (window.getInt(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (window.get(offset + Integer.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long tableAt(int slot) {
+        long position = HEADER_SIZE + (long) slot * Long.BYTES;
+        return windowOf(position).getLong(offsetOf(position));
+    }
+
+    private ByteBuffer windowOf(long position) {
+        ByteBuffer window = windows[(int) (position >>> WINDOW_BITS)];
+        if (window == null) {
+            throw new IllegalStateException("Checkpoint is closed");
+        }
+        return window;
+    }
+
+    private static int offsetOf(long position) {
+        return (int) (position & (WINDOW_SIZE - 1));
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    /**
+     * Buffers entries into the data section and builds the hash table as it goes.
+     */
+    private static final class EntryWriter {
+        private final FileChannel channel;
+        private final long[] table;
+        private ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long flushed;
+        private long entryStart;
+        private String entryId;
+        private int count;
+
+        EntryWriter(FileChannel channel, long dataStart, int capacity) {
+            this.channel = channel;
+            this.table = new long[capacity];
+            this.flushed = dataStart;
+        }
+
+        /**
+         * Writes the id and returns the buffer positioned where the record must go.
+         */
+        ByteBuffer startEntry(String id, int recordSize) {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            int size = Integer.BYTES + idBytes.length + recordSize;
+            if (size > WINDOW_SIZE) {
+                throw new IllegalArgumentException("Record too large for a checkpoint: " + id);
+            }
+            long position = flushed + buffer.position();
+            long windowEnd = (position | (WINDOW_SIZE - 1)) + 1;
+            if (position + size > windowEnd) {
+                pad((int) (windowEnd - position));
+                position = windowEnd;
+            }
+            ensureRoom(size);
+            entryStart = position;
+            entryId = id;
+            buffer.putInt(idBytes.length).put(idBytes);
+            return buffer;
+        }
+
+        void finishEntry(int recordSize) {
+            buffer.position(buffer.position() + recordSize);
+            int mask = table.length - 1;
+            int slot = spread(entryId.hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entryStart;
+            count++;
+        }
+
+        void finish(long version, InstrumentDictionary fieldNames) throws IOException {
+            long namesOffset = flushed + buffer.position();
+            ensureRoom(Integer.BYTES);
+            buffer.putInt(fieldNames.size());
+            for (int code = 0; code < fieldNames.size(); code++) {
+                byte[] name = fieldNames.idOf(code).getBytes(StandardCharsets.UTF_8);
+                ensureRoom(Integer.BYTES + name.length);
+                buffer.putInt(name.length).put(name);
+            }
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC).putInt(FORMAT).putLong(version).putInt(count).putInt(table.length)
+                    .putLong(namesOffset)
+                    .flip();
+            writeFully(header, 0);
+            ByteBuffer chunk = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            long position = HEADER_SIZE;
+            for (long entry : table) {
+                if (!chunk.hasRemaining()) {
+                    position += writeFully(chunk.flip(), position);
+                    chunk.clear();
+                }
+                chunk.putLong(entry);
+            }
+            writeFully(chunk.flip(), position);
+        }
+
+        private void pad(int bytes) {
+            while (bytes > 0) {
+                ensureRoom(1);
+                int n = Math.min(bytes, buffer.remaining());
+                buffer.position(buffer.position() + n);
+                bytes -= n;
+            }
+        }
+
+        private void ensureRoom(int bytes) {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes);
+            }
+        }
+
+        private void flush() {
+            try {
+                flushed += writeFully(buffer.flip(), flushed);
+                buffer.clear();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int writeFully(ByteBuffer source, long position) throws IOException {
+            int written = 0;
+            while (source.hasRemaining()) {
+                written += channel.write(source, position + written);
+            }
+            return written;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.spglobal.prices.storage;
+
+import com.spglobal.prices.dto.PriceData;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Durability of {@link PrimaryPriceStorageImpl}: the {@link SnapshotCheckpoint} it was restored
+ * from and writes periodically, and its {@link WriteAheadLog}, as configured by
+ * {@link PrimaryPriceStorageOptions#checkpointPath()} and
+ * {@link PrimaryPriceStorageOptions#walDirectory()}.
+ * <p>
+ * The storage restores the checkpoint, replays the log on top of it and then
+ * {@link #startCheckpoints() starts} the periodic checkpoints. Its writer {@link #log logs} each
+ * group before applying it.
+ */
+final class SnapshotPersistence implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(SnapshotPersistence.class.getName());
+
+    /**
+     * The published state a checkpoint is written from.
+     */
+    interface Source {
+        long version();
+
+        PersistentIntMap<CompactPrice> prices();
+    }
+
+    private final PrimaryPriceStorageOptions options;
+    private final InstrumentDictionary ids;
+    private final Supplier<? extends Source> published;
+
+    /**
+     * Checkpoint restored on startup, or {@code null}.
+     */
+    private final SnapshotCheckpoint restored;
+
+    /**
+     * Write-ahead log once opened by {@link #replayLog}, or {@code null}.
+     */
+    private WriteAheadLog wal;
+
+    /**
+     * Writes checkpoints every {@link PrimaryPriceStorageOptions#checkpointInterval()}, or
+     * {@code null} when not started.
+     */
+    private ScheduledExecutorService checkpointer;
+
+    private final Object checkpointLock = new Object();
+    private long lastCheckpointVersion = -1;
+    private boolean closed;
+
+    /**
+     * Opens the checkpoint at {@link PrimaryPriceStorageOptions#checkpointPath()} if there is one.
+     *
+     * @param ids       dictionary the codes of the published prices refer to
+     * @param published returns the currently published state
+     */
+    SnapshotPersistence(PrimaryPriceStorageOptions options, InstrumentDictionary ids,
+                        Supplier<? extends Source> published) {
+        this.options = Objects.requireNonNull(options, "options cannot be null");
+        this.ids = Objects.requireNonNull(ids, "ids cannot be null");
+        this.published = Objects.requireNonNull(published, "published cannot be null");
+        Path checkpointPath = options.checkpointPath();
+        if (checkpointPath != null && Files.exists(checkpointPath)) {
+            try {
+                restored = SnapshotCheckpoint.open(checkpointPath);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot restore checkpoint " + checkpointPath, e);
+            }
+            lastCheckpointVersion = restored.version();
+        } else {
+            restored = null;
+        }
+    }
+
+    SnapshotCheckpoint restored() {
+        return restored;
+    }
+
+    /**
+     * Opens the write-ahead log, if configured, and passes every batch logged after
+     * {@code version} to {@code consumer}.
+     *
+     * @return the last replayed version, or {@code version} if there was none
+     */
+    long replayLog(long version, BiConsumer<Long, List<PriceData>> consumer) {
+        Path directory = options.walDirectory();
+        if (directory == null) {
+            return version;
+        }
+        try {
+            wal = WriteAheadLog.open(directory);
+            return wal.replay(version, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay write-ahead log " + directory, e);
+        }
+    }
+
+    /**
+     * Schedules the periodic checkpoints, if a checkpoint path is configured.
+     */
+    void startCheckpoints() {
+        if (options.checkpointPath() == null) {
+            return;
+        }
+        long interval = options.checkpointInterval().toMillis();
+        checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "primary-price-storage-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointIfChanged, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Makes the group durable before it is applied as {@code version}: with a write-ahead log it
+     * is logged and forced to disk, and batches the log rejects are
+     * {@link CommitPipeline.PendingCommit#fail failed}. With checkpoints but no log, batches a
+     * checkpoint could not hold are failed the same way. Runs on the writer thread.
+     */
+    void log(long version, List<CommitPipeline.PendingCommit<List<PriceData>>> group) {
+        if (wal != null) {
+            wal.append(version, group);
+        } else if (options.checkpointPath() != null) {
+            rejectUncheckpointable(group);
+        }
+    }
+
+    /**
+     * Takes back the entry of the last {@link #log logged} group, which failed to apply, so every
+     * logged version has been published. A failure to do so is added to {@code failure}.
+     */
+    void rollback(Throwable failure) {
+        if (wal != null) {
+            try {
+                wal.rollback();
+            } catch (UncheckedIOException rollbackFailure) {
+                failure.addSuppressed(rollbackFailure);
+            }
+        }
+    }
+
+    /**
+     * Fails every batch holding a payload value that {@link OffHeapRecordCodec}, and so a
+     * checkpoint, cannot encode; the write-ahead log rejects the same batches.
+     */
+    private static void rejectUncheckpointable(List<CommitPipeline.PendingCommit<List<PriceData>>> group) {
+        for (CommitPipeline.PendingCommit<List<PriceData>> pending : group) {
+            try {
+                for (PriceData price : pending.batch()) {
+                    OffHeapRecordCodec.encodedSize(price);
+                }
+            } catch (IllegalArgumentException | NullPointerException e) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the currently published state to the checkpoint file and drops the log segments it
+     * covers.
+     *
+     * @return the version of the checkpointed state
+     * @throws IllegalStateException if no checkpoint path is configured or this is closed
+     * @throws IOException           if the file cannot be written
+     */
+    long checkpoint() throws IOException {
+        Path checkpointPath = options.checkpointPath();
+        if (checkpointPath == null) {
+            throw new IllegalStateException("No checkpoint path configured");
+        }
+        synchronized (checkpointLock) {
+            if (closed) {
+                throw new IllegalStateException("Storage is closed");
+            }
+            Source snapshot = published.get();
+            SnapshotCheckpoint.write(checkpointPath, snapshot.version(), snapshot.prices(), ids, restored);
+            lastCheckpointVersion = snapshot.version();
+            if (wal != null) {
+                wal.truncate(snapshot.version());
+            }
+            return snapshot.version();
+        }
+    }
+
+    private void checkpointIfChanged() {
+        try {
+            synchronized (checkpointLock) {
+                if (!closed && published.get().version() != lastCheckpointVersion) {
+                    checkpoint();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Snapshot checkpoint failed", e);
+        }
+    }
+
+    /**
+     * Stops the periodic checkpoints, closes the write-ahead log and releases the restored
+     * checkpoint file. Waits for a checkpoint that is being written to finish. Closing twice has
+     * no effect.
+     */
+    @Override
+    public void close() {
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+        }
+        synchronized (checkpointLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (wal != null) {
+                wal.close();
+            }
+            if (restored != null) {
+                restored.close();
+            }
+        }
+    }
+}
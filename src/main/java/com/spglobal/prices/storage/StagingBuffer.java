@@ -0,0 +1,34 @@
+package com.spglobal.prices.storage;
+
+import com.spglobal.prices.dto.PriceData;
+
+import java.util.List;
+
+/**
+ * Records staged for a single open batch.
+ * <p>
+ * {@link #add(List)} may be called concurrently. {@link #close()} is called once, when the batch
+ * completes, and after it returns no further chunk is accepted, so a chunk is either part of
+ * the completed batch or rejected, never silently dropped.
+ */
+interface StagingBuffer {
+
+    static StagingBuffer create(StagingMode mode) {
+        return switch (mode) {
+            case RETAIN_ALL -> new ChunkArrayStagingBuffer();
+            case LATEST_PER_INSTRUMENT -> new ReducingStagingBuffer();
+        };
+    }
+
+    /**
+     * Stages a chunk.
+     *
+     * @return {@code false} if the buffer has already been closed
+     */
+    boolean add(List<PriceData> chunk);
+
+    /**
+     * Closes the buffer and returns the staged records as an immutable list.
+     */
+    List<PriceData> close();
+}
@@ -0,0 +1,21 @@
+package com.spglobal.prices.storage;
+
+/**
+ * How {@link PriceBatchBufferStorageImpl} stages records of an open batch.
+ */
+public enum StagingMode {
+
+    /**
+     * Keeps every uploaded record until the batch completes. Chunks are staged as whole arrays
+     * and the primary storage reduces duplicates per instrument on commit.
+     */
+    RETAIN_ALL,
+
+    /**
+     * Keeps only the record with the newest {@code asOf} per instrument while chunks are
+     * uploaded. Staging memory is bounded by the number of distinct instruments in the batch
+     * and the completed batch is already reduced, which pays off for feeds that repeat the
+     * same instrument many times per batch.
+     */
+    LATEST_PER_INSTRUMENT
+}
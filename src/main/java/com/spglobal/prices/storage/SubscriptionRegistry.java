@@ -0,0 +1,160 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceUpdate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Subscribers of a storage and the conflating hand-off from the writer to them.
+ * <p>
+ * After each commit the writer {@link #publish publishes} the changed records. Every subscriber
+ * merges the ones it is interested in into a pending map holding at most one entry per
+ * instrument, and a drain task on the subscriber's executor delivers that map as one
+ * {@link PriceUpdate}. A slow listener therefore sees fewer, conflated updates, while the writer
+ * only ever spends time proportional to the delta and never waits for a listener.
+ */
+final class SubscriptionRegistry {
+    private static final System.Logger LOGGER = System.getLogger(SubscriptionRegistry.class.getName());
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    boolean isEmpty() {
+        return subscribers.isEmpty();
+    }
+
+    /**
+     * Registers a subscriber; it receives every change published from now on.
+     *
+     * @param ids the instruments of interest, or {@code null} for all
+     */
+    Subscriber register(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener) {
+        Subscriber subscriber = new Subscriber(ids == null ? null : Set.copyOf(ids),
+                Objects.requireNonNull(executor, "executor cannot be null"),
+                Objects.requireNonNull(listener, "listener cannot be null"));
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Hands the records changed in {@code version} to every subscriber. Called on the writer
+     * thread after the version is published.
+     */
+    void publish(long version, Map<String, CompactPrice> changes) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(version, changes);
+        }
+    }
+
+    final class Subscriber implements PriceSubscription {
+        private final Set<String> ids;
+        private final Executor executor;
+        private final Consumer<PriceUpdate> listener;
+
+        // Guarded by this.
+        private Map<String, Pending> pending = new HashMap<>();
+        private long pendingVersion;
+        private boolean scheduled;
+        private boolean closed;
+
+        private Subscriber(Set<String> ids, Executor executor, Consumer<PriceUpdate> listener) {
+            this.ids = ids;
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        /**
+         * Merges the relevant part of {@code changes} into the pending update. An entry only
+         * replaces one from the same or an older version, so a late initial snapshot never
+         * overwrites a newer change.
+         */
+        void offer(long version, Map<String, CompactPrice> changes) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                boolean added = false;
+                if (ids == null || changes.size() <= ids.size()) {
+                    for (Map.Entry<String, CompactPrice> change : changes.entrySet()) {
+                        if (ids == null || ids.contains(change.getKey())) {
+                            added |= put(change.getKey(), version, change.getValue());
+                        }
+                    }
+                } else {
+                    for (String id : ids) {
+                        CompactPrice price = changes.get(id);
+                        if (price != null) {
+                            added |= put(id, version, price);
+                        }
+                    }
+                }
+                if (!added || scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Subscription executor rejected delivery; closing", e);
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                pending = new HashMap<>();
+            }
+            subscribers.remove(this);
+        }
+
+        private boolean put(String id, long version, CompactPrice price) {
+            Pending current = pending.get(id);
+            if (current != null && current.version() > version) {
+                return false;
+            }
+            pending.put(id, new Pending(version, price));
+            pendingVersion = Math.max(pendingVersion, version);
+            return true;
+        }
+
+        /**
+         * Delivers pending updates one at a time until none are left.
+         */
+        private void drain() {
+            while (true) {
+                Map<String, Pending> batch;
+                long version;
+                synchronized (this) {
+                    if (closed || pending.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                    batch = pending;
+                    version = pendingVersion;
+                    pending = new HashMap<>();
+                }
+                ImmutableMap.Builder<String, ImmutableMap<String, Object>> prices =
+                        ImmutableMap.builderWithExpectedSize(batch.size());
+                batch.forEach((id, entry) -> prices.put(id, entry.price().immutablePayload()));
+                try {
+                    listener.accept(new PriceUpdate(version, prices.build()));
+                } catch (RuntimeException e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Price listener failed", e);
+                }
+            }
+        }
+    }
+
+    private record Pending(long version, CompactPrice price) {
+    }
+}
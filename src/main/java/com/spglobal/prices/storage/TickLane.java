@@ -0,0 +1,183 @@
+package com.spglobal.prices.storage;
+
+import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.exception.CommitRejectedException;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Conflating lane for single prices published outside of a batch.
+ * <p>
+ * A published price is merged into a per-instrument pending map with the last-value rule, which
+ * updates one entry atomically without locking the rest. The first price published after a
+ * flush has started schedules the next {@link Flush}: a batch handed to the writer that stays
+ * empty until the writer drains the pending map into it, right before committing. Every price
+ * published in between rides on that one flush, so a burst of ticks costs one snapshot rather
+ * than one per tick, and a hot instrument updated many times before the flush is committed once.
+ * <p>
+ * Publishers of the same flush share its receipt, so a publish allocates nothing beyond the
+ * map entry of a new instrument.
+ * <p>
+ * A flush is weighed by what it drains rather than by what it holds when it is queued: each
+ * instrument entering the pending map takes one record of room from the writer's queue first,
+ * and that room comes back when the flush carrying the instrument is committed. Ticks are
+ * therefore held to the same queue bound, and the same backpressure, as batches.
+ */
+final class TickLane {
+
+    private final ConcurrentMap<String, PriceData> pending = new ConcurrentHashMap<>();
+    private final AtomicReference<Flush> scheduled = new AtomicReference<>();
+    private final Function<Flush, CompletableFuture<Long>> submitter;
+    private final IntPredicate reserver;
+    private final IntConsumer releaser;
+
+    /**
+     * @param submitter hands a flush to the writer and returns its commit receipt; the room of
+     *                  its records was already taken, so it is returned once the flush commits
+     * @param reserver  takes room for a number of records in the writer's queue, returning
+     *                  {@code false} if there is none
+     * @param releaser  gives back room taken by the reserver that turned out not to be needed
+     */
+    TickLane(Function<Flush, CompletableFuture<Long>> submitter, IntPredicate reserver, IntConsumer releaser) {
+        this.submitter = Objects.requireNonNull(submitter, "submitter cannot be null");
+        this.reserver = Objects.requireNonNull(reserver, "reserver cannot be null");
+        this.releaser = Objects.requireNonNull(releaser, "releaser cannot be null");
+    }
+
+    /**
+     * Queues one price for the next flush.
+     *
+     * @return the receipt of a flush that commits the price, or a newer one for its instrument;
+     * failed with {@link CommitRejectedException} if the writer's queue has no room for it
+     */
+    CompletableFuture<Long> publish(PriceData price) {
+        Objects.requireNonNull(price, "price cannot be null");
+        if (!merge(price)) {
+            return rejected(price);
+        }
+        return scheduleFlush();
+    }
+
+    /**
+     * Queues several prices for the next flush. Each price is merged on its own, so the prices
+     * may be split over consecutive flushes, and prices merged before the queue ran out of room
+     * are still committed.
+     */
+    CompletableFuture<Long> publishAll(Collection<PriceData> prices) {
+        Objects.requireNonNull(prices, "prices cannot be null");
+        CompletableFuture<Long> receipt = null;
+        for (PriceData price : prices) {
+            Objects.requireNonNull(price, "price cannot be null");
+            if (!merge(price)) {
+                return rejected(price);
+            }
+            // Scheduled per price: waiting for room must never hold back a flush of what is pending.
+            receipt = scheduleFlush();
+        }
+        return receipt == null ? scheduleFlush() : receipt;
+    }
+
+    /**
+     * Applies the last-value rule to the pending entry of the price's instrument, taking room for
+     * the instrument first if it has no entry.
+     *
+     * @return {@code false} if there was no room
+     */
+    private boolean merge(PriceData price) {
+        String id = price.id();
+        PriceData current = pending.get(id);
+        while (true) {
+            if (current == null) {
+                if (!reserver.test(1)) {
+                    return false;
+                }
+                current = pending.putIfAbsent(id, price);
+                if (current == null) {
+                    return true;
+                }
+                releaser.accept(1);
+            }
+            PriceData merged = PriceData.latest(current, price);
+            // An older price lost to a concurrent drain was superseded by what that drain took.
+            if (merged == current || pending.replace(id, current, merged)) {
+                return true;
+            }
+            current = pending.get(id);
+        }
+    }
+
+    private static CompletableFuture<Long> rejected(PriceData price) {
+        return CompletableFuture.failedFuture(
+                new CommitRejectedException("Commit queue is full, cannot publish price of " + price.id()));
+    }
+
+    private CompletableFuture<Long> scheduleFlush() {
+        while (true) {
+            Flush flush = scheduled.get();
+            // A flush that has not started draining is guaranteed to pick up what was merged.
+            if (flush != null && !flush.started) {
+                return flush.receipt;
+            }
+            Flush next = new Flush();
+            if (scheduled.compareAndSet(flush, next)) {
+                submitter.apply(next).whenComplete((version, error) -> {
+                    if (error == null) {
+                        next.receipt.complete(version);
+                    } else {
+                        // A rejected flush never drains; the next publish schedules a new one.
+                        scheduled.compareAndSet(next, null);
+                        next.receipt.completeExceptionally(error);
+                    }
+                });
+                return next.receipt;
+            }
+        }
+    }
+
+    /**
+     * A batch of ticks that is filled by {@link #drain()} on the writer thread. Until then it is
+     * empty.
+     */
+    final class Flush extends AbstractList<PriceData> {
+        private final CompletableFuture<Long> receipt = new CompletableFuture<>();
+        private volatile boolean started;
+        private List<PriceData> records = List.of();
+
+        /**
+         * Moves every pending price into this flush. Prices published from now on go to the
+         * next flush.
+         */
+        void drain() {
+            started = true;
+            List<PriceData> drained = new ArrayList<>();
+            for (String id : pending.keySet()) {
+                PriceData price = pending.remove(id);
+                if (price != null) {
+                    drained.add(price);
+                }
+            }
+            records = drained;
+        }
+
+        @Override
+        public PriceData get(int index) {
+            return records.get(index);
+        }
+
+        @Override
+        public int size() {
+            return records.size();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.spglobal.prices.storage;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of futures waiting for a snapshot version to be published.
+ * <p>
+ * Readers register through {@link #await(long)}; the writer calls {@link #published(long)}
+ * right after making a new snapshot visible. Futures are completed on the writer thread,
+ * so dependent actions should be cheap or use the {@code *Async} variants.
+ */
+final class VersionWaiters {
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Long>> waiters = new ConcurrentSkipListMap<>();
+    private final LongSupplier currentVersion;
+
+    VersionWaiters(LongSupplier currentVersion) {
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * Returns a future completed with the published version once it is at least {@code version}.
+     */
+    CompletableFuture<Long> await(long version) {
+        long current = currentVersion.getAsLong();
+        if (current >= version) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        CompletableFuture<Long> waiter = waiters.computeIfAbsent(version, v -> new CompletableFuture<>());
+
+        // The writer may have published between the first check and the registration.
+        current = currentVersion.getAsLong();
+        if (current >= version) {
+            waiters.remove(version, waiter);
+            waiter.complete(current);
+        }
+        // Callers get their own copy so one of them cancelling cannot affect the others.
+        return waiter.copy();
+    }
+
+    /**
+     * Completes every waiter whose target version is now visible.
+     */
+    void published(long version) {
+        Map.Entry<Long, CompletableFuture<Long>> first;
+        while ((first = waiters.firstEntry()) != null && first.getKey() <= version) {
+            waiters.remove(first.getKey(), first.getValue());
+            first.getValue().complete(version);
+        }
+    }
+}
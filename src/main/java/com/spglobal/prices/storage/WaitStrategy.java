@@ -0,0 +1,31 @@
+package com.spglobal.prices.storage;
+
+/**
+ * How the writer thread of a commit pipeline waits for the next batch, and how producers wait
+ * when its ring is full.
+ * <p>
+ * The strategies trade CPU for hand-off latency: the busier the wait, the sooner an idle writer
+ * notices a new batch.
+ *
+ * @see PrimaryPriceStorageOptions#commitWaitStrategy()
+ */
+public enum WaitStrategy {
+
+    /**
+     * The writer parks and is unparked by the producer that publishes the next batch. Uses no
+     * CPU while idle, but each wake-up goes through the scheduler.
+     */
+    BLOCKING,
+
+    /**
+     * The writer spins briefly, then yields its core between checks. Low latency while other
+     * threads can still use the core, at the cost of some CPU while idle.
+     */
+    YIELDING,
+
+    /**
+     * The writer spins without ever giving up its core. Lowest and most stable latency, but the
+     * writer occupies a full core for the life of the storage; only use it with a core to spare.
+     */
+    BUSY_SPIN
+}
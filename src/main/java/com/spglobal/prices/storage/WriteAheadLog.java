@@ -0,0 +1,335 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of committed groups, written by the storage writer before a group is applied.
+ * <p>
+ * Each commit group is one entry, followed by a single {@link FileChannel#force(boolean) fsync},
+ * so all batches that were queued together share one disk flush. A group that cannot be applied
+ * after it was logged is {@link #rollback() rolled back}, so every logged entry was published. An entry is self-contained:
+ * <pre>
+ * entry := bodyLength:int crc32c:int body
+ * body  := version:long nameCount:int (length:int name:utf8)* recordCount:int (idLength:int id:utf8 record)*
+ * </pre>
+ * with records as in {@link OffHeapRecordCodec}, their field name codes referring to the entry's
+ * own name list. Replay stops at the first entry of a segment that is truncated or fails its
+ * checksum, which is where a crash interrupted the last write.
+ * <p>
+ * The log is split into segment files named after the first version they hold. A new segment is
+ * started on open, when the current one grows past {@value #MAX_SEGMENT_BYTES} bytes, and after
+ * {@link #truncate(long)}, which deletes segments that only hold versions covered by a
+ * checkpoint. {@link #append} runs on the writer thread; {@link #truncate(long)} and
+ * {@link #close()} may be called from any thread.
+ */
+final class WriteAheadLog {
+    static final long MAX_SEGMENT_BYTES = 64L << 20;
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int ENTRY_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path directory;
+    private FileChannel segment;
+    private long segmentSize;
+    /**
+     * Size of the current segment before the last append, or {@code -1} if there is nothing to
+     * roll back.
+     */
+    private long lastEntryStart = -1;
+    private volatile boolean rotateRequested;
+    private boolean closed;
+    private ByteBuffer scratch = ByteBuffer.allocate(1 << 16);
+
+    private WriteAheadLog(Path directory) {
+        this.directory = directory;
+    }
+
+    static WriteAheadLog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new WriteAheadLog(directory);
+    }
+
+    /**
+     * Replays every logged batch with a version above {@code afterVersion}, in log order. Must be
+     * called before the first {@link #append}.
+     *
+     * @return the highest replayed version, or {@code afterVersion} if nothing was replayed
+     */
+    long replay(long afterVersion, BiConsumer<Long, List<PriceData>> consumer) throws IOException {
+        long last = afterVersion;
+        for (Path file : segments()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long position = 0;
+                ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+                while (readFully(channel, header.clear(), position)) {
+                    int length = header.getInt(0);
+                    if (length <= 0 || position + ENTRY_HEADER_SIZE + length > channel.size()) {
+                        break;
+                    }
+                    ByteBuffer body = ByteBuffer.allocate(length);
+                    readFully(channel, body, position + ENTRY_HEADER_SIZE);
+                    CRC32C crc = new CRC32C();
+                    crc.update(body.array(), 0, length);
+                    if ((int) crc.getValue() != header.getInt(Integer.BYTES)) {
+                        break;
+                    }
+                    long version = body.getLong(0);
+                    if (version > afterVersion) {
+                        consumer.accept(version, decode(body));
+                        last = Math.max(last, version);
+                    }
+                    position += ENTRY_HEADER_SIZE + length;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Logs the group's batches as one entry for {@code version} and forces it to disk. A batch
+     * the codec cannot encode is {@link CommitPipeline.PendingCommit#fail failed} and left out;
+     * nothing is written when every batch failed.
+     *
+     * @throws UncheckedIOException if the entry could not be written
+     * @throws IllegalStateException if the log is closed
+     */
+    synchronized void append(long version, List<CommitPipeline.PendingCommit<List<PriceData>>> group) {
+        lastEntryStart = -1;
+        InstrumentDictionary names = new InstrumentDictionary();
+        int records = 0;
+        int position = 0;
+        for (CommitPipeline.PendingCommit<List<PriceData>> pending : group) {
+            int batchStart = position;
+            try {
+                for (PriceData price : pending.batch()) {
+                    position = encodeRecord(price, names, position);
+                }
+                records += pending.batch().size();
+            } catch (IllegalArgumentException | NullPointerException e) {
+                position = batchStart;
+                pending.fail(e);
+            }
+        }
+        if (records == 0) {
+            return;
+        }
+
+        // The name list is only complete once all records are encoded, but goes in front of them.
+        ByteBuffer nameList = encodeNames(names);
+        int bodyLength = Long.BYTES + nameList.remaining() + Integer.BYTES + position;
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + bodyLength);
+        entry.putInt(bodyLength).putInt(0).putLong(version).put(nameList).putInt(records)
+             .put(scratch.slice(0, position));
+        CRC32C crc = new CRC32C();
+        crc.update(entry.array(), ENTRY_HEADER_SIZE, bodyLength);
+        entry.putInt(Integer.BYTES, (int) crc.getValue()).flip();
+
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        try {
+            if (segment == null || rotateRequested || segmentSize >= MAX_SEGMENT_BYTES) {
+                rotate(version);
+            }
+            lastEntryStart = segmentSize;
+            while (entry.hasRemaining()) {
+                segmentSize += segment.write(entry);
+            }
+            segment.force(false);
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Cannot append to write-ahead log", e);
+            // Cut off a partial entry, so it does not hide the entries appended after it from replay.
+            try {
+                rollback();
+            } catch (UncheckedIOException rollbackFailure) {
+                failure.addSuppressed(rollbackFailure);
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * Deletes the segments holding only versions up to {@code checkpointedVersion}, and starts a
+     * new segment on the next append so the current one can be deleted after the next checkpoint.
+     */
+    void truncate(long checkpointedVersion) throws IOException {
+        rotateRequested = true;
+        List<Path> segments = segments();
+        // A segment is covered when the next one starts at or below checkpointedVersion + 1;
+        // the newest segment may still be written to and is always kept.
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstVersion(segments.get(i + 1)) <= checkpointedVersion + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Removes the entry written by the last {@link #append}, for a group that could not be
+     * applied after it was logged. Without this, replay would bring back batches whose producers
+     * were told they failed, and the next group would be logged under the same version. Does
+     * nothing if the last append wrote no entry or was already rolled back.
+     *
+     * @throws UncheckedIOException if the segment cannot be truncated; the log is closed then,
+     *                              since the entry may still be replayed
+     */
+    synchronized void rollback() {
+        if (closed || lastEntryStart < 0) {
+            return;
+        }
+        try {
+            segment.truncate(lastEntryStart);
+            segment.force(false);
+            segmentSize = lastEntryStart;
+            lastEntryStart = -1;
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Cannot roll back write-ahead log entry", e);
+        }
+    }
+
+    /**
+     * Closes the current segment. Later appends fail; closing twice has no effect.
+     */
+    synchronized void close() {
+        closed = true;
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close write-ahead log", e);
+            } finally {
+                segment = null;
+            }
+        }
+    }
+
+    private void rotate(long firstVersion) throws IOException {
+        if (segment != null) {
+            segment.close();
+        }
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, firstVersion, SUFFIX));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        segmentSize = 0;
+        rotateRequested = false;
+        forceDirectory();
+    }
+
+    /**
+     * Forces the directory entry of a new segment to disk; forcing the file alone does not make
+     * the file itself survive a crash.
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Some platforms cannot open a directory; their file systems persist entries with the file.
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private int encodeRecord(PriceData price, InstrumentDictionary names, int position) {
+        byte[] id = price.id().getBytes(StandardCharsets.UTF_8);
+        int recordSize = OffHeapRecordCodec.encodedSize(price);
+        ensureCapacity(position + Integer.BYTES + id.length + recordSize);
+        scratch.putInt(position, id.length).put(position + Integer.BYTES, id);
+        int recordOffset = position + Integer.BYTES + id.length;
+        OffHeapRecordCodec.encode(price, names, scratch, recordOffset);
+        return recordOffset + OffHeapRecordCodec.recordSize(scratch, recordOffset);
+    }
+
+    private void ensureCapacity(int size) {
+        if (scratch.capacity() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(size, scratch.capacity() * 2));
+            grown.put(0, scratch, 0, scratch.capacity());
+            scratch = grown;
+        }
+    }
+
+    private static ByteBuffer encodeNames(InstrumentDictionary names) {
+        List<byte[]> encoded = new ArrayList<>(names.size());
+        int size = Integer.BYTES;
+        for (int code = 0; code < names.size(); code++) {
+            byte[] name = names.idOf(code).getBytes(StandardCharsets.UTF_8);
+            encoded.add(name);
+            size += Integer.BYTES + name.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).putInt(encoded.size());
+        for (byte[] name : encoded) {
+            buffer.putInt(name.length).put(name);
+        }
+        return buffer.flip();
+    }
+
+    private static List<PriceData> decode(ByteBuffer body) {
+        int position = Long.BYTES;
+        InstrumentDictionary names = new InstrumentDictionary();
+        int nameCount = body.getInt(position);
+        position += Integer.BYTES;
+        for (int i = 0; i < nameCount; i++) {
+            byte[] name = new byte[body.getInt(position)];
+            body.get(position + Integer.BYTES, name);
+            names.intern(new String(name, StandardCharsets.UTF_8));
+            position += Integer.BYTES + name.length;
+        }
+        int recordCount = body.getInt(position);
+        position += Integer.BYTES;
+        List<PriceData> records = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            byte[] id = new byte[body.getInt(position)];
+            body.get(position + Integer.BYTES, id);
+            position += Integer.BYTES + id.length;
+            Instant asOf = Instant.ofEpochSecond(OffHeapRecordCodec.epochSecond(body, position),
+                    OffHeapRecordCodec.nano(body, position));
+            ImmutableMap<String, Object> payload = OffHeapRecordCodec.decodePayload(body, position, names);
+            records.add(new PriceData(new String(id, StandardCharsets.UTF_8), asOf, payload));
+            position += OffHeapRecordCodec.recordSize(body, position);
+        }
+        return records;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private static long firstVersion(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -30,7 +30,7 @@ class PriceConsumerServiceImplConcurrencyTest {
 
         primary.updateRecords(List.of(
                 new PriceData("A", Instant.now(), ImmutableMap.of("v", 1))
-        ));
+        )).join();
     }
 
     @Test
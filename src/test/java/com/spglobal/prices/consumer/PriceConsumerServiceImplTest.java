@@ -1,13 +1,27 @@
 package com.spglobal.prices.consumer;
 
 import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceChanges;
+import com.spglobal.prices.dto.PriceUpdate;
+import com.spglobal.prices.storage.PreparedPriceQuery;
+import com.spglobal.prices.storage.PriceSink;
+import com.spglobal.prices.storage.PriceSnapshot;
+import com.spglobal.prices.storage.PriceSubscription;
 import com.spglobal.prices.storage.PrimaryPriceStorage;
+import com.spglobal.prices.storage.PrimaryPriceStorageImpl;
+import com.spglobal.prices.storage.ShardedPrimaryPriceStorage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
@@ -68,4 +82,130 @@ class PriceConsumerServiceImplTest {
         assertEquals(expected, result);
     }
 
+    @Test
+    void testGetVersion_delegatesToStorage() {
+        when(storage.getVersion()).thenReturn(5L);
+
+        assertEquals(5L, service.getVersion());
+    }
+
+    @Test
+    void testAwaitVersion_delegatesToStorage() {
+        CompletableFuture<Long> expected = CompletableFuture.completedFuture(5L);
+        when(storage.awaitVersion(4L)).thenReturn(expected);
+
+        assertEquals(expected, service.awaitVersion(4L));
+    }
+
+    @Test
+    void testGetLatestWithFields_delegatesToStorage() {
+        Set<String> ids = Set.of("A");
+        Set<String> fields = Set.of("x");
+        ImmutableMap<String, ImmutableMap<String, Object>> expected = ImmutableMap.of("A", ImmutableMap.of("x", 1));
+        when(storage.getLatest(ids, fields)).thenReturn(expected);
+
+        assertEquals(expected, service.getLatest(ids, fields));
+    }
+
+    @Test
+    void testGetLatestWithFields_emptyIds_returnsEmptyMap() {
+        assertTrue(service.getLatest(Set.of(), Set.of("x")).isEmpty());
+        assertThrows(NullPointerException.class, () -> service.getLatest(Set.of("A"), (Set<String>) null));
+    }
+
+    @Test
+    void testGetLatestWithSink_emptyIds_returnsZero() {
+        assertEquals(0, service.getLatest(List.of(), (id, payload) -> {
+        }));
+        verify(storage, never()).getLatest(any(), any(PriceSink.class));
+    }
+
+    @Test
+    void testGetLatestWithSink_delegatesToStorage() {
+        List<String> ids = List.of("A");
+        PriceSink sink = (id, payload) -> {
+        };
+        when(storage.getLatest(ids, sink)).thenReturn(1);
+
+        assertEquals(1, service.getLatest(ids, sink));
+    }
+
+    @Test
+    void testGetAsOf_delegatesToStorage() {
+        Set<String> ids = Set.of("A");
+        Instant asOf = Instant.parse("2024-01-02T16:00:00Z");
+        ImmutableMap<String, ImmutableMap<String, Object>> expected = ImmutableMap.of("A", ImmutableMap.of("x", 1));
+        when(storage.getAsOf(ids, asOf)).thenReturn(expected);
+
+        assertEquals(expected, service.getAsOf(ids, asOf));
+        assertTrue(service.getAsOf(Set.of(), asOf).isEmpty());
+    }
+
+    @Test
+    void testGetAsOf_withoutHistoryThrowsUnsupported() {
+        Set<String> ids = Set.of("A");
+        Instant asOf = Instant.now();
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> new PriceConsumerServiceImpl(new PrimaryPriceStorageImpl()).getAsOf(ids, asOf));
+        assertThrows(UnsupportedOperationException.class,
+                () -> new PriceConsumerServiceImpl(new ShardedPrimaryPriceStorage(2)).getAsOf(ids, asOf));
+    }
+
+    @Test
+    void testPrepare_delegatesToStorage() {
+        Set<String> ids = Set.of("A");
+        PreparedPriceQuery query = ImmutableMap::of;
+        when(storage.prepare(ids)).thenReturn(query);
+
+        assertSame(query, service.prepare(ids));
+    }
+
+    @Test
+    void testSnapshot_delegatesToStorage() {
+        PriceSnapshot snapshot = mock(PriceSnapshot.class);
+        when(storage.snapshot()).thenReturn(snapshot);
+
+        assertSame(snapshot, service.snapshot());
+    }
+
+    @Test
+    void testGetChangesSince_delegatesToStorage() {
+        PriceChanges expected = new PriceChanges(5L, false, ImmutableMap.of("A", ImmutableMap.of("x", 1)));
+        when(storage.getChangesSince(3L)).thenReturn(expected);
+
+        assertEquals(expected, service.getChangesSince(3L));
+    }
+
+    @Test
+    void testSubscribe_delegatesToStorage() {
+        Set<String> ids = Set.of("A");
+        Executor executor = Runnable::run;
+        Consumer<PriceUpdate> listener = update -> {
+        };
+        PriceSubscription subscription = mock(PriceSubscription.class);
+        when(storage.subscribe(ids, executor, listener)).thenReturn(subscription);
+
+        assertSame(subscription, service.subscribe(ids, executor, listener));
+    }
+
+    @Test
+    void testSubscribe_unsupportedByStoragePropagates() {
+        Set<String> ids = Set.of("A");
+        Executor executor = Runnable::run;
+        Consumer<PriceUpdate> listener = update -> {
+        };
+        when(storage.subscribe(ids, executor, listener)).thenThrow(new UnsupportedOperationException());
+        when(storage.subscribeAll(executor, listener)).thenThrow(new UnsupportedOperationException());
+
+        assertThrows(UnsupportedOperationException.class, () -> service.subscribe(ids, executor, listener));
+        assertThrows(UnsupportedOperationException.class, () -> service.subscribeAll(executor, listener));
+    }
+
+    @Test
+    void testSubscribe_nullIdsThrows() {
+        assertThrows(NullPointerException.class, () -> service.subscribe(null, Runnable::run, update -> {
+        }));
+    }
+
 }
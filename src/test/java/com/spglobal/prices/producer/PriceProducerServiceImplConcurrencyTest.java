@@ -19,8 +19,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PriceProducerServiceImplConcurrencyTest {
@@ -59,14 +58,13 @@ class PriceProducerServiceImplConcurrencyTest {
             boolean finished = executor.awaitTermination(5, TimeUnit.SECONDS);
             assertTrue(finished, "Executor did not finish in time");
         }
-        service.completeBatch(batchId);
+        long version = service.completeBatch(batchId).join();
 
         Set<String> set = IntStream.range(0, threads)
                                    .mapToObj(i -> "A" + i)
                                    .collect(Collectors.toSet());
-        await().atMost(2, SECONDS).until(() ->
-                primary.getLatest(set).size() == threads
-        );
+        assertEquals(version, primary.getVersion());
+        assertEquals(threads, primary.getLatest(set).size());
     }
 }
 
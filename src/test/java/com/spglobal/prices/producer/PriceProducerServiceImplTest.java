@@ -2,14 +2,22 @@ package com.spglobal.prices.producer;
 
 import com.google.common.collect.ImmutableMap;
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.exception.CommitRejectedException;
 import com.spglobal.prices.exception.NoSuchBatchException;
+import com.spglobal.prices.storage.BatchHandle;
+import com.spglobal.prices.storage.CommitPriority;
 import com.spglobal.prices.storage.PriceBatchBufferStorage;
+import com.spglobal.prices.storage.PriceBatchBufferStorageImpl;
 import com.spglobal.prices.storage.PrimaryPriceStorage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -88,21 +96,81 @@ class PriceProducerServiceImplTest {
         PriceData p = new PriceData("A", Instant.now(), ImmutableMap.of("x", 10));
         List<PriceData> batch = List.of(p);
 
-        when(bufferStorage.completeBatch("b1")).thenReturn(batch);
+        stage("b1", batch);
+        when(primaryStorage.updateRecords(batch, CommitPriority.NORMAL))
+                .thenReturn(CompletableFuture.completedFuture(7L));
 
-        service.completeBatch("b1");
+        CompletableFuture<Long> receipt = service.completeBatch("b1");
 
         // Ensure delegating to primary storage
-        verify(primaryStorage).updateRecords(batch);
+        verify(primaryStorage).updateRecords(batch, CommitPriority.NORMAL);
+        assertEquals(7L, receipt.join());
+    }
+
+    @Test
+    void testCompleteBatch_urgentPassesPriorityToStorage() {
+        PriceData p = new PriceData("A", Instant.now(), ImmutableMap.of("x", 10));
+        List<PriceData> batch = List.of(p);
+
+        stage("b1", batch);
+        when(primaryStorage.updateRecords(batch, CommitPriority.URGENT))
+                .thenReturn(CompletableFuture.completedFuture(8L));
+
+        assertEquals(8L, service.completeBatch("b1", CommitPriority.URGENT).join());
+        verify(primaryStorage).updateRecords(batch, CommitPriority.URGENT);
+    }
+
+    @Test
+    void testPublish_delegatesToStorage() {
+        PriceData p = new PriceData("A", Instant.now(), ImmutableMap.of("x", 10));
+        when(primaryStorage.publish(p)).thenReturn(CompletableFuture.completedFuture(4L));
+
+        assertEquals(4L, service.publish(p).join());
+        verify(primaryStorage).publish(p);
+    }
+
+    @Test
+    void testCompleteBatch_withHandleDelegatesToBufferAndStorage() {
+        BatchHandle handle = new PriceBatchBufferStorageImpl().openBatch();
+        PriceData p = new PriceData("A", Instant.now(), ImmutableMap.of("x", 10));
+        List<PriceData> batch = List.of(p);
+
+        when(bufferStorage.openBatch()).thenReturn(handle);
+        when(bufferStorage.completeBatchOf(eq(handle), any())).thenAnswer(invocation -> commit(invocation, batch));
+        when(primaryStorage.updateRecords(batch, CommitPriority.NORMAL))
+                .thenReturn(CompletableFuture.completedFuture(9L));
+
+        assertEquals(handle, service.openBatch());
+        service.uploadChunkTo(handle, batch);
+        assertEquals(9L, service.completeBatchOf(handle, CommitPriority.NORMAL).join());
+        verify(bufferStorage).addChunkTo(handle, batch);
+    }
+
+    @Test
+    void testCompleteBatch_rejectedCommitKeepsBatchOpen() {
+        PriceProducerServiceImpl staging =
+                new PriceProducerServiceImpl(new PriceBatchBufferStorageImpl(), primaryStorage);
+        List<PriceData> batch = List.of(new PriceData("A", Instant.now(), ImmutableMap.of("x", 10)));
+        when(primaryStorage.updateRecords(batch, CommitPriority.NORMAL))
+                .thenReturn(CompletableFuture.failedFuture(new CommitRejectedException("full")))
+                .thenReturn(CompletableFuture.completedFuture(5L));
+        String batchId = staging.startBatch();
+        staging.uploadChunk(batchId, batch);
+
+        assertThrows(CompletionException.class, () -> staging.completeBatch(batchId).join());
+
+        assertEquals(5L, staging.completeBatch(batchId).join());
     }
 
     @Test
     void testCompleteBatch_withEmptyResult_doesNotUpdateStorage() {
-        when(bufferStorage.completeBatch("b1")).thenReturn(List.of());
+        stage("b1", List.of());
+        when(primaryStorage.getVersion()).thenReturn(3L);
 
-        service.completeBatch("b1");
+        CompletableFuture<Long> receipt = service.completeBatch("b1");
 
-        verify(primaryStorage, never()).updateRecords(any());
+        verify(primaryStorage, never()).updateRecords(any(), any());
+        assertEquals(3L, receipt.join());
     }
 
     @Test
@@ -112,7 +180,7 @@ class PriceProducerServiceImplTest {
 
     @Test
     void testCompleteBatch_throwsNoSuchBatchException() {
-        doThrow(new NoSuchBatchException("b1")).when(bufferStorage).completeBatch("b1");
+        doThrow(new NoSuchBatchException("b1")).when(bufferStorage).completeBatch(eq("b1"), any());
 
         assertThrows(NoSuchBatchException.class, () -> service.completeBatch("b1"));
     }
@@ -134,4 +202,16 @@ class PriceProducerServiceImplTest {
 
         assertThrows(NoSuchBatchException.class, () -> service.cancelBatch("b1"));
     }
+
+    /**
+     * Makes the buffer storage hand {@code batch} to the commit function it is given for {@code batchId}.
+     */
+    private void stage(String batchId, List<PriceData> batch) {
+        when(bufferStorage.completeBatch(eq(batchId), any())).thenAnswer(invocation -> commit(invocation, batch));
+    }
+
+    private static CompletableFuture<Long> commit(InvocationOnMock invocation, List<PriceData> batch) {
+        Function<List<PriceData>, CompletableFuture<Long>> commit = invocation.getArgument(1);
+        return commit.apply(batch);
+    }
 }
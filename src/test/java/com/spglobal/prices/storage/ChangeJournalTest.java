@@ -0,0 +1,46 @@
+package com.spglobal.prices.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeJournalTest {
+
+    @Test
+    void testChangesBetween_returnsVersionsInRange() {
+        ChangeJournal journal = new ChangeJournal(100, 0L);
+        journal.append(1L, new int[]{1});
+        journal.append(2L, new int[]{2, 3});
+        journal.append(3L, new int[]{4});
+
+        List<int[]> changes = journal.changesBetween(1L, 2L);
+
+        assertEquals(1, changes.size());
+        assertArrayEquals(new int[]{2, 3}, changes.get(0));
+        assertEquals(3, journal.changesBetween(0L, 3L).size());
+        assertTrue(journal.changesBetween(3L, 3L).isEmpty());
+    }
+
+    @Test
+    void testChangesBetween_evictedVersionsReturnNull() {
+        ChangeJournal journal = new ChangeJournal(3, 0L);
+        journal.append(1L, new int[]{1, 2});
+        journal.append(2L, new int[]{3, 4});
+
+        assertNull(journal.changesBetween(0L, 2L));
+        assertEquals(1, journal.changesBetween(1L, 2L).size());
+    }
+
+    @Test
+    void testChangesBetween_beforeFloorReturnsNull() {
+        ChangeJournal journal = new ChangeJournal(100, 5L);
+
+        assertNull(journal.changesBetween(4L, 5L));
+        assertTrue(journal.changesBetween(5L, 5L).isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkArrayStagingBufferTest {
+
+    @Test
+    void testClose_returnsChunksInArrivalOrder() {
+        ChunkArrayStagingBuffer buffer = new ChunkArrayStagingBuffer();
+        List<PriceData> first = prices("A", 3);
+        List<PriceData> second = prices("B", 1);
+        List<PriceData> third = prices("C", 2);
+
+        buffer.add(first);
+        buffer.add(second);
+        buffer.add(third);
+        List<PriceData> result = buffer.close();
+
+        List<PriceData> expected = new ArrayList<>(first);
+        expected.addAll(second);
+        expected.addAll(third);
+        assertEquals(expected, result);
+        assertEquals(6, result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), result.get(i));
+        }
+    }
+
+    @Test
+    void testClose_emptyBuffer_returnsEmptyList() {
+        assertTrue(new ChunkArrayStagingBuffer().close().isEmpty());
+    }
+
+    @Test
+    void testAdd_afterClose_isRejected() {
+        ChunkArrayStagingBuffer buffer = new ChunkArrayStagingBuffer();
+        buffer.close();
+
+        assertFalse(buffer.add(prices("A", 1)));
+    }
+
+    @Test
+    void testAdd_isNotAffectedByLaterChangesToChunk() {
+        ChunkArrayStagingBuffer buffer = new ChunkArrayStagingBuffer();
+        List<PriceData> chunk = new ArrayList<>(prices("A", 2));
+
+        buffer.add(chunk);
+        chunk.clear();
+
+        assertEquals(2, buffer.close().size());
+    }
+
+    @Test
+    void testAdd_nullRecordThrows() {
+        ChunkArrayStagingBuffer buffer = new ChunkArrayStagingBuffer();
+        List<PriceData> chunk = new ArrayList<>();
+        chunk.add(null);
+
+        assertThrows(NullPointerException.class, () -> buffer.add(chunk));
+    }
+
+    @Test
+    void testCompletedList_isImmutable() {
+        ChunkArrayStagingBuffer buffer = new ChunkArrayStagingBuffer();
+        buffer.add(prices("A", 2));
+        List<PriceData> result = buffer.close();
+
+        assertThrows(UnsupportedOperationException.class, () -> result.add(result.get(0)));
+        assertThrows(UnsupportedOperationException.class, () -> result.set(0, result.get(1)));
+        assertThrows(IndexOutOfBoundsException.class, () -> result.get(2));
+    }
+
+    private static List<PriceData> prices(String prefix, int count) {
+        List<PriceData> prices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            prices.add(new PriceData(prefix + i, Instant.now(), ImmutableMap.of("i", i)));
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,332 @@
+package com.spglobal.prices.storage;
+
+import com.spglobal.prices.exception.CommitRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommitPipelineTest {
+
+    @Test
+    void testSubmit_completesWithCommittedVersion() {
+        AtomicLong version = new AtomicLong();
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> version.incrementAndGet());
+
+        assertEquals(1L, pipeline.submit("a").join());
+        assertEquals(2L, pipeline.submit("b").join());
+    }
+
+    @Test
+    void testQueuedBatches_areCommittedAsOneGroup() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> groups = new CopyOnWriteArrayList<>();
+        AtomicLong version = new AtomicLong();
+
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> {
+            List<String> batches = new ArrayList<>();
+            group.forEach(pending -> batches.add(pending.batch()));
+            groups.add(batches);
+            if (batches.contains("first")) {
+                writerBusy.countDown();
+                await(release);
+            }
+            return version.incrementAndGet();
+        });
+
+        CompletableFuture<Long> first = pipeline.submit("first");
+        writerBusy.await();
+
+        List<CompletableFuture<Long>> queued = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            queued.add(pipeline.submit("b" + i));
+        }
+        release.countDown();
+
+        assertEquals(1L, first.join());
+        for (CompletableFuture<Long> receipt : queued) {
+            assertEquals(2L, receipt.join());
+        }
+        assertEquals(List.of(List.of("first"), List.of("b0", "b1", "b2", "b3", "b4")), groups);
+    }
+
+    @Test
+    void testSubmit_moreBatchesThanRingSlots() {
+        AtomicLong version = new AtomicLong();
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> version.incrementAndGet());
+
+        List<CompletableFuture<Long>> receipts = new ArrayList<>();
+        for (int i = 0; i < 3 * CommitPipeline.RING_SIZE; i++) {
+            receipts.add(pipeline.submit("b" + i));
+        }
+        long previous = 0;
+        for (CompletableFuture<Long> receipt : receipts) {
+            long committed = receipt.join();
+            assertTrue(committed >= previous);
+            previous = committed;
+        }
+        assertEquals(version.get(), previous);
+    }
+
+    @Test
+    void testUrgentBatches_areCommittedAheadOfQueuedNormalBatches() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> groups = new CopyOnWriteArrayList<>();
+        AtomicLong version = new AtomicLong();
+
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> {
+            List<String> batches = new ArrayList<>();
+            group.forEach(pending -> batches.add(pending.batch()));
+            groups.add(batches);
+            if (batches.contains("first")) {
+                writerBusy.countDown();
+                await(release);
+            }
+            return version.incrementAndGet();
+        });
+
+        CompletableFuture<Long> first = pipeline.submit("first");
+        writerBusy.await();
+        CompletableFuture<Long> bulk = pipeline.submit("bulk");
+        CompletableFuture<Long> urgent1 = pipeline.submit("urgent1", CommitPriority.URGENT);
+        CompletableFuture<Long> urgent2 = pipeline.submit("urgent2", CommitPriority.URGENT);
+        release.countDown();
+
+        assertEquals(1L, first.join());
+        assertEquals(2L, urgent1.join());
+        assertEquals(2L, urgent2.join());
+        assertEquals(3L, bulk.join());
+        assertEquals(List.of(List.of("first"), List.of("urgent1", "urgent2"), List.of("bulk")), groups);
+    }
+
+    @Test
+    void testNormalBatch_isNotStarvedBySustainedUrgentLoad() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> groups = new CopyOnWriteArrayList<>();
+        AtomicLong version = new AtomicLong();
+        AtomicReference<CommitPipeline<String>> self = new AtomicReference<>();
+
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> {
+            List<String> batches = new ArrayList<>();
+            group.forEach(pending -> batches.add(pending.batch()));
+            groups.add(batches);
+            if (batches.contains("first")) {
+                writerBusy.countDown();
+                await(release);
+            }
+            // Every urgent group queues the next urgent batch, so the urgent lane never runs dry.
+            if (batches.get(0).startsWith("u") && groups.size() < 100) {
+                self.get().submit("u" + groups.size(), CommitPriority.URGENT);
+            }
+            return version.incrementAndGet();
+        });
+        self.set(pipeline);
+
+        pipeline.submit("first");
+        writerBusy.await();
+        CompletableFuture<Long> bulk = pipeline.submit("bulk");
+        pipeline.submit("u0", CommitPriority.URGENT);
+        release.countDown();
+
+        long committed = bulk.get(5, TimeUnit.SECONDS);
+        assertEquals(CommitPipeline.MAX_URGENT_STREAK + 2L, committed);
+        assertEquals(List.of("bulk"), groups.get(CommitPipeline.MAX_URGENT_STREAK + 1));
+    }
+
+    @Test
+    void testNormalGroup_stopsGrowingAtMaxGroupWeight() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> groupSizes = new CopyOnWriteArrayList<>();
+        AtomicLong version = new AtomicLong();
+
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> {
+            groupSizes.add(group.size());
+            if (group.get(0).batch().equals("first")) {
+                writerBusy.countDown();
+                await(release);
+            }
+            return version.incrementAndGet();
+        }, batch -> batch.equals("first") ? 1 : CommitPipeline.MAX_GROUP_WEIGHT / 2, Integer.MAX_VALUE,
+                BackpressurePolicy.BLOCK, Duration.ZERO, WaitStrategy.BLOCKING);
+
+        CompletableFuture<Long> first = pipeline.submit("first");
+        writerBusy.await();
+        List<CompletableFuture<Long>> bulk = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bulk.add(pipeline.submit("bulk" + i));
+        }
+        release.countDown();
+
+        first.join();
+        bulk.forEach(CompletableFuture::join);
+        assertEquals(List.of(1, 2, 1), groupSizes);
+    }
+
+    @Test
+    void testFailedBatch_doesNotFailRestOfGroup() {
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> {
+            group.stream()
+                 .filter(pending -> pending.batch().equals("bad"))
+                 .forEach(pending -> pending.fail(new IllegalArgumentException("bad batch")));
+            return 1L;
+        });
+
+        CompletionException error = assertThrows(CompletionException.class, () -> pipeline.submit("bad").join());
+        assertTrue(error.getCause() instanceof IllegalArgumentException);
+        assertEquals(1L, pipeline.submit("good").join());
+    }
+
+    @Test
+    void testCommitterFailure_failsWholeGroupAndKeepsWriterAlive() {
+        AtomicLong calls = new AtomicLong();
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("boom");
+            }
+            return 2L;
+        });
+
+        assertThrows(CompletionException.class, () -> pipeline.submit("a").join());
+        assertTrue(pipeline.submit("b").join() > 0);
+    }
+
+    @Test
+    void testReject_failsBatchThatDoesNotFit() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CommitPipeline<String> pipeline = blockingPipeline(4, BackpressurePolicy.REJECT, Duration.ZERO,
+                writerBusy, release);
+
+        CompletableFuture<Long> first = pipeline.submit("a");
+        writerBusy.await();
+        CompletableFuture<Long> queued = pipeline.submit("bb");
+        CompletableFuture<Long> rejected = pipeline.submit("cc");
+
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(error.getCause() instanceof CommitRejectedException);
+        assertFalse(queued.isDone());
+
+        release.countDown();
+        assertEquals(1L, first.join());
+        assertEquals(2L, queued.join());
+        assertEquals(3L, pipeline.submit("cc").join());
+    }
+
+    @Test
+    void testTimeout_rejectsAfterWaiting() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CommitPipeline<String> pipeline = blockingPipeline(1, BackpressurePolicy.TIMEOUT, Duration.ofMillis(50),
+                writerBusy, release);
+
+        CompletableFuture<Long> first = pipeline.submit("a");
+        writerBusy.await();
+
+        long start = System.nanoTime();
+        CompletableFuture<Long> rejected = pipeline.submit("b");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(error.getCause() instanceof CommitRejectedException);
+
+        release.countDown();
+        assertEquals(1L, first.join());
+        assertEquals(2L, pipeline.submit("b").join());
+    }
+
+    @Test
+    void testBlock_waitsForRoom() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CommitPipeline<String> pipeline = blockingPipeline(1, BackpressurePolicy.BLOCK, Duration.ZERO,
+                writerBusy, release);
+
+        CompletableFuture<Long> first = pipeline.submit("a");
+        writerBusy.await();
+        CompletableFuture<CompletableFuture<Long>> second = CompletableFuture.supplyAsync(() -> pipeline.submit("b"));
+
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+
+        release.countDown();
+        assertEquals(1L, first.join());
+        assertEquals(2L, second.join().join());
+    }
+
+    @Test
+    void testBatchLargerThanCapacity_isAdmittedWhenQueueIsEmpty() {
+        AtomicLong version = new AtomicLong();
+        CommitPipeline<String> pipeline = new CommitPipeline<>("test-writer", group -> version.incrementAndGet(),
+                String::length, 2, BackpressurePolicy.REJECT, Duration.ZERO,
+                WaitStrategy.BLOCKING);
+
+        assertEquals(1L, pipeline.submit("oversized").join());
+    }
+
+    @Test
+    void testStats_reportQueuedLoadAndCommitLag() throws Exception {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CommitPipeline<String> pipeline = blockingPipeline(100, BackpressurePolicy.REJECT, Duration.ZERO,
+                writerBusy, release);
+        assertEquals(new CommitQueueStats(0, 0, Duration.ZERO, Duration.ZERO), pipeline.stats());
+
+        CompletableFuture<Long> first = pipeline.submit("a");
+        writerBusy.await();
+        CompletableFuture<Long> queued = pipeline.submit("bbb");
+        Thread.sleep(10);
+
+        CommitQueueStats busy = pipeline.stats();
+        assertEquals(1, busy.queuedBatches());
+        assertEquals(4, busy.queuedRecords());
+        assertTrue(busy.oldestQueuedAge().toMillis() >= 10);
+
+        release.countDown();
+        first.join();
+        queued.join();
+        CommitQueueStats idle = pipeline.stats();
+        assertEquals(0, idle.queuedBatches());
+        assertEquals(0, idle.queuedRecords());
+        assertTrue(idle.lastCommitLag().compareTo(Duration.ZERO) > 0);
+    }
+
+    /**
+     * Pipeline weighing batches by length whose writer holds the group containing "a" until
+     * {@code release} opens.
+     */
+    private static CommitPipeline<String> blockingPipeline(int capacity, BackpressurePolicy policy, Duration timeout,
+                                                           CountDownLatch writerBusy, CountDownLatch release) {
+        AtomicLong version = new AtomicLong();
+        return new CommitPipeline<>("test-writer", group -> {
+            if (group.stream().anyMatch(pending -> pending.batch().equals("a"))) {
+                writerBusy.countDown();
+                await(release);
+            }
+            return version.incrementAndGet();
+        }, String::length, capacity, policy, timeout, WaitStrategy.BLOCKING);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
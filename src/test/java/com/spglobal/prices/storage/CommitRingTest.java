@@ -0,0 +1,108 @@
+package com.spglobal.prices.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CommitRingTest {
+
+    @Test
+    void testCapacity_mustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new CommitRing<String>(3, WaitStrategy.BLOCKING));
+        assertThrows(IllegalArgumentException.class, () -> new CommitRing<String>(0, WaitStrategy.BLOCKING));
+    }
+
+    @Test
+    void testDrainTo_takesPublishedElementsInOrder() throws Exception {
+        CommitRing<String> ring = new CommitRing<>(4, WaitStrategy.BLOCKING);
+        ring.put("a");
+        ring.put("b");
+        ring.put("c");
+        assertEquals(3, ring.size());
+        assertEquals("a", ring.peek());
+
+        assertEquals("a", ring.take());
+        List<String> drained = new ArrayList<>();
+        assertEquals(1, ring.drainTo(drained, 1));
+        assertEquals(1, ring.drainTo(drained, 10));
+        assertEquals(List.of("b", "c"), drained);
+        assertEquals(0, ring.size());
+        assertNull(ring.peek());
+    }
+
+    @Test
+    void testPut_waitsWhileRingIsFull() throws Exception {
+        CommitRing<String> ring = new CommitRing<>(2, WaitStrategy.BLOCKING);
+        ring.put("a");
+        ring.put("b");
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> ring.put("c"));
+        Thread.sleep(50);
+        assertFalse(third.isDone());
+
+        assertEquals("a", ring.take());
+        third.join();
+        assertEquals("b", ring.take());
+        assertEquals("c", ring.take());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitStrategy.class)
+    void testConcurrentProducers_loseNothing(WaitStrategy waitStrategy) throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        CommitRing<Integer> ring = new CommitRing<>(64, waitStrategy);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    ring.put(base + i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        Set<Integer> seen = new HashSet<>();
+        int[] lastPerProducer = new int[producers];
+        Arrays.fill(lastPerProducer, -1);
+        for (int i = 0; i < producers * perProducer; i++) {
+            int value = ring.take();
+            seen.add(value);
+            int producer = value / perProducer;
+            // Each producer's elements come out in the order it put them.
+            assertEquals(lastPerProducer[producer] + 1, value % perProducer);
+            lastPerProducer[producer] = value % perProducer;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(producers * perProducer, seen.size());
+        assertEquals(0, ring.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactPayloadTest {
+
+    private final CompactPayload.Shapes shapes = new CompactPayload.Shapes();
+
+    @Test
+    void testEncode_numericPayloadReadsBackWithOriginalTypes() {
+        ImmutableMap<String, Object> payload = ImmutableMap.of("bid", 1.5, "ask", 2.25, "size", 100, "ts", 7L);
+
+        Map<String, Object> encoded = shapes.encode(payload);
+
+        assertTrue(encoded instanceof CompactPayload);
+        assertEquals(payload, encoded);
+        assertEquals(payload.hashCode(), encoded.hashCode());
+        assertEquals(1.5, encoded.get("bid"));
+        assertEquals(100, encoded.get("size"));
+        assertEquals(7L, encoded.get("ts"));
+        assertNull(encoded.get("mid"));
+        assertFalse(encoded.containsKey("mid"));
+    }
+
+    @Test
+    void testEncode_preservesFieldOrder() {
+        ImmutableMap<String, Object> payload = ImmutableMap.of("z", 1, "a", 2.0);
+
+        List<String> keys = new ArrayList<>(shapes.encode(payload).keySet());
+
+        assertEquals(List.of("z", "a"), keys);
+    }
+
+    @Test
+    void testEncode_unsupportedValuesFallBackToOriginalMap() {
+        ImmutableMap<String, Object> payload = ImmutableMap.of("bid", 1.5, "venue", "XLON");
+
+        assertSame(payload, shapes.encode(payload));
+    }
+
+    @Test
+    void testEncode_emptyPayloadIsReturnedAsIs() {
+        ImmutableMap<String, Object> payload = ImmutableMap.of();
+
+        assertSame(payload, shapes.encode(payload));
+    }
+
+    @Test
+    void testEncode_specialDoublesRoundTrip() {
+        ImmutableMap<String, Object> payload = ImmutableMap.of("a", Double.NaN, "b", -0.0, "c", Double.MAX_VALUE);
+
+        assertEquals(payload, shapes.encode(payload));
+    }
+
+    @Test
+    void testToImmutableMap_materializesEqualMap() {
+        ImmutableMap<String, Object> payload = ImmutableMap.of("bid", 1.5, "size", 100);
+
+        ImmutableMap<String, Object> materialized = CompactPayload.toImmutableMap(shapes.encode(payload));
+
+        assertEquals(payload, materialized);
+        assertEquals(List.copyOf(payload.keySet()), List.copyOf(materialized.keySet()));
+    }
+
+    @Test
+    void testEncodedPayload_isReadOnly() {
+        Map<String, Object> encoded = shapes.encode(ImmutableMap.of("bid", 1.5));
+
+        assertThrows(UnsupportedOperationException.class, () -> encoded.put("ask", 2.0));
+        assertThrows(UnsupportedOperationException.class, () -> encoded.entrySet().iterator().next().setValue(3.0));
+    }
+
+    @Test
+    void testProjection_keepsOnlyRequestedFields() {
+        CompactPayload.Projection projection = CompactPayload.projection(Set.of("mid", "size", "missing"));
+        Map<String, Object> compact = shapes.encode(ImmutableMap.of("bid", 1.0, "mid", 1.5, "size", 10));
+        Map<String, Object> otherShape = shapes.encode(ImmutableMap.of("mid", 2.5, "ts", 7L));
+        Map<String, Object> fallback = shapes.encode(ImmutableMap.of("mid", 3.5, "venue", "X"));
+
+        assertEquals(ImmutableMap.of("mid", 1.5, "size", 10), projection.apply(compact));
+        assertEquals(ImmutableMap.of("mid", 2.5), projection.apply(otherShape));
+        assertEquals(ImmutableMap.of("mid", 1.5, "size", 10), projection.apply(compact));
+        assertEquals(ImmutableMap.of("mid", 3.5), projection.apply(fallback));
+    }
+
+    @Test
+    void testShapes_fullRegistryFallsBackAndCounts() {
+        for (int i = 0; i < CompactPayload.MAX_SHAPES; i++) {
+            assertTrue(shapes.encode(ImmutableMap.of("f" + i, i)) instanceof CompactPayload);
+        }
+        ImmutableMap<String, Object> overflow = ImmutableMap.of("extra", 1);
+
+        assertSame(overflow, shapes.encode(overflow));
+        assertEquals(CompactPayload.MAX_SHAPES, shapes.size());
+        assertEquals(1, shapes.fallbacks());
+        assertTrue(new CompactPayload.Shapes().encode(overflow) instanceof CompactPayload);
+    }
+}
@@ -0,0 +1,59 @@
+package com.spglobal.prices.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InstrumentDictionaryTest {
+
+    @Test
+    void testIntern_assignsDenseCodesInFirstSeenOrder() {
+        InstrumentDictionary dictionary = new InstrumentDictionary();
+
+        assertEquals(0, dictionary.intern("A"));
+        assertEquals(1, dictionary.intern("B"));
+        assertEquals(0, dictionary.intern("A"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void testCodeOf_unknownIdReturnsMinusOne() {
+        InstrumentDictionary dictionary = new InstrumentDictionary();
+        dictionary.intern("A");
+
+        assertEquals(-1, dictionary.codeOf("B"));
+    }
+
+    @Test
+    void testIdOf_returnsFirstSeenInstance() {
+        InstrumentDictionary dictionary = new InstrumentDictionary();
+        String first = new String("A");
+        String second = new String("A");
+
+        int code = dictionary.intern(first);
+
+        assertEquals(code, dictionary.intern(second));
+        assertSame(first, dictionary.idOf(code));
+    }
+
+    @Test
+    void testIntern_survivesResizes() {
+        InstrumentDictionary dictionary = new InstrumentDictionary();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.intern("id" + i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.codeOf("id" + i));
+            assertEquals("id" + i, dictionary.idOf(i));
+        }
+        assertEquals(10_000, dictionary.size());
+    }
+
+    @Test
+    void testIntern_nullThrows() {
+        assertThrows(NullPointerException.class, () -> new InstrumentDictionary().intern(null));
+    }
+}
@@ -0,0 +1,72 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OffHeapPrimaryPriceStorageConcurrencyTest {
+
+    @RepeatedTest(5)
+    void concurrentReaders_neverSeePartiallyAppliedBatch() throws Exception {
+        OffHeapPrimaryPriceStorage storage = new OffHeapPrimaryPriceStorage();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 64; i++) {
+            ids.add("id" + i);
+        }
+        int rounds = 200;
+        AtomicBoolean done = new AtomicBoolean();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(ids);
+                        // Every batch writes the same round to all ids, so a consistent read sees one round.
+                        long distinctRounds = result.values().stream().map(p -> p.get("round")).distinct().count();
+                        assertEquals(result.isEmpty() ? 0 : 1, distinctRounds, "Mixed batches in one read");
+                        if (!result.isEmpty()) {
+                            assertEquals(ids.size(), result.size(), "Partially visible batch");
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                Instant base = Instant.now();
+                CompletableFuture<Long> last = null;
+                for (int round = 0; round < rounds; round++) {
+                    List<PriceData> batch = new ArrayList<>();
+                    for (String id : ids) {
+                        batch.add(new PriceData(id, base.plusMillis(round),
+                                ImmutableMap.of("round", round, "pad", "x".repeat(round % 50))));
+                    }
+                    last = storage.updateRecords(batch);
+                }
+                // Queued batches may be group-committed, so versions can advance by less than one per batch.
+                last.join();
+                assertEquals(rounds - 1, storage.getLatest(Set.of("id0")).get("id0").get("round"));
+            } finally {
+                done.set(true);
+            }
+
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        }
+    }
+}
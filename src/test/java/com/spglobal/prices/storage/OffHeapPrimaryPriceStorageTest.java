@@ -0,0 +1,262 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceChanges;
+import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.dto.PriceUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapPrimaryPriceStorageTest {
+
+    private OffHeapPrimaryPriceStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new OffHeapPrimaryPriceStorage();
+    }
+
+    @Test
+    void testGetLatest_EmptyStorage_returnsEmptyCollection() {
+        assertTrue(storage.getLatest(Set.of("A", "B")).isEmpty());
+        assertEquals(0L, storage.getVersion());
+    }
+
+    @Test
+    void testUpdateRecords_payloadTypesRoundTrip() {
+        ImmutableMap<String, Object> payload = ImmutableMap.<String, Object>builder()
+                .put("int", 1).put("long", 2L).put("double", 3.5).put("float", 4.5f)
+                .put("short", (short) 5).put("byte", (byte) 6).put("bool", true).put("char", 'x')
+                .put("venue", "XLON €")
+                .build();
+
+        storage.updateRecords(List.of(new PriceData("A", Instant.now(), payload))).join();
+
+        ImmutableMap<String, Object> actual = storage.getLatest(Set.of("A")).get("A");
+        assertEquals(payload, actual);
+        assertEquals(List.copyOf(payload.keySet()), List.copyOf(actual.keySet()));
+    }
+
+    @Test
+    void testUpdateRecords_keepsLatestByAsOfOnBothCopies() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 100)))).join();
+        storage.updateRecords(List.of(new PriceData("A", now.minusSeconds(10), ImmutableMap.of("price", 50)))).join();
+        storage.updateRecords(List.of(new PriceData("B", now, ImmutableMap.of("price", 1)))).join();
+        long version = storage.updateRecords(List.of(new PriceData("C", now, ImmutableMap.of("price", 2)))).join();
+
+        assertEquals(4L, version);
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A", "B", "C", "D"));
+        assertEquals(3, result.size());
+        assertEquals(100, result.get("A").get("price"));
+        assertEquals(1, result.get("B").get("price"));
+    }
+
+    @Test
+    void testUpdateRecords_manyRecordsAcrossSegmentsAndCompaction() {
+        Instant base = Instant.now();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            ids.add("id" + i);
+        }
+        long version = 0;
+        for (int round = 0; round < 20; round++) {
+            List<PriceData> batch = new ArrayList<>();
+            for (String id : ids) {
+                batch.add(new PriceData(id, base.plusSeconds(round), ImmutableMap.of("round", round, "id", id)));
+            }
+            version = storage.updateRecords(batch).join();
+        }
+
+        assertEquals(20L, version);
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(ids);
+        assertEquals(ids.size(), result.size());
+        result.forEach((id, payload) -> {
+            assertEquals(19, payload.get("round"));
+            assertEquals(id, payload.get("id"));
+        });
+    }
+
+    @Test
+    void testUpdateRecords_unsupportedValueFailsOnlyThatBatch() {
+        CompletableFuture<Long> rejected = storage.updateRecords(
+                List.of(new PriceData("A", Instant.now(), ImmutableMap.of("price", new Object()))));
+        CompletableFuture<Long> accepted = storage.updateRecords(
+                List.of(new PriceData("B", Instant.now(), ImmutableMap.of("price", 1))));
+
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        accepted.join();
+        assertEquals(Set.of("B"), storage.getLatest(Set.of("A", "B")).keySet());
+    }
+
+    @Test
+    void testUpdateRecords_ignoresNullOrEmpty() {
+        assertEquals(0L, storage.updateRecords(null).join());
+        assertEquals(0L, storage.updateRecords(List.of()).join());
+    }
+
+    @Test
+    void testAwaitVersion_completesWhenPublished() {
+        CompletableFuture<Long> future = storage.awaitVersion(2L);
+
+        storage.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of()))).join();
+        storage.updateRecords(List.of(new PriceData("B", Instant.now(), ImmutableMap.of())));
+
+        assertEquals(2L, future.join());
+        assertEquals(2, storage.getLatest(Set.of("A", "B")).size());
+    }
+
+    @Test
+    void testSnapshot_readsPinnedVersion() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+
+        try (PriceSnapshot snapshot = storage.snapshot()) {
+            storage.updateRecords(List.of(
+                    new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 3)),
+                    new PriceData("C", now, ImmutableMap.of("price", 4)))).join();
+
+            assertEquals(1L, snapshot.version());
+            assertEquals(2, snapshot.size());
+            assertEquals(1, snapshot.get("A").get("price"));
+            assertNull(snapshot.get("C"));
+            assertEquals(Set.of("A", "B"), snapshot.getLatest(Set.of("A", "B", "C")).keySet());
+            Map<String, ImmutableMap<String, Object>> visited = new HashMap<>();
+            snapshot.forEach(visited::put);
+            assertEquals(Map.of("A", ImmutableMap.of("price", 1), "B", ImmutableMap.of("price", 2)), visited);
+        }
+        assertEquals(3, storage.getLatest(Set.of("A")).get("A").get("price"));
+    }
+
+    @Test
+    void testSnapshot_closedHandleThrows() {
+        PriceSnapshot snapshot = storage.snapshot();
+        snapshot.close();
+        snapshot.close();
+
+        assertThrows(IllegalStateException.class, () -> snapshot.get("A"));
+    }
+
+    @Test
+    void testSnapshot_closingReleasesCopyForWriter() {
+        Instant now = Instant.now();
+        PriceSnapshot snapshot = storage.snapshot();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        snapshot.close();
+
+        // The next commit writes the copy the handle had pinned.
+        assertEquals(2L, storage.updateRecords(
+                List.of(new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 2)))).join());
+        try (PriceSnapshot latest = storage.snapshot()) {
+            assertEquals(1, latest.size());
+            assertEquals(2, latest.get("A").get("price"));
+        }
+    }
+
+    @Test
+    void testSnapshot_openHandleDoesNotHoldBackCommits() throws Exception {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+
+        try (PriceSnapshot snapshot = storage.snapshot()) {
+            // The second commit needs the copy the handle pinned and must not wait for it.
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(1L + i, storage.updateRecords(List.of(new PriceData("A", now.plusSeconds(i),
+                        ImmutableMap.of("price", 1 + i)))).get(5, TimeUnit.SECONDS));
+            }
+
+            assertEquals(1, snapshot.get("A").get("price"));
+            assertEquals(4, storage.getLatest(Set.of("A")).get("A").get("price"));
+        }
+        assertEquals(5L, storage.updateRecords(List.of(new PriceData("B", now, ImmutableMap.of("price", 5))))
+                .get(5, TimeUnit.SECONDS));
+        assertEquals(Set.of("A", "B"), storage.getLatest(Set.of("A", "B")).keySet());
+    }
+
+    @Test
+    void testGetChangesSince_returnsAllInstrumentsAsFull() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        long version = storage.updateRecords(List.of(new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+
+        PriceChanges changes = storage.getChangesSince(1L);
+
+        assertTrue(changes.full());
+        assertEquals(version, changes.version());
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1), "B", ImmutableMap.of("price", 2)),
+                changes.prices());
+        assertFalse(storage.getChangesSince(version).full());
+        assertTrue(storage.getChangesSince(version).prices().isEmpty());
+    }
+
+    @Test
+    void testSubscribe_deliversInitialStateThenChangedIds() throws InterruptedException {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+
+        try (PriceSubscription ignored = storage.subscribe(Set.of("A", "B"), Runnable::run, updates::add)) {
+            PriceUpdate initial = updates.poll(5, TimeUnit.SECONDS);
+            assertNotNull(initial);
+            assertEquals(1L, initial.version());
+            assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1)), initial.prices());
+
+            // C is not subscribed and the older A record loses: only B is reported.
+            storage.updateRecords(List.of(
+                    new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", -1)),
+                    new PriceData("B", now, ImmutableMap.of("price", 2)),
+                    new PriceData("C", now, ImmutableMap.of("price", 3)))).join();
+            PriceUpdate delta = updates.poll(5, TimeUnit.SECONDS);
+            assertNotNull(delta);
+            assertEquals(2L, delta.version());
+            assertEquals(ImmutableMap.of("B", ImmutableMap.of("price", 2)), delta.prices());
+
+            storage.updateRecords(List.of(new PriceData("C", now.plusSeconds(1), ImmutableMap.of()))).join();
+            assertNull(updates.poll(100, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void testSubscribeAll_receivesEveryChangedInstrument() throws InterruptedException {
+        Instant now = Instant.now();
+        BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+        PriceSubscription subscription = storage.subscribeAll(Runnable::run, updates::add);
+
+        storage.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 2)),
+                new PriceData("B", now, ImmutableMap.of("price", 3)))).join();
+
+        PriceUpdate update = updates.poll(5, TimeUnit.SECONDS);
+        assertNotNull(update);
+        assertEquals(1L, update.version());
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 2), "B", ImmutableMap.of("price", 3)),
+                update.prices());
+        subscription.close();
+        storage.updateRecords(List.of(new PriceData("A", now.plusSeconds(2), ImmutableMap.of()))).join();
+        assertNull(updates.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
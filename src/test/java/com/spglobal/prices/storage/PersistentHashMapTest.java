@@ -0,0 +1,137 @@
+package com.spglobal.prices.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistentHashMapTest {
+
+    @Test
+    void testEmpty() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get("A"));
+        assertNull(map.get(null));
+    }
+
+    @Test
+    void testWith_doesNotModifyPreviousVersion() {
+        PersistentHashMap<String, Integer> v1 = PersistentHashMap.<String, Integer>empty().with("A", 1);
+        PersistentHashMap<String, Integer> v2 = v1.with("A", 2).with("B", 3);
+
+        assertEquals(1, v1.size());
+        assertEquals(1, v1.get("A"));
+        assertNull(v1.get("B"));
+
+        assertEquals(2, v2.size());
+        assertEquals(2, v2.get("A"));
+        assertEquals(3, v2.get("B"));
+    }
+
+    @Test
+    void testMerge_returningCurrentValueKeepsSameInstance() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().with("A", 5);
+
+        PersistentHashMap.Builder<String, Integer> builder = map.toBuilder();
+        builder.merge("A", 1, Math::max);
+
+        assertEquals(5, builder.get("A"));
+        assertEquals(1, builder.size());
+    }
+
+    @Test
+    void testBuilder_largeRandomUpdatesMatchHashMap() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+
+        for (int round = 0; round < 20; round++) {
+            PersistentHashMap<String, Integer> before = map;
+            Map<String, Integer> expectedBefore = new HashMap<>(expected);
+
+            PersistentHashMap.Builder<String, Integer> builder = map.toBuilder();
+            for (int i = 0; i < 2_000; i++) {
+                String key = "id" + random.nextInt(10_000);
+                int value = random.nextInt();
+                builder.merge(key, value, Math::max);
+                expected.merge(key, value, Math::max);
+            }
+            map = builder.build();
+
+            assertContentEquals(expectedBefore, before);
+        }
+        assertContentEquals(expected, map);
+    }
+
+    @Test
+    void testHashCollisions() {
+        CollidingKey a = new CollidingKey("a");
+        CollidingKey b = new CollidingKey("b");
+        CollidingKey c = new CollidingKey("c");
+
+        PersistentHashMap<Object, String> v1 = PersistentHashMap.<Object, String>empty().with(a, "1").with(b, "2");
+        PersistentHashMap<Object, String> v2 = v1.with(c, "3").with(a, "4").with("other", "5");
+
+        assertEquals(2, v1.size());
+        assertEquals("1", v1.get(a));
+        assertNull(v1.get(c));
+
+        assertEquals(4, v2.size());
+        assertEquals("4", v2.get(a));
+        assertEquals("2", v2.get(b));
+        assertEquals("3", v2.get(c));
+        assertEquals("5", v2.get("other"));
+    }
+
+    @Test
+    void testForEach_visitsEveryEntry() {
+        PersistentHashMap.Builder<String, Integer> builder = PersistentHashMap.<String, Integer>empty().toBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            builder.put("id" + i, i);
+        }
+        Map<String, Integer> visited = new HashMap<>();
+
+        builder.build().forEach(visited::put);
+
+        assertEquals(1_000, visited.size());
+        assertEquals(999, visited.get("id999"));
+    }
+
+    @Test
+    void testBuilder_cannotBeReusedAfterBuild() {
+        PersistentHashMap.Builder<String, Integer> builder = PersistentHashMap.<String, Integer>empty().toBuilder();
+        PersistentHashMap<String, Integer> map = builder.put("A", 1).build();
+
+        assertThrows(IllegalStateException.class, () -> builder.put("B", 2));
+        assertSame(1, map.get("A"));
+    }
+
+    @Test
+    void testNullKeyOrValueThrows() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+
+        assertThrows(NullPointerException.class, () -> map.with(null, 1));
+        assertThrows(NullPointerException.class, () -> map.with("A", null));
+    }
+
+    private static <K, V> void assertContentEquals(Map<K, V> expected, PersistentHashMap<K, V> actual) {
+        assertEquals(expected.size(), actual.size());
+        expected.forEach((key, value) -> assertEquals(value, actual.get(key), "Mismatch for " + key));
+    }
+
+    private record CollidingKey(String name) {
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.spglobal.prices.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistentIntMapTest {
+
+    @Test
+    void testEmpty() {
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+        assertNull(map.get(1_000_000));
+        assertNull(map.get(-1));
+    }
+
+    @Test
+    void testBuilder_doesNotModifyPreviousVersion() {
+        PersistentIntMap<String> v1 = PersistentIntMap.<String>empty().toBuilder().put(1, "a").build();
+        PersistentIntMap<String> v2 = v1.toBuilder().put(1, "b").put(40_000, "c").build();
+
+        assertEquals("a", v1.get(1));
+        assertNull(v1.get(40_000));
+        assertEquals(1, v1.size());
+        assertEquals("b", v2.get(1));
+        assertEquals("c", v2.get(40_000));
+        assertEquals(2, v2.size());
+    }
+
+    @Test
+    void testMerge_returningCurrentValueKeepsSameInstance() {
+        PersistentIntMap<Integer> map = PersistentIntMap.<Integer>empty().toBuilder().put(3, 10).build();
+
+        PersistentIntMap<Integer> merged = map.toBuilder().merge(3, 5, Math::max).build();
+
+        assertSame(map.get(3), merged.get(3));
+        assertEquals(1, merged.size());
+    }
+
+    @Test
+    void testBuilder_largeRandomUpdatesMatchHashMap() {
+        Random random = new Random(11);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int round = 0; round < 5; round++) {
+            PersistentIntMap.Builder<Integer> builder = map.toBuilder();
+            for (int i = 0; i < 20_000; i++) {
+                int key = random.nextInt(100_000);
+                int value = random.nextInt();
+                builder.merge(key, value, Math::max);
+                expected.merge(key, value, Math::max);
+            }
+            map = builder.build();
+        }
+
+        assertContentEquals(expected, map);
+    }
+
+    @Test
+    void testForEach_visitsKeysInAscendingOrder() {
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().toBuilder()
+                .put(70_000, "c").put(5, "a").put(33, "b").build();
+        List<Integer> keys = new ArrayList<>();
+
+        map.forEach((value, key) -> keys.add(key));
+
+        assertEquals(List.of(5, 33, 70_000), keys);
+    }
+
+    @Test
+    void testBuilder_cannotBeReusedAfterBuild() {
+        PersistentIntMap.Builder<String> builder = PersistentIntMap.<String>empty().toBuilder();
+        builder.build();
+
+        assertThrows(IllegalStateException.class, () -> builder.put(1, "a"));
+    }
+
+    @Test
+    void testInvalidKeyOrValueThrows() {
+        PersistentIntMap.Builder<String> builder = PersistentIntMap.<String>empty().toBuilder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.put(-1, "a"));
+        assertThrows(NullPointerException.class, () -> builder.put(1, null));
+    }
+
+    @Test
+    void testMergeAll_matchesSequentialMerge() {
+        Random random = new Random(7);
+        PersistentIntMap.Builder<Integer> seed = PersistentIntMap.<Integer>empty().toBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            seed.put(random.nextInt(2_000), random.nextInt());
+        }
+        PersistentIntMap<Integer> base = seed.build();
+
+        List<int[]> keySlices = new ArrayList<>();
+        List<List<Integer>> valueSlices = new ArrayList<>();
+        for (int s = 0; s < 8; s++) {
+            int[] keys = new int[3_000];
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextInt(200_000);
+                values.add(random.nextInt());
+            }
+            keySlices.add(keys);
+            valueSlices.add(values);
+        }
+
+        PersistentIntMap.Builder<Integer> sequential = base.toBuilder();
+        for (int s = 0; s < keySlices.size(); s++) {
+            for (int i = 0; i < keySlices.get(s).length; i++) {
+                sequential.merge(keySlices.get(s)[i], valueSlices.get(s).get(i), Math::max);
+            }
+        }
+        Map<Integer, Integer> expected = new HashMap<>();
+        sequential.build().forEach((value, key) -> expected.put(key, value));
+        Map<Integer, Integer> baseContent = new HashMap<>();
+        base.forEach((value, key) -> baseContent.put(key, value));
+
+        PersistentIntMap<Integer> parallel = base.mergeAll(keySlices, valueSlices, Math::max, new ForkJoinPool(4));
+
+        assertContentEquals(expected, parallel);
+        assertContentEquals(baseContent, base);
+    }
+
+    @Test
+    void testMergeAll_smallKeysOnSinglePartition() {
+        PersistentIntMap<String> merged = PersistentIntMap.<String>empty()
+                .mergeAll(List.of(new int[]{0, 1}, new int[]{1}), List.of(List.of("a", "b"), List.of("c")),
+                        null, ForkJoinPool.commonPool());
+
+        assertEquals(2, merged.size());
+        assertEquals("a", merged.get(0));
+        assertEquals("c", merged.get(1));
+    }
+
+    private static <V> void assertContentEquals(Map<Integer, V> expected, PersistentIntMap<V> actual) {
+        assertEquals(expected.size(), actual.size());
+        Map<Integer, V> content = new HashMap<>();
+        actual.forEach((value, key) -> content.put(key, value));
+        assertEquals(expected, content);
+    }
+}
@@ -82,6 +82,42 @@ class PriceBatchBufferStorageConcurrencyTest {
         assertThrows(NoSuchBatchException.class, () -> buffer.completeBatch(batch));
     }
 
+    @Test
+    void concurrentChunkUpload_latestPerInstrument_shouldKeepNewestPerId() throws Exception {
+        PriceBatchBufferStorage reducing = new PriceBatchBufferStorageImpl(StagingMode.LATEST_PER_INSTRUMENT);
+        String batch = reducing.startBatch();
+        Instant base = Instant.now();
+
+        int threads = 30;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            CountDownLatch latch = new CountDownLatch(1);
+
+            for (int i = 0; i < threads; i++) {
+                int index = i;
+                executor.submit(() -> {
+                    latch.await();
+                    List<PriceData> chunk = new ArrayList<>();
+                    for (int id = 0; id < 10; id++) {
+                        chunk.add(new PriceData("id" + id, base.plusSeconds(index), ImmutableMap.of("x", index)));
+                    }
+                    reducing.addChunk(batch, chunk);
+                    return null;
+                });
+            }
+
+            latch.countDown();
+            executor.shutdown();
+            boolean finished = executor.awaitTermination(5, TimeUnit.SECONDS);
+            assertTrue(finished, "Executor did not finish in time");
+        }
+        List<PriceData> result = reducing.completeBatch(batch);
+
+        assertEquals(10, result.size());
+        for (PriceData price : result) {
+            assertEquals(threads - 1, price.payload().get("x"), "Newest record must win for " + price.id());
+        }
+    }
+
     private List<Callable<Boolean>> getCallables(String batch) {
         List<Callable<Boolean>> tasks = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
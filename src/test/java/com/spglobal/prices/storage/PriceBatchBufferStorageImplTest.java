@@ -1,17 +1,27 @@
 package com.spglobal.prices.storage;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.exception.BatchClosedException;
+import com.spglobal.prices.exception.CommitRejectedException;
 import com.spglobal.prices.exception.NoSuchBatchException;
+import com.spglobal.prices.exception.StagingBudgetExceededException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -39,12 +49,51 @@ class PriceBatchBufferStorageImplTest {
 
         storage.addChunk(batchId, List.of(price1, price2));
 
-        ImmutableList<PriceData> result = storage.completeBatch(batchId);
+        List<PriceData> result = storage.completeBatch(batchId);
         assertEquals(2, result.size());
         assertTrue(result.contains(price1));
         assertTrue(result.contains(price2));
     }
 
+    @Test
+    void testCompleteBatch_rejectedCommitReopensBatch() {
+        String batchId = storage.startBatch();
+        PriceData price1 = new PriceData("A", Instant.now(), ImmutableMap.of("price", 100));
+        PriceData price2 = new PriceData("B", Instant.now(), ImmutableMap.of("price", 200));
+        storage.addChunk(batchId, List.of(price1));
+        List<List<PriceData>> offered = new ArrayList<>();
+
+        CompletableFuture<Long> rejected = storage.completeBatch(batchId, records -> {
+            offered.add(records);
+            return CompletableFuture.failedFuture(new CommitRejectedException("full"));
+        });
+
+        assertThrows(CompletionException.class, rejected::join);
+        assertEquals(List.of(List.of(price1)), offered);
+        assertEquals(1L, storage.stagedRecords());
+        storage.addChunk(batchId, List.of(price2));
+        assertEquals(7L, storage.completeBatch(batchId, records -> {
+            offered.add(records);
+            return CompletableFuture.completedFuture(7L);
+        }).join());
+        assertEquals(List.of(price1, price2), offered.get(1));
+        assertEquals(0L, storage.stagedRecords());
+        assertThrows(NoSuchBatchException.class, () -> storage.completeBatch(batchId));
+    }
+
+    @Test
+    void testCompleteBatch_failingCommitDiscardsBatch() {
+        BatchHandle batch = storage.openBatch();
+        storage.addChunkTo(batch, List.of(new PriceData("A", Instant.now(), ImmutableMap.of())));
+
+        assertThrows(IllegalStateException.class, () -> storage.completeBatchOf(batch, records -> {
+            throw new IllegalStateException("storage failed");
+        }));
+
+        assertEquals(BatchState.CANCELLED, batch.state());
+        assertEquals(0L, storage.stagedRecords());
+    }
+
     @Test
     void testCompleteBatchThrowsIfNotExist() {
         String batchId = UUID.randomUUID().toString();
@@ -91,7 +140,7 @@ class PriceBatchBufferStorageImplTest {
         storage.addChunk(batchId, null);
 
         // Still able to complete batch (should be empty)
-        ImmutableList<PriceData> result = storage.completeBatch(batchId);
+        List<PriceData> result = storage.completeBatch(batchId);
         assertTrue(result.isEmpty());
     }
 
@@ -111,4 +160,230 @@ class PriceBatchBufferStorageImplTest {
     void testCancelBatch_throwsOnNullBatchId() {
         assertThrows(NullPointerException.class, () -> storage.cancelBatch(null));
     }
+
+    @Test
+    void testLatestPerInstrumentMode_keepsNewestRecordPerId() {
+        PriceBatchBufferStorageImpl reducing = new PriceBatchBufferStorageImpl(StagingMode.LATEST_PER_INSTRUMENT);
+        Instant now = Instant.now();
+        PriceData oldA = new PriceData("A", now.minusSeconds(10), ImmutableMap.of("price", 1));
+        PriceData newA = new PriceData("A", now, ImmutableMap.of("price", 2));
+        PriceData b = new PriceData("B", now, ImmutableMap.of("price", 3));
+
+        String batchId = reducing.startBatch();
+        reducing.addChunk(batchId, List.of(newA, b));
+        reducing.addChunk(batchId, List.of(oldA));
+
+        List<PriceData> result = reducing.completeBatch(batchId);
+        assertEquals(2, result.size());
+        assertTrue(result.contains(newA));
+        assertTrue(result.contains(b));
+    }
+
+    @Test
+    void testLatestPerInstrumentMode_notAbleToAddAfterCompletion() {
+        PriceBatchBufferStorageImpl reducing = new PriceBatchBufferStorageImpl(StagingMode.LATEST_PER_INSTRUMENT);
+        String batchId = reducing.startBatch();
+        reducing.completeBatch(batchId);
+
+        List<PriceData> prices = List.of(new PriceData("A", Instant.now(), ImmutableMap.of("price", 100)));
+        assertThrows(NoSuchBatchException.class, () -> reducing.addChunk(batchId, prices));
+    }
+
+    @Test
+    void testConstructor_nullStagingModeThrows() {
+        assertThrows(NullPointerException.class, () -> new PriceBatchBufferStorageImpl((StagingMode) null));
+        assertThrows(NullPointerException.class,
+                () -> new PriceBatchBufferStorageImpl((PriceBatchBufferStorageOptions) null));
+    }
+
+    @Test
+    void testAddChunk_rejectsChunkOverGlobalBudget() {
+        PriceBatchBufferStorageImpl bounded = new PriceBatchBufferStorageImpl(
+                PriceBatchBufferStorageOptions.builder().maxStagedRecords(3).build());
+        String first = bounded.startBatch();
+        String second = bounded.startBatch();
+        bounded.addChunk(first, prices(2));
+
+        assertThrows(StagingBudgetExceededException.class, () -> bounded.addChunk(second, prices(2)));
+        bounded.addChunk(second, prices(1));
+        assertEquals(3L, bounded.stagedRecords());
+
+        // Completing a batch returns its share of the budget.
+        assertEquals(2, bounded.completeBatch(first).size());
+        bounded.addChunk(second, prices(2));
+        assertEquals(3, bounded.completeBatch(second).size());
+        assertEquals(0L, bounded.stagedRecords());
+    }
+
+    @Test
+    void testAddChunk_perBatchLimitLeavesBudgetForOtherBatches() {
+        PriceBatchBufferStorageImpl bounded = new PriceBatchBufferStorageImpl(
+                PriceBatchBufferStorageOptions.builder().maxStagedRecords(10).maxBatchRecords(4).build());
+        String runaway = bounded.startBatch();
+        String other = bounded.startBatch();
+        bounded.addChunk(runaway, prices(4));
+
+        assertThrows(StagingBudgetExceededException.class, () -> bounded.addChunk(runaway, prices(1)));
+        bounded.addChunk(other, prices(4));
+        assertEquals(8L, bounded.stagedRecords());
+
+        bounded.cancelBatch(runaway);
+        assertEquals(4L, bounded.stagedRecords());
+        assertEquals(4, bounded.completeBatch(other).size());
+    }
+
+    @Test
+    void testReapExpired_discardsIdleBatches() throws InterruptedException {
+        try (PriceBatchBufferStorageImpl expiring = new PriceBatchBufferStorageImpl(
+                PriceBatchBufferStorageOptions.builder().batchTtl(Duration.ofMillis(50)).build())) {
+            String abandoned = expiring.startBatch();
+            expiring.addChunk(abandoned, prices(3));
+
+            Thread.sleep(100);
+            String active = expiring.startBatch();
+            expiring.reapExpired();
+
+            assertThrows(NoSuchBatchException.class, () -> expiring.completeBatch(abandoned));
+            assertThrows(NoSuchBatchException.class, () -> expiring.addChunk(abandoned, prices(1)));
+            assertEquals(0L, expiring.stagedRecords());
+            expiring.addChunk(active, prices(1));
+            assertEquals(1, expiring.completeBatch(active).size());
+        }
+    }
+
+    @Test
+    void testReaper_runsInBackground() throws InterruptedException {
+        try (PriceBatchBufferStorageImpl expiring = new PriceBatchBufferStorageImpl(
+                PriceBatchBufferStorageOptions.builder().batchTtl(Duration.ofMillis(20)).build())) {
+            String abandoned = expiring.startBatch();
+            expiring.addChunk(abandoned, prices(2));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (expiring.stagedRecords() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(0L, expiring.stagedRecords());
+            assertThrows(NoSuchBatchException.class, () -> expiring.completeBatch(abandoned));
+        }
+    }
+
+    @Test
+    void testClose_stopsReaper() throws InterruptedException {
+        PriceBatchBufferStorageImpl expiring = new PriceBatchBufferStorageImpl(
+                PriceBatchBufferStorageOptions.builder().batchTtl(Duration.ofMillis(50)).build());
+        String batchId = expiring.startBatch();
+        expiring.addChunk(batchId, prices(2));
+
+        expiring.close();
+        Thread.sleep(150);
+
+        assertEquals(2L, expiring.stagedRecords());
+        assertEquals(2, expiring.completeBatch(batchId).size());
+    }
+
+    @Test
+    void testOpenBatch_handleMovesThroughStates() {
+        BatchHandle batch = storage.openBatch();
+        assertEquals(BatchState.OPEN, batch.state());
+
+        storage.addChunkTo(batch, prices(2));
+        assertEquals(2, storage.completeBatchOf(batch).size());
+        assertEquals(BatchState.COMPLETED, batch.state());
+
+        BatchHandle cancelled = storage.openBatch();
+        storage.cancelBatchOf(cancelled);
+        assertEquals(BatchState.CANCELLED, cancelled.state());
+    }
+
+    @Test
+    void testOpenBatch_idsAreUniqueAndWorkWithIdMethods() {
+        BatchHandle first = storage.openBatch();
+        BatchHandle second = storage.openBatch();
+        assertNotEquals(first.id(), second.id());
+
+        storage.addChunk(first.id(), prices(1));
+        storage.addChunkTo(first, prices(2));
+        assertEquals(3, storage.completeBatch(first.id()).size());
+        assertEquals(BatchState.COMPLETED, first.state());
+    }
+
+    @Test
+    void testHandle_rejectsCallsAfterBatchIsClosed() {
+        BatchHandle completed = storage.openBatch();
+        storage.completeBatchOf(completed);
+
+        assertThrows(BatchClosedException.class, () -> storage.addChunkTo(completed, prices(1)));
+        assertThrows(BatchClosedException.class, () -> storage.addChunkTo(completed, List.of()));
+        assertThrows(BatchClosedException.class, () -> storage.completeBatchOf(completed));
+        assertThrows(BatchClosedException.class, () -> storage.cancelBatchOf(completed));
+        assertEquals(BatchState.COMPLETED, completed.state());
+
+        BatchHandle cancelled = storage.openBatch();
+        storage.cancelBatchOf(cancelled);
+        assertThrows(BatchClosedException.class, () -> storage.completeBatchOf(cancelled));
+        assertEquals(BatchState.CANCELLED, cancelled.state());
+    }
+
+    @Test
+    void testHandle_fromAnotherStorageIsRejected() {
+        BatchHandle foreign = new PriceBatchBufferStorageImpl().openBatch();
+
+        assertThrows(NoSuchBatchException.class, () -> storage.addChunkTo(foreign, prices(1)));
+        assertThrows(NoSuchBatchException.class, () -> storage.completeBatchOf(foreign));
+        assertEquals(BatchState.OPEN, foreign.state());
+    }
+
+    @Test
+    void testHandle_concurrentCompleteAndCancelHaveOneWinner() throws InterruptedException {
+        for (int round = 0; round < 100; round++) {
+            BatchHandle batch = storage.openBatch();
+            storage.addChunkTo(batch, prices(1));
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger wins = new AtomicInteger();
+            Thread completer = new Thread(() -> {
+                await(start);
+                try {
+                    storage.completeBatchOf(batch);
+                    wins.incrementAndGet();
+                } catch (BatchClosedException e) {
+                    // lost the race
+                }
+            });
+            Thread canceller = new Thread(() -> {
+                await(start);
+                try {
+                    storage.cancelBatchOf(batch);
+                    wins.incrementAndGet();
+                } catch (BatchClosedException e) {
+                    // lost the race
+                }
+            });
+            completer.start();
+            canceller.start();
+            start.countDown();
+            completer.join();
+            canceller.join();
+
+            assertEquals(1, wins.get());
+            assertTrue(batch.state() == BatchState.COMPLETED || batch.state() == BatchState.CANCELLED);
+        }
+        assertEquals(0L, storage.stagedRecords());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<PriceData> prices(int count) {
+        List<PriceData> prices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            prices.add(new PriceData("id" + i, Instant.now(), ImmutableMap.of("price", i)));
+        }
+        return prices;
+    }
 }
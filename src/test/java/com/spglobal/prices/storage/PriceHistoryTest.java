@@ -0,0 +1,56 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PriceHistoryTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-02T16:00:00Z");
+
+    private static PriceHistory entry(long offsetMillis, int price, int depth) {
+        Instant asOf = T0.plusMillis(offsetMillis);
+        return PriceHistory.of(new CompactPrice(asOf.getEpochSecond(), asOf.getNano(),
+                ImmutableMap.of("price", price)), depth);
+    }
+
+    @Test
+    void testPayloadAt_returnsNewestRecordNotAfterInstant() {
+        PriceHistory history = entry(0, 0, 4);
+        history = PriceHistory.add(history, entry(2_000, 2, 4));
+        history = PriceHistory.add(history, entry(1_000, 1, 4));
+
+        assertEquals(3, history.size());
+        assertNull(history.payloadAt(T0.minusNanos(1)));
+        assertEquals(0, history.payloadAt(T0).get("price"));
+        assertEquals(0, history.payloadAt(T0.plusMillis(999)).get("price"));
+        assertEquals(1, history.payloadAt(T0.plusMillis(1_000)).get("price"));
+        assertEquals(2, history.payloadAt(T0.plusSeconds(60)).get("price"));
+    }
+
+    @Test
+    void testAdd_fullHistoryDropsOldestRecord() {
+        PriceHistory history = entry(0, 0, 2);
+        history = PriceHistory.add(history, entry(1_000, 1, 2));
+        history = PriceHistory.add(history, entry(3_000, 3, 2));
+        history = PriceHistory.add(history, entry(2_000, 2, 2));
+
+        assertEquals(2, history.size());
+        assertNull(history.payloadAt(T0.plusMillis(1_999)));
+        assertEquals(2, history.payloadAt(T0.plusMillis(2_500)).get("price"));
+        assertEquals(3, history.payloadAt(T0.plusMillis(3_000)).get("price"));
+    }
+
+    @Test
+    void testAdd_ignoresRecordsTooOldOrWithSameAsOf() {
+        PriceHistory history = PriceHistory.add(entry(1_000, 1, 2), entry(2_000, 2, 2));
+
+        assertSame(history, PriceHistory.add(history, entry(0, 0, 2)));
+        assertSame(history, PriceHistory.add(history, entry(2_000, -2, 2)));
+    }
+}
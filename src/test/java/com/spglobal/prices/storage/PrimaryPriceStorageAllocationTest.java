@@ -0,0 +1,71 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures heap allocation of the sink-based {@code getLatest} with the per-thread allocation
+ * counter of the JVM.
+ * <p>
+ * The result depends on escape analysis of the JIT, so this is a benchmark rather than a unit
+ * test: it is left out of {@code test} and run by the {@code benchmark} task.
+ */
+@Tag("benchmark")
+class PrimaryPriceStorageAllocationTest {
+
+    private static final int INSTRUMENTS = 1_000;
+    private static final int WARMUP_ROUNDS = 20_000;
+    private static final int MEASURED_ROUNDS = 20_000;
+
+    @Test
+    void testGetLatestWithSink_doesNotAllocateInSteadyState() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        PrimaryPriceStorageImpl storage = new PrimaryPriceStorageImpl();
+        List<PriceData> batch = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < INSTRUMENTS; i++) {
+            batch.add(new PriceData("id" + i, Instant.now(), ImmutableMap.of("price", i, "size", 10L * i)));
+            ids.add(i % 10 == 0 ? "missing" + i : "id" + i);
+        }
+        storage.updateRecords(batch).join();
+        CountingSink sink = new CountingSink();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            storage.getLatest(ids, sink);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int found = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            found += storage.getLatest(ids, sink);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        long lookups = (long) MEASURED_ROUNDS * INSTRUMENTS;
+        assertEquals(MEASURED_ROUNDS * (INSTRUMENTS - INSTRUMENTS / 10), found);
+        // Allows for the counter itself and stray JIT bookkeeping, far below one object per lookup.
+        assertTrue(allocated < lookups / 100, "allocated " + allocated + " bytes for " + lookups + " lookups");
+    }
+
+    private static final class CountingSink implements PriceSink {
+        private long payloads;
+
+        @Override
+        public void accept(String id, Map<String, Object> payload) {
+            payloads += payload.size();
+        }
+    }
+}
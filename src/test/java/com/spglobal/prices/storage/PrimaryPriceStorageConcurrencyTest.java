@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -17,8 +18,6 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -53,23 +52,22 @@ class PrimaryPriceStorageConcurrencyTest {
                     ImmutableMap.of("v", 2)
             );
 
-            List<Callable<Void>> tasks = new ArrayList<>(threads);
+            List<Callable<CompletableFuture<Long>>> tasks = new ArrayList<>(threads);
 
             for (int i = 0; i < threads; i++) {
                 tasks.add(() -> {
                     barrier.await();
                     if (ThreadLocalRandom.current().nextBoolean()) {
-                        storage.updateRecords(List.of(older));
+                        return storage.updateRecords(List.of(older));
                     } else {
-                        storage.updateRecords(List.of(newer));
+                        return storage.updateRecords(List.of(newer));
                     }
-                    return null;
                 });
             }
 
-            List<Future<Void>> futures = executor.invokeAll(tasks);
-            for (Future<Void> future : futures) {
-                assertDoesNotThrow(() -> future.get());
+            List<Future<CompletableFuture<Long>>> futures = executor.invokeAll(tasks);
+            for (Future<CompletableFuture<Long>> future : futures) {
+                assertDoesNotThrow(() -> future.get().join());
             }
 
             executor.shutdown();
@@ -78,9 +76,6 @@ class PrimaryPriceStorageConcurrencyTest {
             assertTrue(finished, "Executor did not terminate normally — possible deadlock");
         }
 
-        await().atMost(2, SECONDS).until(() ->
-                !storage.getLatest(Set.of("A")).isEmpty()
-        );
         ImmutableMap<String, ImmutableMap<String, Object>> result =
                 storage.getLatest(Set.of("A"));
 
@@ -1,19 +1,36 @@
 package com.spglobal.prices.storage;
 
 import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceChanges;
 import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.dto.PriceUpdate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PrimaryPriceStorageImplTest {
@@ -34,11 +51,7 @@ class PrimaryPriceStorageImplTest {
     @Test
     void testUpdateRecords_SingleRecord() {
         PriceData price = new PriceData("A", Instant.now(), ImmutableMap.of("price", 100));
-        storage.updateRecords(List.of(price));
-
-        await().atMost(2, SECONDS).until(() ->
-                !storage.getLatest(Set.of("A")).isEmpty()
-        );
+        storage.updateRecords(List.of(price)).join();
 
         ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A"));
         assertEquals(1, result.size());
@@ -54,11 +67,7 @@ class PrimaryPriceStorageImplTest {
         PriceData newPrice = new PriceData("A", now, ImmutableMap.of("price", 100));
 
         storage.updateRecords(List.of(oldPrice));
-        storage.updateRecords(List.of(newPrice));
-
-        await().atMost(2, SECONDS).until(() ->
-                !storage.getLatest(Set.of("A")).isEmpty()
-        );
+        storage.updateRecords(List.of(newPrice)).join();
 
         ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A"));
         assertEquals(1, result.size());
@@ -75,11 +84,7 @@ class PrimaryPriceStorageImplTest {
         PriceData price = new PriceData("B", now, ImmutableMap.of("price", 1));
 
         storage.updateRecords(List.of(newPrice));
-        storage.updateRecords(List.of(price, oldPrice));
-
-        await().atMost(2, SECONDS).until(() ->
-                !storage.getLatest(Set.of("B")).isEmpty()
-        );
+        storage.updateRecords(List.of(price, oldPrice)).join();
 
         ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A"));
         assertEquals(1, result.size());
@@ -90,8 +95,8 @@ class PrimaryPriceStorageImplTest {
 
     @Test
     void testUpdateRecords_ignoresNullOrEmpty() {
-        storage.updateRecords(null);
-        storage.updateRecords(List.of());
+        assertEquals(0L, storage.updateRecords(null).join());
+        assertEquals(0L, storage.updateRecords(List.of()).join());
 
         ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A"));
         assertTrue(result.isEmpty());
@@ -100,11 +105,7 @@ class PrimaryPriceStorageImplTest {
     @Test
     void testGetLatest_ignoresUnknownIds() {
         PriceData price = new PriceData("A", Instant.now(), ImmutableMap.of("price", 100));
-        storage.updateRecords(List.of(price));
-
-        await().atMost(2, SECONDS).until(() ->
-                !storage.getLatest(Set.of("A")).isEmpty()
-        );
+        storage.updateRecords(List.of(price)).join();
 
         ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("B"));
         assertTrue(result.isEmpty());
@@ -114,11 +115,7 @@ class PrimaryPriceStorageImplTest {
     @Test
     void testGetLatest_filtersNullIds() {
         PriceData price = new PriceData("A", Instant.now(), ImmutableMap.of("price", 100));
-        storage.updateRecords(List.of(price));
-
-        await().atMost(2, SECONDS).until(() ->
-                !storage.getLatest(Set.of("A")).isEmpty()
-        );
+        storage.updateRecords(List.of(price)).join();
 
         Set<String> set = new HashSet<>() {
         };
@@ -130,4 +127,607 @@ class PrimaryPriceStorageImplTest {
         assertNotNull(actual);
         assertEquals(100, actual.get("price"));
     }
+
+    @Test
+    void testUpdateRecords_returnsIncreasingVersions() {
+        assertEquals(0L, storage.getVersion());
+
+        long first = storage.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of()))).join();
+        long second = storage.updateRecords(List.of(new PriceData("B", Instant.now(), ImmutableMap.of()))).join();
+
+        assertTrue(first > 0);
+        assertTrue(second > first);
+        assertEquals(second, storage.getVersion());
+    }
+
+    @Test
+    void testAwaitVersion_alreadyPublished_completesImmediately() {
+        long version = storage.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of()))).join();
+
+        CompletableFuture<Long> future = storage.awaitVersion(version);
+
+        assertTrue(future.isDone());
+        assertEquals(version, future.join());
+    }
+
+    @Test
+    void testAwaitVersion_completesWhenVersionIsPublished() {
+        CompletableFuture<Long> future = storage.awaitVersion(1L);
+        assertFalse(future.isDone());
+
+        storage.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of("price", 1))));
+
+        assertEquals(1L, future.join());
+        assertEquals(1, storage.getLatest(Set.of("A")).size());
+    }
+
+    @Test
+    void testUpdateRecords_parallelMerge_keepsLatestByAsOf() {
+        PrimaryPriceStorageImpl parallel = new PrimaryPriceStorageImpl(
+                PrimaryPriceStorageOptions.builder().parallelMergeThreshold(1).build());
+        Instant now = Instant.now();
+        List<PriceData> batch = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            batch.add(new PriceData("id" + (i % 1_000), now.plusSeconds(i), ImmutableMap.of("price", i)));
+        }
+
+        parallel.updateRecords(List.of(new PriceData("id0", now.plusSeconds(1_000_000), ImmutableMap.of("price", -1))));
+        parallel.updateRecords(batch).join();
+
+        ImmutableMap<String, ImmutableMap<String, Object>> result = parallel.getLatest(Set.of("id0", "id1", "id999"));
+        assertEquals(-1, result.get("id0").get("price"));
+        assertEquals(49_001, result.get("id1").get("price"));
+        assertEquals(49_999, result.get("id999").get("price"));
+    }
+
+    @Test
+    void testGetLatest_matchesIdsByValue() {
+        storage.updateRecords(List.of(new PriceData(new String("A"), Instant.now(), ImmutableMap.of("price", 1))));
+        storage.updateRecords(List.of(new PriceData(new String("A"), Instant.now().plusSeconds(1),
+                ImmutableMap.of("price", 2)))).join();
+
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of(new String("A"), "B"));
+
+        assertEquals(1, result.size());
+        assertEquals(2, result.get("A").get("price"));
+    }
+
+    @Test
+    void testCheckpoint_restoresSnapshotOnRestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("prices.snapshot");
+        PrimaryPriceStorageOptions options = PrimaryPriceStorageOptions.builder().checkpointPath(file).build();
+        Instant now = Instant.now();
+        PrimaryPriceStorageImpl first = new PrimaryPriceStorageImpl(options);
+        first.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+        assertEquals(1L, first.checkpoint());
+
+        first.close();
+        PrimaryPriceStorageImpl restarted = new PrimaryPriceStorageImpl(options);
+
+        assertEquals(1L, restarted.getVersion());
+        assertEquals(1, restarted.getLatest(Set.of("A")).get("A").get("price"));
+
+        // An older record must not replace the checkpointed one; a newer one does.
+        long version = restarted.updateRecords(List.of(
+                new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", -1)),
+                new PriceData("B", now.plusSeconds(1), ImmutableMap.of("price", 3)))).join();
+        assertEquals(2L, version);
+        ImmutableMap<String, ImmutableMap<String, Object>> result = restarted.getLatest(Set.of("A", "B"));
+        assertEquals(1, result.get("A").get("price"));
+        assertEquals(3, result.get("B").get("price"));
+
+        restarted.checkpoint();
+        restarted.close();
+        PrimaryPriceStorageImpl again = new PrimaryPriceStorageImpl(options);
+        assertEquals(result, again.getLatest(Set.of("A", "B", "C")));
+    }
+
+    @Test
+    void testWal_replaysCommittedBatchesAfterRestart(@TempDir Path dir) throws IOException {
+        PrimaryPriceStorageOptions options = PrimaryPriceStorageOptions.builder()
+                .checkpointPath(dir.resolve("prices.snapshot"))
+                .walDirectory(dir.resolve("wal"))
+                .build();
+        Instant now = Instant.now();
+        PrimaryPriceStorageImpl first = new PrimaryPriceStorageImpl(options);
+        first.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        first.checkpoint();
+        first.updateRecords(List.of(new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 2)))).join();
+        first.updateRecords(List.of(new PriceData("B", now, ImmutableMap.of("price", 3)))).join();
+
+        // No checkpoint after the last two batches: they come back from the log.
+        first.close();
+        PrimaryPriceStorageImpl restarted = new PrimaryPriceStorageImpl(options);
+
+        assertEquals(3L, restarted.getVersion());
+        ImmutableMap<String, ImmutableMap<String, Object>> result = restarted.getLatest(Set.of("A", "B"));
+        assertEquals(2, result.get("A").get("price"));
+        assertEquals(3, result.get("B").get("price"));
+        assertEquals(4L, restarted.updateRecords(List.of(new PriceData("C", now, ImmutableMap.of()))).join());
+    }
+
+    @Test
+    void testClose_stopsCheckpointsAndLog(@TempDir Path dir) {
+        PrimaryPriceStorageImpl closing = new PrimaryPriceStorageImpl(PrimaryPriceStorageOptions.builder()
+                .checkpointPath(dir.resolve("prices.snapshot"))
+                .walDirectory(dir.resolve("wal"))
+                .build());
+        closing.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of("price", 1)))).join();
+
+        closing.close();
+        closing.close();
+
+        assertThrows(IllegalStateException.class, closing::checkpoint);
+        CompletableFuture<Long> afterClose = closing.updateRecords(
+                List.of(new PriceData("B", Instant.now(), ImmutableMap.of("price", 2))));
+        assertThrows(CompletionException.class, afterClose::join);
+    }
+
+    @Test
+    void testWal_rejectsUnsupportedPayloadBatch(@TempDir Path dir) {
+        PrimaryPriceStorageImpl logged = new PrimaryPriceStorageImpl(
+                PrimaryPriceStorageOptions.builder().walDirectory(dir).build());
+
+        CompletableFuture<Long> rejected = logged.updateRecords(
+                List.of(new PriceData("A", Instant.now(), ImmutableMap.of("price", new Object()))));
+
+        assertThrows(CompletionException.class, rejected::join);
+        assertTrue(logged.getLatest(Set.of("A")).isEmpty());
+    }
+
+    @Test
+    void testCheckpoint_rejectsUnsupportedPayloadBatch(@TempDir Path dir) throws IOException {
+        PrimaryPriceStorageOptions options = PrimaryPriceStorageOptions.builder()
+                .checkpointPath(dir.resolve("prices.snapshot"))
+                .build();
+        Instant now = Instant.now();
+        PrimaryPriceStorageImpl first = new PrimaryPriceStorageImpl(options);
+        first.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        first.checkpoint();
+
+        CompletableFuture<Long> rejected = first.updateRecords(
+                List.of(new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", new Object()))));
+
+        assertThrows(CompletionException.class, rejected::join);
+        first.checkpoint();
+        first.close();
+        PrimaryPriceStorageImpl restarted = new PrimaryPriceStorageImpl(options);
+        assertEquals(1, restarted.getLatest(Set.of("A")).get("A").get("price"));
+        restarted.close();
+    }
+
+    @Test
+    void testBoundedCommitQueue_commitsAndReportsStats() {
+        PrimaryPriceStorageImpl bounded = new PrimaryPriceStorageImpl(PrimaryPriceStorageOptions.builder()
+                .maxQueuedRecords(2)
+                .backpressurePolicy(BackpressurePolicy.REJECT)
+                .build());
+        Instant now = Instant.now();
+
+        assertEquals(1L, bounded.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 2)),
+                new PriceData("C", now, ImmutableMap.of("price", 3)))).join());
+
+        CommitQueueStats stats = bounded.commitQueueStats();
+        assertEquals(0, stats.queuedBatches());
+        assertEquals(0, stats.queuedRecords());
+        assertTrue(stats.lastCommitLag().toNanos() > 0);
+        assertEquals(3, bounded.getLatest(Set.of("A", "B", "C")).size());
+    }
+
+    @Test
+    void testUrgentUpdate_keepsLastValueRule() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 2)))).join();
+
+        storage.updateRecords(List.of(new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 3))), CommitPriority.URGENT).join();
+
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A", "B"));
+        assertEquals(2, result.get("A").get("price"));
+        assertEquals(3, result.get("B").get("price"));
+    }
+
+    @Test
+    void testPublish_appliesTicksWithLastValueRule() {
+        Instant now = Instant.now();
+        storage.publish(new PriceData("A", now, ImmutableMap.of("price", 2)));
+        storage.publish(new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", 1)));
+        long version = storage.publishAll(List.of(new PriceData("B", now, ImmutableMap.of("price", 3)))).join();
+
+        assertTrue(storage.getVersion() >= version);
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A", "B"));
+        assertEquals(2, result.get("A").get("price"));
+        assertEquals(3, result.get("B").get("price"));
+    }
+
+    @Test
+    void testPublish_concurrentTicksKeepNewestPerInstrument() throws Exception {
+        Instant base = Instant.now();
+        int threads = 4;
+        int ticks = 5_000;
+        List<Thread> publishers = new ArrayList<>();
+        List<CompletableFuture<Long>> receipts = new CopyOnWriteArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            publishers.add(new Thread(() -> {
+                for (int i = 0; i < ticks; i++) {
+                    receipts.add(storage.publish(new PriceData("I" + (i % 10),
+                            base.plusNanos((long) i * threads + thread), ImmutableMap.of("tick", i))));
+                }
+            }));
+        }
+        publishers.forEach(Thread::start);
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        receipts.forEach(CompletableFuture::join);
+
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("I0", "I9"));
+        assertEquals(ticks - 10, result.get("I0").get("tick"));
+        assertEquals(ticks - 1, result.get("I9").get("tick"));
+    }
+
+    @Test
+    void testPublish_sustainedTicksDoNotStarveNormalBatch() throws Exception {
+        Instant base = Instant.now();
+        Thread publisher = new Thread(() -> {
+            for (long i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                storage.publish(new PriceData("T" + (i % 100), base.plusNanos(i), ImmutableMap.of("tick", i)));
+            }
+        });
+        publisher.start();
+        try {
+            // Wait until ticks are flowing before queuing the batch behind them.
+            storage.publish(new PriceData("T0", base, ImmutableMap.of())).join();
+
+            long version = storage.updateRecords(List.of(new PriceData("BULK", base, ImmutableMap.of("price", 1))))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertTrue(storage.getVersion() >= version);
+            assertEquals(1, storage.getLatest(Set.of("BULK")).get("BULK").get("price"));
+        } finally {
+            publisher.interrupt();
+            publisher.join();
+        }
+    }
+
+    @Test
+    void testPublish_ticksTakeAndReturnQueueRoom() {
+        PrimaryPriceStorageImpl bounded = new PrimaryPriceStorageImpl(PrimaryPriceStorageOptions.builder()
+                .maxQueuedRecords(2)
+                .backpressurePolicy(BackpressurePolicy.REJECT)
+                .build());
+        Instant now = Instant.now();
+
+        for (int i = 0; i < 10; i++) {
+            bounded.publishAll(List.of(new PriceData("A" + i, now, ImmutableMap.of("price", i)),
+                    new PriceData("B" + i, now, ImmutableMap.of("price", i)))).join();
+        }
+
+        assertEquals(0, bounded.commitQueueStats().queuedRecords());
+        assertEquals(4, bounded.getLatest(Set.of("A0", "B0", "A9", "B9")).size());
+    }
+
+    @Test
+    void testCheckpoint_withoutPathThrows() {
+        assertThrows(IllegalStateException.class, storage::checkpoint);
+    }
+
+    @Test
+    void testGetLatestWithSink_passesStoredPayloads() {
+        storage.updateRecords(List.of(
+                new PriceData("A", Instant.now(), ImmutableMap.of("price", 1, "name", "a")),
+                new PriceData("B", Instant.now(), ImmutableMap.of("price", 2)))).join();
+        Map<String, Map<String, Object>> received = new HashMap<>();
+
+        int found = storage.getLatest(Arrays.asList("A", null, "C"), received::put);
+
+        assertEquals(1, found);
+        assertEquals(Map.of("A", Map.of("price", 1, "name", "a")), received);
+        assertEquals(storage.getLatest(Set.of("B")).get("B"), collect(storage, Set.of("B")).get("B"));
+    }
+
+    private static Map<String, Map<String, Object>> collect(PrimaryPriceStorage storage, Set<String> ids) {
+        Map<String, Map<String, Object>> received = new HashMap<>();
+        storage.getLatest(ids, received::put);
+        return received;
+    }
+
+    @Test
+    void testGetLatestWithFields_returnsProjectedPayloads() {
+        storage.updateRecords(List.of(
+                new PriceData("A", Instant.now(), ImmutableMap.of("bid", 1.0, "mid", 1.5, "ask", 2.0)),
+                new PriceData("B", Instant.now(), ImmutableMap.of("mid", "n/a", "venue", "X")),
+                new PriceData("C", Instant.now(), ImmutableMap.of("bid", 1.0)))).join();
+
+        ImmutableMap<String, ImmutableMap<String, Object>> result =
+                storage.getLatest(Set.of("A", "B", "C", "D"), Set.of("mid"));
+
+        assertEquals(ImmutableMap.of(
+                "A", ImmutableMap.of("mid", 1.5),
+                "B", ImmutableMap.of("mid", "n/a"),
+                "C", ImmutableMap.of()), result);
+    }
+
+    @Test
+    void testGetAsOf_readsHistoryAtInstant() {
+        PrimaryPriceStorageImpl historic = new PrimaryPriceStorageImpl(
+                PrimaryPriceStorageOptions.builder().historyDepth(3).build());
+        Instant t0 = Instant.parse("2024-01-02T16:00:00Z");
+        historic.updateRecords(List.of(
+                new PriceData("A", t0, ImmutableMap.of("price", 0)),
+                new PriceData("A", t0.plusSeconds(20), ImmutableMap.of("price", 2)),
+                new PriceData("B", t0.plusSeconds(5), ImmutableMap.of("price", 5)))).join();
+        historic.updateRecords(List.of(
+                new PriceData("A", t0.plusSeconds(10), ImmutableMap.of("price", 1)),
+                new PriceData("A", t0.plusSeconds(30), ImmutableMap.of("price", 3)))).join();
+
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1), "B", ImmutableMap.of("price", 5)),
+                historic.getAsOf(Set.of("A", "B", "C"), t0.plusSeconds(15)));
+        assertTrue(historic.getAsOf(Set.of("B"), t0.plusSeconds(4)).isEmpty());
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 3), "B", ImmutableMap.of("price", 5)),
+                historic.getAsOf(Set.of("A", "B"), t0.plusSeconds(60)));
+        // Depth 3: the record at t0 has been dropped.
+        assertTrue(historic.getAsOf(Set.of("A"), t0.plusSeconds(5)).isEmpty());
+        assertEquals(3, historic.getLatest(Set.of("A")).get("A").get("price"));
+    }
+
+    @Test
+    void testGetAsOf_parallelMergeMatchesSequential() {
+        Instant t0 = Instant.parse("2024-01-02T16:00:00Z");
+        List<PriceData> batch = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            batch.add(new PriceData("id" + (i % 100), t0.plusSeconds(i), ImmutableMap.of("price", i)));
+        }
+        PrimaryPriceStorageImpl sequential = new PrimaryPriceStorageImpl(
+                PrimaryPriceStorageOptions.builder().historyDepth(4).build());
+        PrimaryPriceStorageImpl parallel = new PrimaryPriceStorageImpl(
+                PrimaryPriceStorageOptions.builder().historyDepth(4).parallelMergeThreshold(1).build());
+        sequential.updateRecords(batch).join();
+        parallel.updateRecords(batch).join();
+
+        Set<String> ids = Set.of("id0", "id42", "id99");
+        for (int seconds : new int[]{0, 19_600, 19_750, 20_000}) {
+            assertEquals(sequential.getAsOf(ids, t0.plusSeconds(seconds)), parallel.getAsOf(ids, t0.plusSeconds(seconds)));
+        }
+        assertEquals(19_742, parallel.getAsOf(ids, t0.plusSeconds(19_750)).get("id42").get("price"));
+    }
+
+    @Test
+    void testGetAsOf_startsFromCheckpointAfterRestart(@TempDir Path dir) throws IOException {
+        PrimaryPriceStorageOptions options = PrimaryPriceStorageOptions.builder()
+                .checkpointPath(dir.resolve("prices.snapshot")).historyDepth(2).build();
+        Instant t0 = Instant.parse("2024-01-02T16:00:00Z");
+        PrimaryPriceStorageImpl first = new PrimaryPriceStorageImpl(options);
+        first.updateRecords(List.of(
+                new PriceData("A", t0, ImmutableMap.of("price", 1)),
+                new PriceData("B", t0, ImmutableMap.of("price", 2)))).join();
+        first.checkpoint();
+
+        first.close();
+        PrimaryPriceStorageImpl restarted = new PrimaryPriceStorageImpl(options);
+        restarted.updateRecords(List.of(new PriceData("A", t0.plusSeconds(10), ImmutableMap.of("price", 3)))).join();
+
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1), "B", ImmutableMap.of("price", 2)),
+                restarted.getAsOf(Set.of("A", "B"), t0.plusSeconds(5)));
+        assertEquals(3, restarted.getAsOf(Set.of("A"), t0.plusSeconds(10)).get("A").get("price"));
+        assertTrue(restarted.getAsOf(Set.of("A", "B"), t0.minusSeconds(1)).isEmpty());
+    }
+
+    @Test
+    void testGetAsOf_withoutHistoryThrows() {
+        assertThrows(UnsupportedOperationException.class, () -> storage.getAsOf(Set.of("A"), Instant.now()));
+    }
+
+    @Test
+    void testPrepare_pollsLatestValuesAndPicksUpNewIds() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        PreparedPriceQuery query = storage.prepare(Set.of("A", "B"));
+
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1)), query.getLatest());
+
+        storage.updateRecords(List.of(
+                new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 2)),
+                new PriceData("B", now, ImmutableMap.of("price", 3)),
+                new PriceData("C", now, ImmutableMap.of("price", 4)))).join();
+
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 2), "B", ImmutableMap.of("price", 3)),
+                query.getLatest());
+        Map<String, Map<String, Object>> received = new HashMap<>();
+        assertEquals(2, query.getLatest(received::put));
+        assertEquals(query.getLatest(), received);
+    }
+
+    @Test
+    void testPrepare_servesRestoredCheckpoint(@TempDir Path dir) throws IOException {
+        PrimaryPriceStorageOptions options = PrimaryPriceStorageOptions.builder()
+                .checkpointPath(dir.resolve("prices.snapshot")).build();
+        PrimaryPriceStorageImpl first = new PrimaryPriceStorageImpl(options);
+        first.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of("price", 1)))).join();
+        first.checkpoint();
+        first.close();
+
+        PreparedPriceQuery query = new PrimaryPriceStorageImpl(options).prepare(Set.of("A", "B"));
+
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1)), query.getLatest());
+    }
+
+    @Test
+    void testSnapshot_readsPinnedVersion() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+
+        try (PriceSnapshot snapshot = storage.snapshot()) {
+            storage.updateRecords(List.of(
+                    new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 3)),
+                    new PriceData("C", now, ImmutableMap.of("price", 4)))).join();
+
+            assertEquals(1L, snapshot.version());
+            assertEquals(2, snapshot.size());
+            assertEquals(1, snapshot.get("A").get("price"));
+            assertNull(snapshot.get("C"));
+            assertEquals(Set.of("A", "B"), snapshot.getLatest(Set.of("A", "B", "C")).keySet());
+            Map<String, ImmutableMap<String, Object>> visited = new HashMap<>();
+            snapshot.forEach(visited::put);
+            assertEquals(storage.getLatest(Set.of("B")).get("B"), visited.get("B"));
+            assertEquals(ImmutableMap.of("price", 1), visited.get("A"));
+            assertEquals(1L, storage.openSnapshots());
+        }
+        assertEquals(3, storage.getLatest(Set.of("A")).get("A").get("price"));
+        assertEquals(0L, storage.openSnapshots());
+    }
+
+    @Test
+    void testSnapshot_closedHandleThrows() {
+        PriceSnapshot snapshot = storage.snapshot();
+        snapshot.close();
+        snapshot.close();
+
+        assertThrows(IllegalStateException.class, () -> snapshot.get("A"));
+        assertEquals(0L, storage.openSnapshots());
+    }
+
+    @Test
+    void testSnapshot_includesRestoredCheckpoint(@TempDir Path dir) throws IOException {
+        PrimaryPriceStorageOptions options = PrimaryPriceStorageOptions.builder()
+                .checkpointPath(dir.resolve("prices.snapshot")).build();
+        Instant now = Instant.now();
+        PrimaryPriceStorageImpl first = new PrimaryPriceStorageImpl(options);
+        first.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+        first.checkpoint();
+        first.close();
+        PrimaryPriceStorageImpl restarted = new PrimaryPriceStorageImpl(options);
+        restarted.updateRecords(List.of(
+                new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 3)),
+                new PriceData("C", now, ImmutableMap.of("price", 4)))).join();
+
+        try (PriceSnapshot snapshot = restarted.snapshot()) {
+            Map<String, ImmutableMap<String, Object>> visited = new HashMap<>();
+            snapshot.forEach(visited::put);
+
+            assertEquals(3, snapshot.size());
+            assertEquals(Map.of("A", ImmutableMap.of("price", 3), "B", ImmutableMap.of("price", 2),
+                    "C", ImmutableMap.of("price", 4)), visited);
+        }
+    }
+
+    @Test
+    void testGetChangesSince_returnsOnlyChangedIds() {
+        Instant now = Instant.now();
+        long first = storage.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+        storage.updateRecords(List.of(
+                new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", -1)),
+                new PriceData("B", now.plusSeconds(1), ImmutableMap.of("price", 3)))).join();
+        long last = storage.updateRecords(List.of(
+                new PriceData("B", now.plusSeconds(2), ImmutableMap.of("price", 4)),
+                new PriceData("C", now, ImmutableMap.of("price", 5)))).join();
+
+        PriceChanges changes = storage.getChangesSince(first);
+
+        assertEquals(last, changes.version());
+        assertFalse(changes.full());
+        assertEquals(ImmutableMap.of("B", ImmutableMap.of("price", 4), "C", ImmutableMap.of("price", 5)),
+                changes.prices());
+        assertTrue(storage.getChangesSince(last).prices().isEmpty());
+        assertEquals(3, storage.getChangesSince(0L).prices().size());
+    }
+
+    @Test
+    void testGetChangesSince_evictedVersionReturnsFullSnapshot() {
+        PrimaryPriceStorageImpl small = new PrimaryPriceStorageImpl(
+                PrimaryPriceStorageOptions.builder().changeJournalCapacity(1).build());
+        Instant now = Instant.now();
+        small.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        long last = small.updateRecords(List.of(new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+
+        PriceChanges changes = small.getChangesSince(0L);
+
+        assertTrue(changes.full());
+        assertEquals(last, changes.version());
+        assertEquals(2, changes.prices().size());
+        assertFalse(small.getChangesSince(1L).full());
+        assertEquals(Set.of("B"), small.getChangesSince(1L).prices().keySet());
+    }
+
+    @Test
+    void testSubscribe_deliversInitialStateThenChangedIds() throws InterruptedException {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+
+        try (PriceSubscription ignored = storage.subscribe(Set.of("A", "B"), Runnable::run, updates::add)) {
+            PriceUpdate initial = updates.poll(5, TimeUnit.SECONDS);
+            assertNotNull(initial);
+            assertEquals(1L, initial.version());
+            assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1)), initial.prices());
+
+            // C is not subscribed and the older A record loses: only B is reported.
+            storage.updateRecords(List.of(
+                    new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", -1)),
+                    new PriceData("B", now, ImmutableMap.of("price", 2)),
+                    new PriceData("C", now, ImmutableMap.of("price", 3)))).join();
+            PriceUpdate delta = updates.poll(5, TimeUnit.SECONDS);
+            assertNotNull(delta);
+            assertEquals(2L, delta.version());
+            assertEquals(ImmutableMap.of("B", ImmutableMap.of("price", 2)), delta.prices());
+
+            storage.updateRecords(List.of(new PriceData("C", now.plusSeconds(1), ImmutableMap.of()))).join();
+            assertNull(updates.poll(100, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void testSubscribeAll_conflatesUpdatesForSlowListener() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+        storage.subscribeAll(task -> new Thread(task).start(), update -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            updates.add(update);
+        });
+        Instant now = Instant.now();
+        for (int i = 0; i < 10; i++) {
+            storage.updateRecords(List.of(new PriceData("A", now.plusSeconds(i), ImmutableMap.of("price", i)))).join();
+        }
+        release.countDown();
+
+        // The listener is stuck in its first update while the rest arrive; they are merged into one.
+        PriceUpdate first = updates.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        PriceUpdate last = first.version() == 10L ? first : updates.poll(5, TimeUnit.SECONDS);
+        assertNotNull(last);
+        assertEquals(10L, last.version());
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 9)), last.prices());
+        assertNull(updates.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testSubscribe_closeStopsDelivery() throws InterruptedException {
+        BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+        PriceSubscription subscription = storage.subscribeAll(Runnable::run, updates::add);
+        subscription.close();
+
+        storage.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of()))).join();
+
+        assertNull(updates.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testConstructor_nullOptionsThrows() {
+        assertThrows(NullPointerException.class, () -> new PrimaryPriceStorageImpl(null));
+    }
 }
@@ -0,0 +1,113 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedPrimaryPriceStorageConcurrencyTest {
+
+    @RepeatedTest(5)
+    void concurrentReaders_neverSeePartiallyAppliedBatch() throws Exception {
+        ShardedPrimaryPriceStorage storage = new ShardedPrimaryPriceStorage(8);
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 64; i++) {
+            ids.add("id" + i);
+        }
+        int rounds = 200;
+        AtomicBoolean done = new AtomicBoolean();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(ids);
+                        // Every batch writes the same round to all ids, so a consistent read sees one round.
+                        long distinctRounds = result.values().stream().map(p -> p.get("round")).distinct().count();
+                        assertEquals(result.isEmpty() ? 0 : 1, distinctRounds, "Mixed batches in one read");
+                        if (!result.isEmpty()) {
+                            assertEquals(ids.size(), result.size(), "Partially visible batch");
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            Instant base = Instant.now();
+            CompletableFuture<Long> last = null;
+            for (int round = 0; round < rounds; round++) {
+                List<PriceData> batch = new ArrayList<>();
+                for (String id : ids) {
+                    batch.add(new PriceData(id, base.plusMillis(round), ImmutableMap.of("round", round)));
+                }
+                last = storage.updateRecords(batch);
+            }
+            assertEquals(rounds, last.join());
+            done.set(true);
+
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        }
+    }
+
+    @RepeatedTest(5)
+    void concurrentProducers_keepEpochOrderOnEveryShard() throws Exception {
+        ShardedPrimaryPriceStorage storage = new ShardedPrimaryPriceStorage(8);
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 64; i++) {
+            ids.add("id" + i);
+        }
+        int producers = 4;
+        int rounds = 100;
+        AtomicLong clock = new AtomicLong();
+        AtomicBoolean done = new AtomicBoolean();
+        Instant base = Instant.now();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(producers + 1)) {
+            Future<?> reader = executor.submit(() -> {
+                while (!done.get()) {
+                    // A shard applying epochs out of order would publish a newer batch on it early.
+                    long distinct = storage.getLatest(ids).values().stream().map(p -> p.get("tick")).distinct().count();
+                    assertTrue(distinct <= 1, "Mixed batches in one read");
+                }
+                return null;
+            });
+            List<Future<?>> writers = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                writers.add(executor.submit(() -> {
+                    for (int round = 0; round < rounds; round++) {
+                        long tick = clock.incrementAndGet();
+                        List<PriceData> batch = new ArrayList<>();
+                        for (String id : ids) {
+                            batch.add(new PriceData(id, base.plusNanos(tick), ImmutableMap.of("tick", tick)));
+                        }
+                        storage.updateRecords(batch);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            assertEquals((long) producers * rounds, storage.awaitVersion((long) producers * rounds).join());
+            done.set(true);
+            reader.get();
+        }
+    }
+}
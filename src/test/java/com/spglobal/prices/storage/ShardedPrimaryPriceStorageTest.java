@@ -0,0 +1,206 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceChanges;
+import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.dto.PriceUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedPrimaryPriceStorageTest {
+
+    private ShardedPrimaryPriceStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new ShardedPrimaryPriceStorage(4);
+    }
+
+    @Test
+    void testGetLatest_EmptyStorage_returnsEmptyCollection() {
+        assertTrue(storage.getLatest(Set.of("A", "B")).isEmpty());
+        assertEquals(0L, storage.getVersion());
+    }
+
+    @Test
+    void testUpdateRecords_spreadsAcrossShardsAndReadsBack() {
+        List<PriceData> batch = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new PriceData("id" + i, Instant.now(), ImmutableMap.of("price", i)));
+            ids.add("id" + i);
+        }
+
+        long version = storage.updateRecords(batch).join();
+
+        assertEquals(1L, version);
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(ids);
+        assertEquals(100, result.size());
+        assertEquals(42, result.get("id42").get("price"));
+    }
+
+    @Test
+    void testUpdateRecords_keepsLatestByAsOf() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 100))));
+        long version = storage.updateRecords(List.of(
+                new PriceData("A", now.minusSeconds(10), ImmutableMap.of("price", 50)),
+                new PriceData("B", now, ImmutableMap.of("price", 1)))).join();
+
+        assertEquals(2L, version);
+        ImmutableMap<String, ImmutableMap<String, Object>> result = storage.getLatest(Set.of("A", "B"));
+        assertEquals(100, result.get("A").get("price"));
+        assertEquals(1, result.get("B").get("price"));
+    }
+
+    @Test
+    void testUpdateRecords_ignoresNullOrEmpty() {
+        assertEquals(0L, storage.updateRecords(null).join());
+        assertEquals(0L, storage.updateRecords(List.of()).join());
+    }
+
+    @Test
+    void testAwaitVersion_completesWhenEpochIsPublished() {
+        var future = storage.awaitVersion(2L);
+
+        storage.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of())));
+        storage.updateRecords(List.of(new PriceData("B", Instant.now(), ImmutableMap.of())));
+
+        assertEquals(2L, future.join());
+        assertEquals(2, storage.getLatest(Set.of("A", "B")).size());
+    }
+
+    @Test
+    void testShardOf_staysWithinRange() {
+        for (int i = 0; i < 10_000; i++) {
+            int shard = ShardedPrimaryPriceStorage.shardOf("id" + i, 7);
+            assertTrue(shard >= 0 && shard < 7);
+        }
+    }
+
+    @Test
+    void testConstructor_invalidShardCountThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedPrimaryPriceStorage(0));
+    }
+
+    @Test
+    void testGetLatestWithFields_defaultFiltersPayloads() {
+        storage.updateRecords(List.of(new PriceData("A", Instant.now(), ImmutableMap.of("bid", 1, "mid", 2)))).join();
+
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("mid", 2)), storage.getLatest(Set.of("A", "B"), Set.of("mid")));
+    }
+
+    @Test
+    void testSnapshot_readsPinnedVersion() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(
+                new PriceData("A", now, ImmutableMap.of("price", 1)),
+                new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+
+        try (PriceSnapshot snapshot = storage.snapshot()) {
+            storage.updateRecords(List.of(
+                    new PriceData("A", now.plusSeconds(1), ImmutableMap.of("price", 3)),
+                    new PriceData("C", now, ImmutableMap.of("price", 4)))).join();
+
+            assertEquals(1L, snapshot.version());
+            assertEquals(2, snapshot.size());
+            assertEquals(1, snapshot.get("A").get("price"));
+            assertNull(snapshot.get("C"));
+            assertEquals(Set.of("A", "B"), snapshot.getLatest(Set.of("A", "B", "C")).keySet());
+            Map<String, ImmutableMap<String, Object>> visited = new HashMap<>();
+            snapshot.forEach(visited::put);
+            assertEquals(Map.of("A", ImmutableMap.of("price", 1), "B", ImmutableMap.of("price", 2)), visited);
+        }
+        assertEquals(3, storage.getLatest(Set.of("A")).get("A").get("price"));
+    }
+
+    @Test
+    void testSnapshot_closedHandleThrows() {
+        PriceSnapshot snapshot = storage.snapshot();
+        snapshot.close();
+        snapshot.close();
+
+        assertThrows(IllegalStateException.class, () -> snapshot.get("A"));
+    }
+
+    @Test
+    void testGetChangesSince_returnsAllInstrumentsAsFull() {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        long version = storage.updateRecords(List.of(new PriceData("B", now, ImmutableMap.of("price", 2)))).join();
+
+        PriceChanges changes = storage.getChangesSince(1L);
+
+        assertTrue(changes.full());
+        assertEquals(version, changes.version());
+        assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1), "B", ImmutableMap.of("price", 2)),
+                changes.prices());
+        assertFalse(storage.getChangesSince(version).full());
+        assertTrue(storage.getChangesSince(version).prices().isEmpty());
+    }
+
+    @Test
+    void testSubscribe_deliversInitialStateThenChangedIds() throws InterruptedException {
+        Instant now = Instant.now();
+        storage.updateRecords(List.of(new PriceData("A", now, ImmutableMap.of("price", 1)))).join();
+        BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+
+        try (PriceSubscription ignored = storage.subscribe(Set.of("A", "B"), Runnable::run, updates::add)) {
+            PriceUpdate initial = updates.poll(5, TimeUnit.SECONDS);
+            assertNotNull(initial);
+            assertEquals(1L, initial.version());
+            assertEquals(ImmutableMap.of("A", ImmutableMap.of("price", 1)), initial.prices());
+
+            // C is not subscribed and the older A record loses: only B is reported.
+            storage.updateRecords(List.of(
+                    new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", -1)),
+                    new PriceData("B", now, ImmutableMap.of("price", 2)),
+                    new PriceData("C", now, ImmutableMap.of("price", 3)))).join();
+            PriceUpdate delta = updates.poll(5, TimeUnit.SECONDS);
+            assertNotNull(delta);
+            assertEquals(2L, delta.version());
+            assertEquals(ImmutableMap.of("B", ImmutableMap.of("price", 2)), delta.prices());
+
+            storage.updateRecords(List.of(new PriceData("C", now.plusSeconds(1), ImmutableMap.of()))).join();
+            assertNull(updates.poll(100, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void testSubscribeAll_receivesChangesAcrossShards() throws InterruptedException {
+        BlockingQueue<PriceUpdate> updates = new LinkedBlockingQueue<>();
+        PriceSubscription subscription = storage.subscribeAll(Runnable::run, updates::add);
+        List<PriceData> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(new PriceData("id" + i, Instant.now(), ImmutableMap.of("price", i)));
+        }
+
+        storage.updateRecords(batch).join();
+
+        PriceUpdate update = updates.poll(5, TimeUnit.SECONDS);
+        assertNotNull(update);
+        assertEquals(1L, update.version());
+        assertEquals(20, update.prices().size());
+        subscription.close();
+        storage.updateRecords(List.of(new PriceData("id0", Instant.now().plusSeconds(1), ImmutableMap.of()))).join();
+        assertNull(updates.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
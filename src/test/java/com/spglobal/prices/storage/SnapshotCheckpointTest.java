@@ -0,0 +1,141 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWriteAndOpen_roundTripsEntries() throws IOException {
+        InstrumentDictionary ids = new InstrumentDictionary();
+        PersistentIntMap.Builder<CompactPrice> prices = PersistentIntMap.<CompactPrice>empty().toBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            prices.put(ids.intern("id" + i), price(i, ImmutableMap.of("price", i, "venue", "V" + i % 3)));
+        }
+        Path file = dir.resolve("snapshot.bin");
+
+        int written = SnapshotCheckpoint.write(file, 42L, prices.build(), ids, null);
+        SnapshotCheckpoint checkpoint = SnapshotCheckpoint.open(file);
+
+        assertEquals(1_000, written);
+        assertEquals(42L, checkpoint.version());
+        assertEquals(1_000, checkpoint.size());
+        assertEquals(ImmutableMap.of("price", 7, "venue", "V1"), checkpoint.payload("id7"));
+        assertEquals(7L, checkpoint.get("id7", new CompactPayload.Shapes()).epochSecond());
+        assertNull(checkpoint.payload("missing"));
+        assertNull(checkpoint.get("missing", new CompactPayload.Shapes()));
+    }
+
+    @Test
+    void testWrite_layersPricesOverBase() throws IOException {
+        InstrumentDictionary first = new InstrumentDictionary();
+        PersistentIntMap<CompactPrice> initial = PersistentIntMap.<CompactPrice>empty().toBuilder()
+                .put(first.intern("A"), price(1, ImmutableMap.of("price", 1)))
+                .put(first.intern("B"), price(1, ImmutableMap.of("size", 10L)))
+                .build();
+        Path file = dir.resolve("snapshot.bin");
+        SnapshotCheckpoint.write(file, 1L, initial, first, null);
+        SnapshotCheckpoint base = SnapshotCheckpoint.open(file);
+
+        InstrumentDictionary second = new InstrumentDictionary();
+        PersistentIntMap<CompactPrice> updates = PersistentIntMap.<CompactPrice>empty().toBuilder()
+                .put(second.intern("B"), price(2, ImmutableMap.of("price", 2.5)))
+                .put(second.intern("C"), price(2, ImmutableMap.of("price", 3)))
+                .build();
+        SnapshotCheckpoint.write(file, 2L, updates, second, base);
+        SnapshotCheckpoint layered = SnapshotCheckpoint.open(file);
+
+        Map<String, Object> content = new HashMap<>();
+        layered.forEach((id, window, offset) -> content.put(id, layered.payload(id)));
+        assertEquals(Map.of(
+                "A", ImmutableMap.of("price", 1),
+                "B", ImmutableMap.of("price", 2.5),
+                "C", ImmutableMap.of("price", 3)), content);
+        assertEquals(2L, layered.version());
+    }
+
+    @Test
+    void testWrite_unsupportedPayloadKeepsPreviousFile() throws IOException {
+        InstrumentDictionary ids = new InstrumentDictionary();
+        Path file = dir.resolve("snapshot.bin");
+        SnapshotCheckpoint.write(file, 1L, PersistentIntMap.<CompactPrice>empty().toBuilder()
+                .put(ids.intern("A"), price(1, ImmutableMap.of("price", 1)))
+                .build(), ids, null);
+        PersistentIntMap<CompactPrice> updates = PersistentIntMap.<CompactPrice>empty().toBuilder()
+                .put(ids.intern("A"), price(2, ImmutableMap.of("price", new Object())))
+                .put(ids.intern("B"), price(2, ImmutableMap.of("price", 2)))
+                .build();
+
+        assertThrows(IOException.class,
+                () -> SnapshotCheckpoint.write(file, 2L, updates, ids, SnapshotCheckpoint.open(file)));
+
+        SnapshotCheckpoint kept = SnapshotCheckpoint.open(file);
+        assertEquals(1L, kept.version());
+        assertEquals(ImmutableMap.of("price", 1), kept.payload("A"));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(Set.of(file), files.collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void testWrite_usesUniqueTemporaryFile() throws IOException {
+        InstrumentDictionary ids = new InstrumentDictionary();
+        PersistentIntMap<CompactPrice> prices = PersistentIntMap.<CompactPrice>empty().toBuilder()
+                .put(ids.intern("A"), price(1, ImmutableMap.of("price", 1)))
+                .build();
+        Path file = dir.resolve("snapshot.bin");
+        // A leftover from another instance must be neither reused nor removed.
+        Path stale = Files.write(dir.resolve("snapshot.bin.tmp"), new byte[]{1, 2, 3});
+
+        SnapshotCheckpoint.write(file, 1L, prices, ids, null);
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(Set.of(file, stale), files.collect(Collectors.toSet()));
+        }
+        assertEquals(ImmutableMap.of("price", 1), SnapshotCheckpoint.open(file).payload("A"));
+    }
+
+    @Test
+    void testClose_rejectsReads() throws IOException {
+        InstrumentDictionary ids = new InstrumentDictionary();
+        PersistentIntMap<CompactPrice> prices = PersistentIntMap.<CompactPrice>empty().toBuilder()
+                .put(ids.intern("A"), price(1, ImmutableMap.of("price", 1)))
+                .build();
+        Path file = dir.resolve("snapshot.bin");
+        SnapshotCheckpoint.write(file, 1L, prices, ids, null);
+        SnapshotCheckpoint checkpoint = SnapshotCheckpoint.open(file);
+
+        checkpoint.close();
+
+        assertThrows(IllegalStateException.class, () -> checkpoint.payload("A"));
+    }
+
+    @Test
+    void testOpen_rejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("garbage.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        assertThrows(IOException.class, () -> SnapshotCheckpoint.open(file));
+    }
+
+    private static CompactPrice price(long epochSecond, ImmutableMap<String, Object> payload) {
+        return new CompactPrice(epochSecond, 0, new CompactPayload.Shapes().encode(payload));
+    }
+}
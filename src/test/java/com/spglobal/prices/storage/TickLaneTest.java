@@ -0,0 +1,119 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import com.spglobal.prices.exception.CommitRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TickLaneTest {
+
+    private final List<TickLane.Flush> flushes = new ArrayList<>();
+    private final List<CompletableFuture<Long>> commits = new ArrayList<>();
+    private int room = Integer.MAX_VALUE;
+    private final TickLane lane = new TickLane(flush -> {
+        flushes.add(flush);
+        CompletableFuture<Long> commit = new CompletableFuture<>();
+        commits.add(commit);
+        return commit;
+    }, weight -> {
+        if (room < weight) {
+            return false;
+        }
+        room -= weight;
+        return true;
+    }, weight -> room += weight);
+
+    @Test
+    void testPublish_conflatesPerInstrumentUntilFlushDrains() {
+        Instant now = Instant.now();
+        PriceData newer = new PriceData("A", now, ImmutableMap.of("price", 2));
+
+        CompletableFuture<Long> first = lane.publish(newer);
+        CompletableFuture<Long> second = lane.publish(new PriceData("A", now.minusSeconds(1), ImmutableMap.of("price", 1)));
+        CompletableFuture<Long> third = lane.publish(new PriceData("B", now, ImmutableMap.of("price", 3)));
+
+        assertEquals(1, flushes.size());
+        assertSame(first, second);
+        assertSame(first, third);
+        assertTrue(flushes.get(0).isEmpty());
+
+        flushes.get(0).drain();
+        assertEquals(2, flushes.get(0).size());
+        assertTrue(flushes.get(0).contains(newer));
+
+        commits.get(0).complete(5L);
+        assertEquals(5L, first.join());
+    }
+
+    @Test
+    void testPublish_afterDrainStartedSchedulesNextFlush() {
+        Instant now = Instant.now();
+        CompletableFuture<Long> first = lane.publish(new PriceData("A", now, ImmutableMap.of()));
+        flushes.get(0).drain();
+
+        CompletableFuture<Long> second = lane.publish(new PriceData("A", now.plusSeconds(1), ImmutableMap.of()));
+
+        assertEquals(2, flushes.size());
+        assertNotSame(first, second);
+        flushes.get(1).drain();
+        assertEquals(List.of(new PriceData("A", now.plusSeconds(1), ImmutableMap.of())), flushes.get(1));
+    }
+
+    @Test
+    void testRejectedFlush_keepsPricesForNextFlush() {
+        PriceData price = new PriceData("A", Instant.now(), ImmutableMap.of());
+        CompletableFuture<Long> rejected = lane.publish(price);
+        commits.get(0).completeExceptionally(new CommitRejectedException("full"));
+
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(error.getCause() instanceof CommitRejectedException);
+
+        lane.publishAll(List.of());
+        assertEquals(2, flushes.size());
+        flushes.get(1).drain();
+        assertEquals(List.of(price), flushes.get(1));
+    }
+
+    @Test
+    void testPublish_takesRoomOncePerPendingInstrument() {
+        room = 2;
+        Instant now = Instant.now();
+
+        lane.publish(new PriceData("A", now, ImmutableMap.of()));
+        lane.publish(new PriceData("A", now.plusSeconds(1), ImmutableMap.of()));
+        lane.publish(new PriceData("B", now, ImmutableMap.of()));
+
+        assertEquals(0, room);
+        flushes.get(0).drain();
+        assertEquals(2, flushes.get(0).size());
+    }
+
+    @Test
+    void testPublish_withoutRoomIsRejected() {
+        room = 1;
+        Instant now = Instant.now();
+        CompletableFuture<Long> accepted = lane.publish(new PriceData("A", now, ImmutableMap.of()));
+
+        CompletableFuture<Long> rejected = lane.publishAll(List.of(new PriceData("A", now.plusSeconds(1),
+                ImmutableMap.of()), new PriceData("B", now, ImmutableMap.of())));
+
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(error.getCause() instanceof CommitRejectedException);
+        assertFalse(accepted.isDone());
+        flushes.get(0).drain();
+        assertEquals(List.of(new PriceData("A", now.plusSeconds(1), ImmutableMap.of())), flushes.get(0));
+    }
+}
@@ -0,0 +1,150 @@
+package com.spglobal.prices.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.spglobal.prices.dto.PriceData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testAppendAndReplay_returnsBatchesInOrder() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(dir);
+        PriceData a = new PriceData("A", Instant.ofEpochSecond(1, 5), ImmutableMap.of("bid", 1.5, "venue", "X"));
+        PriceData b = new PriceData("B", Instant.ofEpochSecond(2), ImmutableMap.of("size", 10L));
+        PriceData c = new PriceData("C", Instant.ofEpochSecond(3), ImmutableMap.of());
+        log.append(1L, group(List.of(a, b)));
+        log.append(2L, group(List.of(c)));
+
+        List<Long> versions = new ArrayList<>();
+        List<PriceData> records = new ArrayList<>();
+        long last = WriteAheadLog.open(dir).replay(0L, (version, batch) -> {
+            versions.add(version);
+            records.addAll(batch);
+        });
+
+        assertEquals(2L, last);
+        assertEquals(List.of(1L, 2L), versions);
+        assertEquals(List.of(a, b, c), records);
+    }
+
+    @Test
+    void testReplay_skipsVersionsAtOrBelowCheckpoint() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(dir);
+        log.append(1L, group(List.of(price("A"))));
+        log.append(2L, group(List.of(price("B"))));
+
+        List<PriceData> records = new ArrayList<>();
+        long last = WriteAheadLog.open(dir).replay(1L, (version, batch) -> records.addAll(batch));
+
+        assertEquals(2L, last);
+        assertEquals(List.of(price("B")), records);
+    }
+
+    @Test
+    void testReplay_stopsAtTornEntry() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(dir);
+        log.append(1L, group(List.of(price("A"))));
+        log.append(2L, group(List.of(price("B"))));
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        List<PriceData> records = new ArrayList<>();
+        long last = WriteAheadLog.open(dir).replay(0L, (version, batch) -> records.addAll(batch));
+
+        assertEquals(1L, last);
+        assertEquals(List.of(price("A")), records);
+    }
+
+    @Test
+    void testRollback_dropsLastEntry() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(dir);
+        log.append(1L, group(List.of(price("A"))));
+        log.append(2L, group(List.of(price("B"))));
+        log.rollback();
+        log.rollback();
+        log.append(2L, group(List.of(price("C"))));
+
+        List<Long> versions = new ArrayList<>();
+        List<PriceData> records = new ArrayList<>();
+        WriteAheadLog.open(dir).replay(0L, (version, batch) -> {
+            versions.add(version);
+            records.addAll(batch);
+        });
+
+        assertEquals(List.of(1L, 2L), versions);
+        assertEquals(List.of(price("A"), price("C")), records);
+    }
+
+    @Test
+    void testAppend_failsOnlyUnsupportedBatch() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(dir);
+        List<CommitPipeline.PendingCommit<List<PriceData>>> group = group(
+                List.of(new PriceData("A", Instant.now(), ImmutableMap.of("price", new Object()))),
+                List.of(price("B")));
+
+        log.append(1L, group);
+
+        assertTrue(group.get(0).isFailed());
+        assertFalse(group.get(1).isFailed());
+        List<PriceData> records = new ArrayList<>();
+        WriteAheadLog.open(dir).replay(0L, (version, batch) -> records.addAll(batch));
+        assertEquals(List.of(price("B")), records);
+    }
+
+    @Test
+    void testTruncate_deletesSegmentsCoveredByCheckpoint() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(dir);
+        log.append(1L, group(List.of(price("A"))));
+        log.truncate(0L);
+        log.append(2L, group(List.of(price("B"))));
+        assertEquals(2, segments().size());
+
+        log.truncate(2L);
+        log.append(3L, group(List.of(price("C"))));
+        log.truncate(2L);
+
+        List<PriceData> records = new ArrayList<>();
+        WriteAheadLog.open(dir).replay(2L, (version, batch) -> records.addAll(batch));
+        assertEquals(1, segments().size());
+        assertEquals(List.of(price("C")), records);
+    }
+
+    @SafeVarargs
+    private static List<CommitPipeline.PendingCommit<List<PriceData>>> group(List<PriceData>... batches) {
+        List<CommitPipeline.PendingCommit<List<PriceData>>> group = new ArrayList<>();
+        for (List<PriceData> batch : batches) {
+            group.add(new CommitPipeline.PendingCommit<>(batch));
+        }
+        return group;
+    }
+
+    private static PriceData price(String id) {
+        return new PriceData(id, Instant.ofEpochSecond(100), ImmutableMap.of("price", 1));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+}